@@ -0,0 +1,95 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.audit.AuditEvent;
+import com.reactivelearning.demo.audit.AuditLog;
+import com.reactivelearning.demo.audit.AuditType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * AuditLogBenchmark
+ * - What auditing a login costs the request that triggers it, on 4 threads at once.
+ * - synchronousWrite writes the record to a file from the request's own thread, under a lock, as appending from
+ * UserService directly would. synchronousWriteAndForce also forces it to disk, as a durable audit trail written
+ * this way would need.
+ * - record queues it for the AuditLog's writer. The writer runs alongside, so the ring is drained as it fills, and
+ * anything the writer cannot keep up with is dropped and counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AuditLogBenchmark {
+
+    private Path directory;
+    private FileChannel channel;
+    private AuditLog auditLog;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audit-benchmark");
+        channel = FileChannel.open(directory.resolve("synchronous.log"),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        auditLog = new AuditLog(new SimpleMeterRegistry());
+        auditLog.setDirectory(directory.resolve("segments"));
+        auditLog.afterPropertiesSet();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        auditLog.destroy();
+        channel.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void synchronousWrite() throws IOException {
+        write(false);
+    }
+
+    @Benchmark
+    public void synchronousWriteAndForce() throws IOException {
+        write(true);
+    }
+
+    @Benchmark
+    public void record() {
+        auditLog.record(AuditType.LOGIN_SUCCEEDED, "benchmark");
+    }
+
+    private void write(boolean force) throws IOException {
+        AuditEvent event = new AuditEvent(System.currentTimeMillis(), AuditType.LOGIN_SUCCEEDED, "benchmark");
+        byte[] username = event.username().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Long.BYTES + Byte.BYTES + Short.BYTES + username.length)
+                .putLong(event.timestamp())
+                .put(event.type().getCode())
+                .putShort((short) username.length)
+                .put(username)
+                .flip();
+        synchronized (this) {
+            channel.write(record);
+            if (force) {
+                channel.force(false);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.security.filters.CookieFilter;
+import com.reactivelearning.demo.security.jwt.JwtUtil;
+import com.reactivelearning.demo.security.jwt.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CookieFilterBenchmark
+ * - CookieFilter.filter against a mock exchange, with a chain that completes immediately.
+ * - validCookie hits VerifiedTokenCache after the first call, as repeat requests do. permittedPath is the
+ * short-circuit taken by /api/v1/auth/**.
+ * - A new exchange is built per call, as the filter stores the principal in its attributes. buildExchange measures
+ * that on its own, to subtract.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookieFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret";
+    private static final WebFilterChain CHAIN = exchange -> Mono.empty();
+
+    private CookieFilter cookieFilter;
+    private HttpCookie cookie;
+
+    @Setup
+    public void setup() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET);
+        cookieFilter = new CookieFilter(jwtUtil, new VerifiedTokenCache(jwtUtil, new SimpleMeterRegistry(), 10_000));
+        cookieFilter.setPermittedPaths(List.of("/api/v1/auth/**", "/.well-known/**"));
+
+        User user = new User("benchmark", "benchmark", "benchmark", Role.of("USER"));
+        user.setId(UUID.randomUUID());
+        cookie = new HttpCookie("reactive_authn_authz", jwtUtil.generateToken(user));
+    }
+
+    @Benchmark
+    public MockServerWebExchange buildExchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/user").cookie(cookie));
+    }
+
+    @Benchmark
+    public Void validCookie() {
+        return cookieFilter.filter(
+                MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/user").cookie(cookie)),
+                CHAIN).block();
+    }
+
+    @Benchmark
+    public Void permittedPath() {
+        return cookieFilter.filter(
+                MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/auth/login")),
+                CHAIN).block();
+    }
+
+}
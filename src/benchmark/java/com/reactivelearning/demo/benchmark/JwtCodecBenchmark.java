@@ -0,0 +1,73 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.reactivelearning.demo.security.jwt.JwtCodec;
+import com.reactivelearning.demo.security.jwt.VerifiedPrincipal;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtCodecBenchmark
+ * - Compares auth0's JWT signing and verification, used the way JwtUtil used it (a new Algorithm per call),
+ * against JwtCodec.
+ * - Run with the gc profiler (the default jmh.args) to compare bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtCodecBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret";
+
+    private final UUID subject = UUID.randomUUID();
+    private final List<String> authorities = List.of("ROLE_USER");
+
+    private JwtCodec codec;
+    private String token;
+    private long issuedAt;
+    private long expiresAt;
+
+    @Setup
+    public void setup() {
+        codec = JwtCodec.hmac(SECRET.getBytes(StandardCharsets.UTF_8));
+        issuedAt = System.currentTimeMillis() / 1000;
+        expiresAt = issuedAt + TimeUnit.DAYS.toSeconds(1);
+        token = codec.sign(subject, authorities, issuedAt, expiresAt);
+    }
+
+    @Benchmark
+    public String auth0Sign() {
+        return JWT.create()
+                .withSubject(subject.toString())
+                .withClaim("authorities", authorities)
+                .withIssuedAt(new Date(issuedAt * 1000))
+                .withExpiresAt(new Date(expiresAt * 1000))
+                .sign(Algorithm.HMAC512(SECRET));
+    }
+
+    @Benchmark
+    public String codecSign() {
+        return codec.sign(subject, authorities, issuedAt, expiresAt);
+    }
+
+    @Benchmark
+    public DecodedJWT auth0Verify() {
+        return JWT.require(Algorithm.HMAC512(SECRET)).build().verify(token);
+    }
+
+    @Benchmark
+    public VerifiedPrincipal codecVerify() {
+        return codec.verify(token, System.currentTimeMillis());
+    }
+
+}
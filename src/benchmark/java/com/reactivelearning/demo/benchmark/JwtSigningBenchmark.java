@@ -0,0 +1,65 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.security.jwt.JwsAlgorithm;
+import com.reactivelearning.demo.security.jwt.JwtCodec;
+import com.reactivelearning.demo.security.jwt.JwtKeyRing;
+import com.reactivelearning.demo.security.jwt.VerifiedPrincipal;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtSigningBenchmark
+ * - Sign and verify cost of each jwt.signing.algorithm through JwtCodec, so the asymmetric modes can be
+ * compared against HS512.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtSigningBenchmark {
+
+    private static final byte[] SECRET = "benchmark-secret-benchmark-secret".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"HS512", "ES256", "EDDSA"})
+    public JwsAlgorithm algorithm;
+
+    private final UUID subject = UUID.randomUUID();
+    private final List<String> authorities = List.of("ROLE_USER");
+
+    private JwtCodec codec;
+    private String token;
+    private long issuedAt;
+    private long expiresAt;
+
+    @Setup
+    public void setup() {
+        if (algorithm.isAsymmetric()) {
+            JwtKeyRing keyRing = new JwtKeyRing();
+            keyRing.setAlgorithm(algorithm);
+            keyRing.afterPropertiesSet();
+            codec = new JwtCodec(keyRing);
+        } else {
+            codec = JwtCodec.hmac(SECRET);
+        }
+        issuedAt = System.currentTimeMillis() / 1000;
+        expiresAt = issuedAt + TimeUnit.DAYS.toSeconds(1);
+        token = codec.sign(subject, authorities, issuedAt, expiresAt);
+    }
+
+    @Benchmark
+    public String sign() {
+        return codec.sign(subject, authorities, issuedAt, expiresAt);
+    }
+
+    @Benchmark
+    public VerifiedPrincipal verify() {
+        return codec.verify(token, System.currentTimeMillis());
+    }
+
+}
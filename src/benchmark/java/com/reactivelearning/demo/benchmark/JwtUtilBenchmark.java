@@ -0,0 +1,53 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.security.jwt.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtUtilBenchmark
+ * - The JwtUtil calls on the request path: generateToken on login, isValid and extractUserFromJwt on every
+ * cookie-authenticated request that misses VerifiedTokenCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret";
+
+    private JwtUtil jwtUtil;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtil = new JwtUtil(SECRET);
+        user = new User("benchmark", "benchmark", "benchmark", Role.of("USER"));
+        user.setId(UUID.randomUUID());
+        token = jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return jwtUtil.isValid(token);
+    }
+
+    @Benchmark
+    public User extractUserFromJwt() {
+        return jwtUtil.extractUserFromJwt(token);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.dto.auth.LoginRequest;
+import com.reactivelearning.demo.dto.auth.LoginResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoginResultBenchmark
+ * - The second-factor step of a login, once the password and MFA row are in hand, for each outcome.
+ * - exceptions replicates the old pipeline: a missing or wrong code is raised as a RuntimeException, with its stack
+ * trace, and turned back into a flag-holding response by onErrorResume. results is the current one, where every
+ * outcome is a LoginResponse value.
+ * - Run with -prof gc and compare gc.alloc.rate.norm, the bytes allocated per login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginResultBenchmark {
+
+    private static final int CODE = 123456;
+
+    @Param({"authenticated", "totpRequired", "totpInvalid"})
+    public String outcome;
+
+    private LoginRequest request;
+
+    @Setup
+    public void setup() {
+        request = switch (outcome) {
+            case "authenticated" -> new LoginRequest(String.valueOf(CODE));
+            case "totpRequired" -> new LoginRequest();
+            default -> new LoginRequest("654321");
+        };
+    }
+
+    @Benchmark
+    public void exceptions(Blackhole blackhole) {
+        oldSecondFactor(request)
+                .onErrorResume(LegacyTotpNotProvided.class, error -> Mono.just(LegacyResponse.requires2fa("ticket")))
+                .onErrorResume(LegacyTotpInvalid.class, error -> Mono.just(LegacyResponse.invalid2fa()))
+                .subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void results(Blackhole blackhole) {
+        newSecondFactor(request).subscribe(blackhole::consume);
+    }
+
+    private static Mono<LegacyResponse> oldSecondFactor(LoginRequest request) {
+        if (!request.hasTotp()) {
+            return Mono.error(new LegacyTotpNotProvided("TOTP is required."));
+        }
+        if (Integer.parseInt(request.getTotp()) != CODE) {
+            return Mono.error(new LegacyTotpInvalid("TOTP is incorrect."));
+        }
+        return Mono.just(LegacyResponse.success("jwt"));
+    }
+
+    private static Mono<LoginResponse> newSecondFactor(LoginRequest request) {
+        if (!request.hasTotp()) {
+            return Mono.just(new LoginResponse.TotpRequired("ticket"));
+        }
+        if (request.totpCode() != CODE) {
+            return Mono.just(LoginResponse.TOTP_INVALID);
+        }
+        return Mono.just(new LoginResponse.Authenticated("jwt"));
+    }
+
+    /**
+     * The shape of the old LoginResponse, a bean with one flag per outcome
+     */
+    private static final class LegacyResponse {
+
+        private String jwtToken;
+        private String preAuthTicket;
+        private boolean success;
+        private boolean requires2fa;
+        private boolean invalid2fa;
+
+        static LegacyResponse success(String jwtToken) {
+            LegacyResponse response = new LegacyResponse();
+            response.jwtToken = jwtToken;
+            response.success = true;
+            return response;
+        }
+
+        static LegacyResponse requires2fa(String preAuthTicket) {
+            LegacyResponse response = new LegacyResponse();
+            response.preAuthTicket = preAuthTicket;
+            response.requires2fa = true;
+            return response;
+        }
+
+        static LegacyResponse invalid2fa() {
+            LegacyResponse response = new LegacyResponse();
+            response.invalid2fa = true;
+            return response;
+        }
+
+    }
+
+    private static final class LegacyTotpNotProvided extends RuntimeException {
+        LegacyTotpNotProvided(String message) {super(message);}
+    }
+
+    private static final class LegacyTotpInvalid extends RuntimeException {
+        LegacyTotpInvalid(String message) {super(message);}
+    }
+
+}
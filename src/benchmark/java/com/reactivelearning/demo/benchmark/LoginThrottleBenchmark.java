@@ -0,0 +1,72 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.security.throttle.LoginThrottle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoginThrottleBenchmark
+ * - LoginThrottle.acquire, the cost added to every login attempt, on 4 threads at once.
+ * - sharedKeys has every thread take from the same IP and username buckets, the worst case for CAS contention.
+ * distinctKeys spreads attempts over 10,000 IPs and usernames, as a credential-stuffing burst would.
+ * - The limits are set so high that every attempt is allowed, except in throttled, where every attempt is over
+ * budget and takes the rejection path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LoginThrottleBenchmark {
+
+    private static final int KEYS = 10_000;
+
+    private LoginThrottle open;
+    private LoginThrottle closed;
+    private String[] ips;
+    private String[] usernames;
+
+    @Setup
+    public void setup() {
+        open = throttle(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        closed = throttle(1, 1);
+        closed.acquire("10.0.0.1", "benchmark");
+
+        ips = new String[KEYS];
+        usernames = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            ips[i] = "10.0." + (i >> 8) + "." + (i & 0xff);
+            usernames[i] = "user" + i;
+        }
+    }
+
+    @Benchmark
+    public long sharedKeys() {
+        return open.acquire("10.0.0.1", "benchmark");
+    }
+
+    @Benchmark
+    public long distinctKeys() {
+        int i = ThreadLocalRandom.current().nextInt(KEYS);
+        return open.acquire(ips[i], usernames[i]);
+    }
+
+    @Benchmark
+    public long throttled() {
+        return closed.acquire("10.0.0.1", "benchmark");
+    }
+
+    private static LoginThrottle throttle(int burst, int perMinute) {
+        LoginThrottle throttle = new LoginThrottle(new SimpleMeterRegistry());
+        throttle.setIp(new LoginThrottle.Limit(burst, perMinute));
+        throttle.setUsername(new LoginThrottle.Limit(burst, perMinute));
+        throttle.afterPropertiesSet();
+        return throttle;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.aead.PredefinedAeadParameters;
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.security.crypto.CryptoExecutor;
+import com.reactivelearning.demo.security.crypto.MfaCipher;
+import com.reactivelearning.demo.security.totp.TotpEngine;
+import com.reactivelearning.demo.service.MfaService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.GeneralSecurityException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MfaBenchmark
+ * - The MFA work on the login path. cipherEncrypt, cipherDecrypt and totpVerify are the primitives MfaService
+ * delegates to. decryptMfa and validate go through MfaService itself, so they include the CryptoExecutor hop.
+ * - createMfa is left out, as it is cipherEncrypt plus a database write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MfaBenchmark {
+
+    private CryptoExecutor cryptoExecutor;
+    private MfaCipher mfaCipher;
+    private TotpEngine totpEngine;
+    private MfaService mfaService;
+
+    private String secret;
+    private Mfa encrypted;
+    private Mfa decrypted;
+    private int code;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        AeadConfig.register();
+        cryptoExecutor = new CryptoExecutor(new SimpleMeterRegistry());
+        cryptoExecutor.afterPropertiesSet();
+        mfaCipher = new MfaCipher(KeysetHandle.generateNew(PredefinedAeadParameters.AES256_GCM), event -> {});
+        totpEngine = new TotpEngine();
+        mfaService = new MfaService(mfaCipher, null, totpEngine, cryptoExecutor);
+
+        secret = totpEngine.createSecret();
+        encrypted = Mfa.of(UUID.randomUUID(), true, mfaCipher.encrypt(secret));
+        decrypted = Mfa.of(encrypted.getUsersId(), true, secret);
+        code = totpEngine.generate(decrypted, System.currentTimeMillis());
+    }
+
+    @TearDown
+    public void tearDown() {
+        cryptoExecutor.destroy();
+    }
+
+    @Benchmark
+    public String cipherEncrypt() {
+        return mfaCipher.encrypt(secret);
+    }
+
+    @Benchmark
+    public String cipherDecrypt() {
+        return mfaCipher.decrypt(encrypted.getMfaSecret());
+    }
+
+    @Benchmark
+    public boolean totpVerify() {
+        return totpEngine.verify(decrypted, code);
+    }
+
+    @Benchmark
+    public Mfa decryptMfa() {
+        return mfaService.decryptMfa(encrypted).block();
+    }
+
+    @Benchmark
+    public Boolean validate() {
+        return mfaService.validate(decrypted, code).block();
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.security.util.PasswordAlgorithm;
+import com.reactivelearning.demo.security.util.PasswordEncoderCalibrator;
+import com.reactivelearning.demo.security.util.PasswordHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordHandlerBenchmark
+ * - Hash and compare for each app.security.password.algorithm at its minimum cost, through the same
+ * DelegatingPasswordEncoder the server builds. Calibration only ever raises the cost from here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordHandlerBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"BCRYPT", "ARGON2", "PBKDF2"})
+    public PasswordAlgorithm algorithm;
+
+    private PasswordHandler passwordHandler;
+    private String hash;
+
+    @Setup
+    public void setup() {
+        PasswordEncoderCalibrator calibrator = new PasswordEncoderCalibrator();
+        calibrator.setAlgorithm(algorithm);
+        calibrator.setStrength(algorithm.getMinCost());
+        passwordHandler = new PasswordHandler(calibrator.build());
+        hash = passwordHandler.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return passwordHandler.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean compare() {
+        return passwordHandler.compare(PASSWORD, hash);
+    }
+
+}
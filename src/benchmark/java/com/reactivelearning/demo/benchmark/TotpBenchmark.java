@@ -0,0 +1,60 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.security.totp.TotpEngine;
+import com.warrenstrange.googleauth.GoogleAuthenticator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TotpBenchmark
+ * - Compares GoogleAuthenticator, as MfaService used it, against TotpEngine for verifying a code and for creating
+ * a secret.
+ * - Verification checks a wrong code, so both implementations walk the whole window.
+ * - Run with the gc profiler (the default jmh.args) to compare bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TotpBenchmark {
+
+    private GoogleAuthenticator authenticator;
+    private TotpEngine totpEngine;
+    private String secret;
+    private Mfa mfa;
+    private int wrongCode;
+
+    @Setup
+    public void setup() {
+        authenticator = new GoogleAuthenticator();
+        totpEngine = new TotpEngine();
+        secret = authenticator.createCredentials().getKey();
+        mfa = Mfa.of(null, true, secret);
+        wrongCode = (totpEngine.generate(mfa, System.currentTimeMillis()) + 500_000) % 1_000_000;
+    }
+
+    @Benchmark
+    public boolean googleAuthorize() {
+        return authenticator.authorize(secret, wrongCode);
+    }
+
+    @Benchmark
+    public boolean engineVerify() {
+        return totpEngine.verify(mfa, wrongCode);
+    }
+
+    @Benchmark
+    public String googleCreateCredentials() {
+        return authenticator.createCredentials().getKey();
+    }
+
+    @Benchmark
+    public String engineCreateSecret() {
+        return totpEngine.createSecret();
+    }
+
+}
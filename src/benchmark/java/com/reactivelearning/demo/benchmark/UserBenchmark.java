@@ -0,0 +1,37 @@
+package com.reactivelearning.demo.benchmark;
+
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserBenchmark
+ * - User.getAuthorities, called by CookieFilter for every authenticated request and by Spring Security on login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        user = new User("benchmark", "benchmark", "benchmark");
+        user.setRoles(List.of(Role.of("USER"), Role.of("ADMIN")));
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+
+}
@@ -0,0 +1,412 @@
+package com.reactivelearning.demo.load;
+
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.security.totp.TotpEngine;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadGenerator
+ * - An open-model load driver for the register, login and CRUD flows. For each transport profile and server
+ * event-loop count it boots DemoApplication, registers the users up front, then starts requests at a fixed rate whether or not earlier
+ * ones have finished, mixing the operations in LoadOperation.
+ * - Each request's latency is measured from the time it was scheduled to start, not the time it was sent. A
+ * stalled server or driver therefore shows up in the percentiles instead of being hidden by sending less, which
+ * is the coordinated-omission correction.
+ * - Prints p50, p99 and p99.9 per operation, then throughput and latency for every profile and event-loop count.
+ * - Run with: mvn -Pbenchmark test-compile exec:exec@load -Dload.args="--rate=500 --event-loops=1,2,4 --profiles=nio,epoll"
+ */
+public final class LoadGenerator {
+
+    private static final String PASSWORD = "load-password";
+    private static final String COOKIE = "reactive_authn_authz";
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(1);
+    private static final int SETUP_CONCURRENCY = 16;
+    // Setup requests beyond a bulkhead's limit are shed with a 503, and tried again
+    private static final Retry SHED = Retry.backoff(20, Duration.ofMillis(50))
+            .filter(error -> error instanceof WebClientResponseException.ServiceUnavailable);
+
+    // Set when a request could not be made at all, e.g. no connection, or no user left to delete
+    private static final int NO_RESPONSE = -1;
+    private static final int NO_USER = -2;
+
+    private final LoadOptions options;
+    private final LoopResources clientLoops;
+    private final ConnectionProvider connections;
+    private final WebClient client;
+    private final DatabaseClient databaseClient;
+    private final TotpEngine totpEngine = new TotpEngine();
+
+    private final Map<LoadOperation, OperationStats> stats = new EnumMap<>(LoadOperation.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private List<LoadUser> users;
+    private List<LoadUser> mfaUsers;
+    private Queue<LoadUser> disposableUsers;
+
+    private LoadGenerator(LoadOptions options, TransportProfile profile, LoadServer server) {
+        this.options = options;
+        this.clientLoops = LoopResources.create("load-client", options.clientLoops(), true);
+        this.connections = ConnectionProvider.builder("load-client")
+                .maxConnections(options.maxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.client = WebClient.builder()
+                .baseUrl("http://localhost:" + server.port())
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)
+                        .protocol(profile.getClientProtocol())
+                        .runOn(clientLoops)))
+                .build();
+        this.databaseClient = server.bean(DatabaseClient.class);
+        for (LoadOperation operation : LoadOperation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) {
+
+        LoadOptions options = LoadOptions.parse(args);
+        List<RunSummary> summaries = new ArrayList<>();
+
+        for (TransportProfile profile : options.profiles()) {
+            for (int eventLoops : options.eventLoops()) {
+                try (LoadServer server = LoadServer.start(profile, eventLoops)) {
+                    LoadGenerator generator = new LoadGenerator(options, profile, server);
+                    try {
+                        generator.setup();
+                        summaries.add(generator.run(profile, eventLoops));
+                    } finally {
+                        generator.connections.dispose();
+                        generator.clientLoops.dispose();
+                    }
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-16s %-12s %12s %12s %10s %10s %10s%n",
+                "profile", "event loops", "offered/s", "ok/s", "p50 ms", "p99 ms", "p99.9 ms");
+        for (RunSummary summary : summaries) {
+            System.out.printf("%-16s %-12d %12d %12.1f %10.2f %10.2f %10.2f%n",
+                    summary.profile().getId(), summary.eventLoops(), options.rate(), summary.throughput(),
+                    millis(summary.latency(), 50), millis(summary.latency(), 99), millis(summary.latency(), 99.9));
+        }
+
+    }
+
+    // Setup
+
+    /**
+     * Registers the shared users and enables MFA for the first mfa-share of them, then logs the rest in for their
+     * cookies. Users for DELETE are registered separately, enough for the whole run, so no shared user is deleted.
+     */
+    private void setup() {
+
+        int mfaCount = (int) Math.round(options.users() * options.mfaShare());
+        List<LoadUser> registered = register("load", options.users());
+
+        mfaUsers = registered.subList(0, mfaCount);
+        Flux.fromIterable(mfaUsers)
+                .flatMap(user -> databaseClient.sql("UPDATE mfa SET enabled = TRUE WHERE users_id = :id")
+                        .bind("id", user.id())
+                        .fetch()
+                        .rowsUpdated(), SETUP_CONCURRENCY)
+                .blockLast();
+
+        users = logIn(registered.subList(mfaCount, registered.size()));
+
+        // With headroom, as the mix is random
+        long deletes = Math.round(options.totalRequests() * weightOf(LoadOperation.DELETE) * 1.5) + 10;
+        disposableUsers = new ConcurrentLinkedQueue<>(logIn(register("disposable", (int) deletes)));
+
+        if (users.isEmpty() && (weightOf(LoadOperation.LOGIN) + weightOf(LoadOperation.LIST) + weightOf(LoadOperation.UPDATE)) > 0) {
+            throw new IllegalArgumentException("login, list and update need users without MFA, lower --mfa-share");
+        }
+        if (mfaUsers.isEmpty() && weightOf(LoadOperation.TOTP) > 0) {
+            throw new IllegalArgumentException("totp needs users with MFA, raise --mfa-share");
+        }
+
+        System.out.printf("Registered %d users (%d with MFA) and %d to delete%n",
+                registered.size(), mfaUsers.size(), disposableUsers.size());
+
+    }
+
+    private List<LoadUser> register(String prefix, int count) {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        return Flux.range(0, count)
+                .flatMap(i -> client.post()
+                        .uri("/api/v1/auth/register")
+                        .bodyValue(Map.of(
+                                "username", prefix + "-" + run + "-" + i,
+                                "password", PASSWORD,
+                                "email", prefix + i + "@load.test"))
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .map(uri -> LoadUser.fromOtpAuthUri(prefix + "-" + run + "-" + i, uri))
+                        .retryWhen(SHED), SETUP_CONCURRENCY)
+                .collectList()
+                .block();
+    }
+
+    private List<LoadUser> logIn(List<LoadUser> toLogIn) {
+        return Flux.fromIterable(toLogIn)
+                .flatMap(user -> passwordLogin(user, code(user))
+                        .exchangeToMono(response -> {
+                            if (response.statusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE)) {
+                                return response.createError();
+                            }
+                            ResponseCookie cookie = response.cookies().getFirst(COOKIE);
+                            return response.releaseBody()
+                                    .then(Mono.justOrEmpty(cookie))
+                                    .map(found -> user.withCookie(found.getValue()));
+                        })
+                        .retryWhen(SHED), SETUP_CONCURRENCY)
+                .collectList()
+                .block();
+    }
+
+    // Run
+
+    private RunSummary run(TransportProfile profile, int eventLoops) {
+
+        System.out.printf("%n== %s, %d server event loops: %d req/s for %s after %s warmup ==%n",
+                profile.getId(), eventLoops, options.rate(), options.duration(), options.warmup());
+
+        long period = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long recordFrom = start + options.warmup().toNanos();
+        long end = recordFrom + options.duration().toNanos();
+
+        for (long i = 0; ; i++) {
+
+            long intended = start + i * period;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            LoadOperation operation = pick();
+            OperationStats operationStats = intended >= recordFrom ? stats.get(operation) : null;
+
+            if (inFlight.get() >= options.maxInFlight()) {
+                if (operationStats != null) {
+                    operationStats.dropped.increment();
+                }
+                continue;
+            }
+
+            inFlight.incrementAndGet();
+            execute(operation)
+                    .onErrorReturn(NO_RESPONSE)
+                    .subscribe(status -> {
+                        inFlight.decrementAndGet();
+                        if (operationStats != null) {
+                            operationStats.record(status, System.nanoTime() - intended);
+                        }
+                    });
+
+        }
+
+        long drainUntil = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        return report(profile, eventLoops);
+
+    }
+
+    private LoadOperation pick() {
+        int total = options.mix().values().stream().mapToInt(Integer::intValue).sum();
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<LoadOperation, Integer> entry : options.mix().entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+
+    private Mono<Integer> execute(LoadOperation operation) {
+        return switch (operation) {
+            case LOGIN -> {
+                LoadUser user = any(users);
+                yield status(passwordLogin(user, code(user)));
+            }
+            case LIST -> status(client.get()
+                    .uri("/api/v1/users")
+                    .cookie(COOKIE, any(users).cookie()));
+            case UPDATE -> {
+                LoadUser user = any(users);
+                yield status(client.put()
+                        .uri("/api/v1/users/{id}", user.id())
+                        .cookie(COOKIE, user.cookie())
+                        .bodyValue(Map.of("email", "updated-" + System.nanoTime() + "@load.test")));
+            }
+            case DELETE -> {
+                LoadUser user = disposableUsers.poll();
+                yield user == null
+                        ? Mono.just(NO_USER)
+                        : status(client.delete()
+                                .uri("/api/v1/users/{id}", user.id())
+                                .cookie(COOKIE, user.cookie()));
+            }
+            case TOTP -> {
+                LoadUser user = any(mfaUsers);
+                yield passwordLogin(user, null)
+                        .exchangeToMono(response -> response.statusCode().isSameCodeAs(HttpStatus.ACCEPTED)
+                                ? response.bodyToMono(String.class)
+                                        .flatMap(ticket -> status(client.post()
+                                                .uri("/api/v1/auth/login/totp")
+                                                .bodyValue(Map.of("ticket", ticket, "totp", code(user)))))
+                                : response.releaseBody().thenReturn(response.statusCode().value()));
+            }
+        };
+    }
+
+    private WebClient.RequestHeadersSpec<?> passwordLogin(LoadUser user, String totp) {
+        return client.post()
+                .uri("/api/v1/auth/login")
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString(
+                        (user.username() + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8)))
+                .bodyValue(totp == null ? Map.of() : Map.of("totp", totp));
+    }
+
+    private static Mono<Integer> status(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().value()));
+    }
+
+    private String code(LoadUser user) {
+        return String.format("%06d", totpEngine.generate(user.mfa(), System.currentTimeMillis()));
+    }
+
+    private double weightOf(LoadOperation operation) {
+        int total = options.mix().values().stream().mapToInt(Integer::intValue).sum();
+        return (double) options.mix().getOrDefault(operation, 0) / total;
+    }
+
+    private static LoadUser any(List<LoadUser> from) {
+        return from.get(ThreadLocalRandom.current().nextInt(from.size()));
+    }
+
+    // Report
+
+    private RunSummary report(TransportProfile profile, int eventLoops) {
+
+        Histogram all = new Histogram(HIGHEST_MICROS, 3);
+        long ok = 0;
+
+        System.out.printf("%-8s %9s %9s %9s %9s %10s %10s %10s %10s  %s%n",
+                "op", "count", "ok", "failed", "dropped", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+
+        for (Map.Entry<LoadOperation, OperationStats> entry : stats.entrySet()) {
+            OperationStats operationStats = entry.getValue();
+            Histogram histogram = operationStats.histogram;
+            if (histogram.getTotalCount() == 0 && operationStats.dropped.sum() == 0) {
+                continue;
+            }
+            all.add(histogram);
+            ok += operationStats.ok.sum();
+            System.out.printf("%-8s %9d %9d %9d %9d %10.2f %10.2f %10.2f %10.2f  %s%n",
+                    entry.getKey().getId(),
+                    histogram.getTotalCount(),
+                    operationStats.ok.sum(),
+                    operationStats.failed.sum(),
+                    operationStats.dropped.sum(),
+                    millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0,
+                    operationStats.statuses);
+        }
+
+        double throughput = ok / (double) options.duration().toSeconds();
+        System.out.printf("%-8s %9d %9d %9s %9s %10.2f %10.2f %10.2f %10.2f%n",
+                "all", all.getTotalCount(), ok, "", "",
+                millis(all, 50), millis(all, 99), millis(all, 99.9), all.getMaxValue() / 1000.0);
+        System.out.printf("Throughput: %.1f ok/s%n", throughput);
+
+        return new RunSummary(profile, eventLoops, throughput, all);
+
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * The outcome of one operation type. Written from the client event loops, read once the run has drained.
+     */
+    private static final class OperationStats {
+
+        private final ConcurrentHistogram histogram = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        private void record(int status, long latencyNanos) {
+            histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_MICROS));
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+            if (status >= 200 && status < 300) {
+                ok.increment();
+            } else {
+                failed.increment();
+            }
+        }
+
+    }
+
+    /**
+     * A registered user, as the driver knows them from the otpauth URI /register returned.
+     */
+    private record LoadUser(UUID id, String username, Mfa mfa, String cookie) {
+
+        static LoadUser fromOtpAuthUri(String username, String uri) {
+            UUID id = UUID.fromString(uri.substring(uri.indexOf("ReactiveAuth:") + 13, uri.indexOf("?secret=")));
+            String secret = uri.substring(uri.indexOf("secret=") + 7, uri.indexOf("&issuer="));
+            return new LoadUser(id, username, Mfa.of(id, true, secret), null);
+        }
+
+        LoadUser withCookie(String cookie) {
+            return new LoadUser(id, username, mfa, cookie);
+        }
+
+    }
+
+    private record RunSummary(TransportProfile profile, int eventLoops, double throughput, Histogram latency) {}
+
+}
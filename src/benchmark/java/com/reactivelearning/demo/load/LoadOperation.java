@@ -0,0 +1,38 @@
+package com.reactivelearning.demo.load;
+
+/**
+ * The operations a load run mixes, each recorded in its own histogram.
+ */
+enum LoadOperation {
+
+    /** HTTP Basic POST /api/v1/auth/login with a TOTP code, by a user without MFA */
+    LOGIN("login"),
+    /** Cookie-authenticated GET /api/v1/users */
+    LIST("list"),
+    /** Cookie-authenticated PUT /api/v1/users/{id}, changing the email */
+    UPDATE("update"),
+    /** Cookie-authenticated DELETE /api/v1/users/{id}, against users registered only to be deleted */
+    DELETE("delete"),
+    /** Both legs of an MFA login: the password step for a ticket, then POST /api/v1/auth/login/totp */
+    TOTP("totp");
+
+    private final String id;
+
+    LoadOperation(String id) {
+        this.id = id;
+    }
+
+    static LoadOperation fromId(String id) {
+        for (LoadOperation operation : values()) {
+            if (operation.id.equals(id)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + id);
+    }
+
+    String getId() {
+        return id;
+    }
+
+}
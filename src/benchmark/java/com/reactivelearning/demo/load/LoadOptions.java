@@ -0,0 +1,94 @@
+package com.reactivelearning.demo.load;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LoadOptions
+ * - The knobs of a load run, parsed from --name=value arguments. Anything not given keeps its default.
+ * @param users int : Users registered up front and shared by the login, list and update operations
+ * @param mfaShare double : The fraction of those users with MFA enabled, used by the TOTP operation
+ * @param rate int : Requests started per second, regardless of how many are still in flight
+ * @param warmup Duration : Load applied before recording starts
+ * @param duration Duration : Load applied while recording
+ * @param eventLoops List : Server event-loop thread counts. The server is booted once per count and profile.
+ * @param profiles List : The server transport profiles to compare
+ * @param clientLoops int : Event-loop threads of the driver's own WebClient
+ * @param maxInFlight int : Requests in flight beyond which new ones are dropped, and counted as errors
+ * @param mix Map : The relative weight of each operation
+ */
+record LoadOptions(
+        int users,
+        double mfaShare,
+        int rate,
+        Duration warmup,
+        Duration duration,
+        List<Integer> eventLoops,
+        List<TransportProfile> profiles,
+        int clientLoops,
+        int maxInFlight,
+        Map<LoadOperation, Integer> mix) {
+
+    static LoadOptions parse(String[] args) {
+
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        LoadOptions options = new LoadOptions(
+                Integer.parseInt(values.getOrDefault("users", "200")),
+                Double.parseDouble(values.getOrDefault("mfa-share", "0.25")),
+                Integer.parseInt(values.getOrDefault("rate", "50")),
+                Duration.parse("PT" + values.getOrDefault("warmup", "10s")),
+                Duration.parse("PT" + values.getOrDefault("duration", "30s")),
+                Arrays.stream(values.getOrDefault("event-loops", "1,2,4").split(","))
+                        .map(String::trim)
+                        .map(Integer::parseInt)
+                        .toList(),
+                Arrays.stream(values.getOrDefault("profiles", "nio,epoll").split(","))
+                        .map(String::trim)
+                        .map(TransportProfile::fromId)
+                        .toList(),
+                Integer.parseInt(values.getOrDefault("client-loops", "2")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "10000")),
+                parseMix(values.getOrDefault("mix", "login:20,list:40,update:15,delete:5,totp:20")));
+
+        values.keySet().removeAll(List.of(
+                "users", "mfa-share", "rate", "warmup", "duration", "event-loops", "profiles", "client-loops",
+                "max-in-flight", "mix"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+
+        return options;
+
+    }
+
+    /**
+     * Parses a mix such as login:20,list:40. Operations left out get no weight.
+     */
+    private static Map<LoadOperation, Integer> parseMix(String mix) {
+        Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(LoadOperation.fromId(parts[0]), Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    /**
+     * The number of operations the run will start, at most
+     */
+    long totalRequests() {
+        return (long) rate * warmup.plus(duration).toSeconds();
+    }
+
+}
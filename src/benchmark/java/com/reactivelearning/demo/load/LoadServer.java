@@ -0,0 +1,54 @@
+package com.reactivelearning.demo.load;
+
+import com.reactivelearning.demo.DemoApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LoadServer
+ * - Boots DemoApplication on a random port, with its own in-memory database, the given transport profile and number
+ * of event-loop threads, so each run starts from the same state. Login throttling is off, admission control is not.
+ */
+final class LoadServer implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private LoadServer(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    static LoadServer start(TransportProfile profile, int eventLoops) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--app.server.transport.worker-threads=" + eventLoops,
+                "--spring.r2dbc.url=r2dbc:h2:mem:///load_" + profile.name().toLowerCase() + eventLoops + ";DB_CLOSE_ON_EXIT=TRUE;",
+                // The driver logs the same users in again and again, which the per-username budget would throttle
+                "--app.security.login-throttle.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.io.r2dbc.h2=ERROR"));
+        args.addAll(profile.arguments());
+        return new LoadServer(new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                // As arguments, so they take precedence over application.yaml
+                .run(args.toArray(String[]::new)));
+    }
+
+    int port() {
+        return ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+}
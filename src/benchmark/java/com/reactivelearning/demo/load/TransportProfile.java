@@ -0,0 +1,56 @@
+package com.reactivelearning.demo.load;
+
+import reactor.netty.http.HttpProtocol;
+
+import java.util.List;
+
+/**
+ * The server transport settings a load run compares, each applied through app.server.transport. The driver talks
+ * to the server over clientProtocol.
+ */
+enum TransportProfile {
+
+    /** NIO with pooled heap buffers, close to Spring Boot's own defaults */
+    NIO("nio", List.of("transport=nio", "allocator=pooled-heap"), HttpProtocol.HTTP11),
+    /** Native epoll with pooled direct buffers, the configured default */
+    EPOLL("epoll", List.of("transport=epoll", "allocator=pooled-direct"), HttpProtocol.HTTP11),
+    /** Native epoll, allocating and freeing a buffer each time */
+    EPOLL_UNPOOLED("epoll-unpooled", List.of("transport=epoll", "allocator=unpooled"), HttpProtocol.HTTP11),
+    /** Native epoll, with the driver multiplexing its requests over HTTP/2 cleartext */
+    EPOLL_H2C("epoll-h2c", List.of("transport=epoll", "allocator=pooled-direct", "http2-cleartext=true"), HttpProtocol.H2C);
+
+    private final String id;
+    private final List<String> settings;
+    private final HttpProtocol clientProtocol;
+
+    TransportProfile(String id, List<String> settings, HttpProtocol clientProtocol) {
+        this.id = id;
+        this.settings = settings;
+        this.clientProtocol = clientProtocol;
+    }
+
+    static TransportProfile fromId(String id) {
+        for (TransportProfile profile : values()) {
+            if (profile.id.equals(id)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transport profile " + id);
+    }
+
+    /**
+     * The profile's settings as command-line arguments
+     */
+    List<String> arguments() {
+        return settings.stream().map(setting -> "--app.server.transport." + setting).toList();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    HttpProtocol getClientProtocol() {
+        return clientProtocol;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.reactivelearning.demo.audit;
+
+import java.time.Instant;
+
+/**
+ * One entry of the audit log.
+ * @param timestamp long : When the event happened, in epoch milliseconds
+ * @param type AuditType : What happened
+ * @param username String : The user it happened to, as given, or null if unknown (e.g. a bad pre-auth ticket)
+ */
+public record AuditEvent(long timestamp, AuditType type, String username) {
+
+    public Instant instant() {
+        return Instant.ofEpochMilli(timestamp);
+    }
+
+}
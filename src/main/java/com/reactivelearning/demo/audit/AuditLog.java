@@ -0,0 +1,315 @@
+package com.reactivelearning.demo.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * AuditLog
+ * - An append-only trail of authentication events (logins, failed passwords and TOTP codes, registrations,
+ * deletions), kept off the request path. record() only places the event in an AuditRing and returns.
+ * - A single writer thread drains the ring into segment files of segmentSize, memory-mapped, and rolls to a new one
+ * when the current one is full. Segments are forced to disk every syncInterval while there is something new, and
+ * when the application stops. Past maxSegments, the oldest are deleted.
+ * - When the ring runs dry the writer spins briefly, then parks until record() wakes it, or until a sync is due. An
+ * idle log does not wake up at all.
+ * - At startup the newest segment, the one a crash may have left unsynced, has its header rebuilt from its records
+ * before anything is written, so scans can trust the header of every segment but the one being written.
+ * - When the ring is full the event is dropped and counted, a request never waits on the disk. Events are counted
+ * under audit.events, tagged written, dropped or failed (the writer could not store them), and the backlog is
+ * published as audit.backlog.
+ * - scan() reads the events of a time range back, segment by segment, off the event loop.
+ * - Uses ConfigurationProperties, copying from app.audit
+ */
+@Component
+@ConfigurationProperties(prefix = "app.audit")
+public class AuditLog implements InitializingBean, DisposableBean {
+
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".seg";
+    private static final int SPINS = 100;
+
+    private boolean enabled = true;
+    private Path directory = Path.of("audit");
+    private int capacity = 8192;
+    private DataSize segmentSize = DataSize.ofMegabytes(16);
+    private int maxSegments = 64;
+    private Duration syncInterval = Duration.ofSeconds(1);
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+
+    private AuditRing<AuditEvent> ring;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean sleeping;
+    private volatile Path activePath;
+
+    private final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    @Autowired
+    public AuditLog(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.written = Counter.builder("audit.events")
+                .tag("outcome", "written")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("audit.events")
+                .tag("outcome", "dropped")
+                .register(meterRegistry);
+        this.failed = Counter.builder("audit.events")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Path> existing = segments();
+        if (!existing.isEmpty()) {
+            try {
+                AuditSegment.recover(existing.getLast());
+            } catch (IOException ex) {
+                logger.warn("Could not recover audit segment {}: {}", existing.getLast(), ex.getMessage());
+            }
+        }
+        ring = new AuditRing<>(capacity);
+        Gauge.builder("audit.backlog", ring, AuditRing::size)
+                .register(meterRegistry);
+        running = true;
+        writer = Thread.ofPlatform()
+                .name("audit-writer")
+                .daemon(true)
+                .start(this::drain);
+        logger.info("Audit log writing to {}", directory.toAbsolutePath());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer != null) {
+            running = false;
+            LockSupport.unpark(writer);
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Record
+     * - Queues an event for the writer, timestamped now, and wakes the writer if it is parked. Never blocks.
+     * @param type AuditType : What happened
+     * @param username String : The user it happened to, or null if unknown
+     */
+    public void record(AuditType type, String username) {
+        if (ring == null) {
+            return;
+        }
+        if (!ring.offer(new AuditEvent(System.currentTimeMillis(), type, username))) {
+            dropped.increment();
+        } else if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Scan
+     * - Reads back the events of a time range, oldest segment first
+     * @param from Instant : The earliest time to include
+     * @param to Instant : The latest time to include
+     * @return AuditEvent : The events written in the range. Events still queued are not included.
+     */
+    public Flux<AuditEvent> scan(Instant from, Instant to) {
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        return Mono.fromCallable(this::segments)
+                .flatMapIterable(segments -> segments)
+                .concatMap(segment -> Mono.fromCallable(() ->
+                                AuditSegment.read(segment, fromMillis, toMillis, !segment.equals(activePath)))
+                        .onErrorResume(IOException.class, ex -> {
+                            logger.warn("Skipping unreadable audit segment {}: {}", segment, ex.getMessage());
+                            return Mono.just(List.of());
+                        }))
+                .flatMapIterable(events -> events)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Private methods
+
+    /**
+     * The writer thread's loop: spins briefly when the ring runs dry, then parks until woken, or only until the next
+     * sync while there are unsynced writes. Once stopped, it drains what is left before closing the segment.
+     */
+    private void drain() {
+
+        AuditSegment segment = null;
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        int idle = 0;
+
+        try {
+            while (true) {
+
+                AuditEvent event = ring.poll();
+                if (event != null) {
+                    segment = append(segment, event);
+                    unsynced = true;
+                    idle = 0;
+                } else if (!running && ring.size() == 0) {
+                    break;
+                } else if (++idle < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    long untilSync = syncInterval.toNanos() - (System.nanoTime() - lastSync);
+                    if (!unsynced || untilSync > 0) {
+                        park(unsynced ? untilSync : 0);
+                    }
+                }
+
+                if (unsynced && System.nanoTime() - lastSync >= syncInterval.toNanos()) {
+                    if (segment != null) {
+                        segment.sync();
+                    }
+                    lastSync = System.nanoTime();
+                    unsynced = false;
+                }
+
+            }
+        } finally {
+            close(segment);
+        }
+
+    }
+
+    /**
+     * Parks the writer for at most nanos, or until unparked if nanos is 0. sleeping is raised before the ring is
+     * checked one last time, and record() reads it after its offer, so an event offered in between always wakes the
+     * writer.
+     */
+    private void park(long nanos) {
+        sleeping = true;
+        if (running && ring.size() == 0) {
+            if (nanos > 0) {
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        sleeping = false;
+    }
+
+    /**
+     * Appends to the current segment, rolling to a new one if it is full or there is none yet
+     */
+    private AuditSegment append(AuditSegment segment, AuditEvent event) {
+        try {
+            if (segment == null || !segment.append(event)) {
+                close(segment);
+                segment = roll();
+                if (!segment.append(event)) {
+                    throw new IOException("Audit record does not fit in a segment of " + segmentSize);
+                }
+            }
+            written.increment();
+            return segment;
+        } catch (IOException | RuntimeException ex) {
+            failed.increment();
+            logger.error("Failed to write audit event {}: {}", event.type(), ex.getMessage());
+            return segment;
+        }
+    }
+
+    /**
+     * Opens the segment after the newest one on disk, then deletes the oldest past maxSegments
+     */
+    private AuditSegment roll() throws IOException {
+        List<Path> segments = segments();
+        long next = segments.isEmpty() ? 1 : sequence(segments.getLast()) + 1;
+        Path path = directory.resolve(String.format("%s%016d%s", PREFIX, next, SUFFIX));
+        AuditSegment segment = AuditSegment.create(path, (int) Math.min(segmentSize.toBytes(), Integer.MAX_VALUE));
+        activePath = path;
+        for (int i = 0; i < segments.size() + 1 - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+        return segment;
+    }
+
+    private void close(AuditSegment segment) {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException ex) {
+            logger.error("Failed to close audit segment {}: {}", segment.getPath(), ex.getMessage());
+        }
+    }
+
+    /**
+     * The segment files in the directory, oldest first
+     */
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long sequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    // Getters / Setters
+
+    public boolean isEnabled() {return enabled;}
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+
+    public Path getDirectory() {return directory;}
+    public void setDirectory(Path directory) {this.directory = directory;}
+
+    public int getCapacity() {return capacity;}
+    public void setCapacity(int capacity) {this.capacity = capacity;}
+
+    public DataSize getSegmentSize() {return segmentSize;}
+    public void setSegmentSize(DataSize segmentSize) {this.segmentSize = segmentSize;}
+
+    public int getMaxSegments() {return maxSegments;}
+    public void setMaxSegments(int maxSegments) {this.maxSegments = maxSegments;}
+
+    public Duration getSyncInterval() {return syncInterval;}
+    public void setSyncInterval(Duration syncInterval) {this.syncInterval = syncInterval;}
+
+}
@@ -0,0 +1,80 @@
+package com.reactivelearning.demo.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * AuditRing
+ * - A bounded, lock-free queue for many producers and a single consumer, holding capacity elements (rounded up to a
+ * power of two).
+ * - A producer claims a sequence number with one CAS, then publishes its element into that slot. The consumer takes
+ * slots in sequence order, clearing each before it moves on, so a slot is only reused once it has been read.
+ * - A full ring rejects the offer instead of waiting, so producers never block.
+ * @param <E> The element type
+ */
+public final class AuditRing<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final int capacity;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    public AuditRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, was " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.mask = this.capacity - 1;
+    }
+
+    /**
+     * Offer
+     * - Adds an element, from any thread
+     * @param element E : The element, not null
+     * @return boolean : false if the ring is full and the element was not added
+     */
+    public boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.setRelease((int) (sequence & mask), element);
+        return true;
+    }
+
+    /**
+     * Poll
+     * - Takes the oldest element. Must only be called from the consumer thread.
+     * @return E : The element, or null if there is none yet. An element still being published reads as null.
+     */
+    public E poll() {
+        long sequence = head.get();
+        int slot = (int) (sequence & mask);
+        E element = slots.getAcquire(slot);
+        if (element == null) {
+            return null;
+        }
+        slots.setRelease(slot, null);
+        head.set(sequence + 1);
+        return element;
+    }
+
+    /**
+     * Size
+     * @return int : The elements claimed and not yet taken, including any still being published
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+}
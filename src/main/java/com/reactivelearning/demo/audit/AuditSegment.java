@@ -0,0 +1,253 @@
+package com.reactivelearning.demo.audit;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * AuditSegment
+ * - One file of the audit log, memory-mapped at its full size when created and filled front to back.
+ * - Layout, big-endian: a 32-byte header (magic, format version, earliest and latest timestamp), then records of
+ * [int length][long timestamp][byte type][short username length, -1 for null][username, UTF-8]. The length covers
+ * everything after itself, and is written after the rest of the record, so a zero length marks the end.
+ * - The header's timestamps are updated on every sync, and let a scan skip segments outside its range. A crash can
+ * leave them behind the records, so recover() rebuilds them from the records of a segment that was not closed.
+ * - Only the single audit writer appends to a segment. Any thread may read one.
+ */
+public final class AuditSegment implements AutoCloseable {
+
+    static final int MAGIC = 0x41554431; // "AUD1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int MAX_USERNAME_BYTES = 1024;
+
+    private static final int MIN_TIMESTAMP_OFFSET = 8;
+    private static final int MAX_TIMESTAMP_OFFSET = 16;
+    private static final int FIXED_RECORD_SIZE = Integer.BYTES + Long.BYTES + Byte.BYTES + Short.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private int position = HEADER_SIZE;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private boolean dirty;
+
+    private AuditSegment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Create
+     * - Creates and maps a new, empty segment
+     * @param path Path : The file, which must not exist yet
+     * @param size int : The segment's size in bytes, header included
+     * @return AuditSegment : The segment, ready to append to
+     * @throws IOException : If the file cannot be created or mapped
+     */
+    public static AuditSegment create(Path path, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            AuditSegment segment = new AuditSegment(path, channel, buffer);
+            segment.writeHeader();
+            return segment;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Append
+     * - Writes one event after the last
+     * @param event AuditEvent : The event to write
+     * @return boolean : false if the segment has no room left for it
+     */
+    public boolean append(AuditEvent event) {
+
+        byte[] username = event.username() == null ? null : encode(event.username());
+        int length = FIXED_RECORD_SIZE - Integer.BYTES + (username == null ? 0 : username.length);
+        if (position + Integer.BYTES + length > buffer.capacity()) {
+            return false;
+        }
+
+        int offset = position + Integer.BYTES;
+        buffer.putLong(offset, event.timestamp());
+        buffer.put(offset + Long.BYTES, event.type().getCode());
+        buffer.putShort(offset + Long.BYTES + Byte.BYTES, (short) (username == null ? -1 : username.length));
+        if (username != null) {
+            buffer.put(offset + FIXED_RECORD_SIZE - Integer.BYTES, username);
+        }
+        buffer.putInt(position, length);
+
+        position += Integer.BYTES + length;
+        minTimestamp = Math.min(minTimestamp, event.timestamp());
+        maxTimestamp = Math.max(maxTimestamp, event.timestamp());
+        dirty = true;
+        return true;
+
+    }
+
+    /**
+     * Sync
+     * - Updates the header and forces everything written so far to disk, if anything was
+     */
+    public void sync() {
+        if (dirty) {
+            writeHeader();
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    public boolean isEmpty() {
+        return position == HEADER_SIZE;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    /**
+     * Recover
+     * - Rebuilds a segment's header from the records in it, and forces it to disk. For a segment that may not have
+     * been synced before a crash, so that its header can be trusted again.
+     * @param path Path : The segment file, which no writer has open
+     * @throws IOException : If the file cannot be read or written, or is not a segment
+     */
+    public static void recover(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an audit segment: " + path);
+            }
+
+            long minTimestamp = Long.MAX_VALUE;
+            long maxTimestamp = Long.MIN_VALUE;
+            int position = HEADER_SIZE;
+            while (position + Integer.BYTES <= size) {
+                int length = buffer.getInt(position);
+                if (length < FIXED_RECORD_SIZE - Integer.BYTES || position + Integer.BYTES + length > size) {
+                    break;
+                }
+                long timestamp = buffer.getLong(position + Integer.BYTES);
+                minTimestamp = Math.min(minTimestamp, timestamp);
+                maxTimestamp = Math.max(maxTimestamp, timestamp);
+                position += Integer.BYTES + length;
+            }
+
+            if (buffer.getLong(MIN_TIMESTAMP_OFFSET) != minTimestamp || buffer.getLong(MAX_TIMESTAMP_OFFSET) != maxTimestamp) {
+                buffer.putLong(MIN_TIMESTAMP_OFFSET, minTimestamp);
+                buffer.putLong(MAX_TIMESTAMP_OFFSET, maxTimestamp);
+                buffer.force();
+            }
+
+        }
+
+    }
+
+    /**
+     * Read
+     * - Reads the events of a segment that fall within a time range, in the order they were written
+     * @param path Path : The segment file
+     * @param from long : The earliest timestamp to include, in epoch milliseconds
+     * @param to long : The latest timestamp to include, in epoch milliseconds
+     * @param trustHeader boolean : Whether the header's time range is final, so the segment can be skipped on it.
+     * Not so for the segment still being written, whose header lags behind until the next sync.
+     * @return List : The matching events
+     * @throws IOException : If the file cannot be read, or is not a segment
+     */
+    public static List<AuditEvent> read(Path path, long from, long to, boolean trustHeader) throws IOException {
+
+        List<AuditEvent> events = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return events;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an audit segment: " + path);
+            }
+            if (trustHeader && (buffer.getLong(MIN_TIMESTAMP_OFFSET) > to || buffer.getLong(MAX_TIMESTAMP_OFFSET) < from)) {
+                return events;
+            }
+
+            int position = HEADER_SIZE;
+            while (position + Integer.BYTES <= size) {
+                int length = buffer.getInt(position);
+                if (length < FIXED_RECORD_SIZE - Integer.BYTES || position + Integer.BYTES + length > size) {
+                    break;
+                }
+                int offset = position + Integer.BYTES;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp >= from && timestamp <= to) {
+                    AuditType type = AuditType.fromCode(buffer.get(offset + Long.BYTES));
+                    short usernameLength = buffer.getShort(offset + Long.BYTES + Byte.BYTES);
+                    String username = null;
+                    if (usernameLength >= 0) {
+                        byte[] bytes = new byte[usernameLength];
+                        buffer.get(offset + FIXED_RECORD_SIZE - Integer.BYTES, bytes);
+                        username = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                    events.add(new AuditEvent(timestamp, type, username));
+                }
+                position += Integer.BYTES + length;
+            }
+
+        }
+
+        return events;
+
+    }
+
+    // Private methods
+
+    private void writeHeader() {
+        buffer.putLong(MIN_TIMESTAMP_OFFSET, minTimestamp);
+        buffer.putLong(MAX_TIMESTAMP_OFFSET, maxTimestamp);
+    }
+
+    /**
+     * UTF-8, cut to MAX_USERNAME_BYTES so a record always fits in a segment
+     */
+    private static byte[] encode(String username) {
+        byte[] bytes = username.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_USERNAME_BYTES) {
+            return bytes;
+        }
+        int end = MAX_USERNAME_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.reactivelearning.demo.audit;
+
+/**
+ * The authentication events kept in the audit log. Each is stored as its code, so codes must never be reused.
+ */
+public enum AuditType {
+
+    /** A login completed and a JWT was issued */
+    LOGIN_SUCCEEDED(1),
+    /** The password check failed, for an unknown user or a wrong password */
+    LOGIN_FAILED(2),
+    /** The password was right but the TOTP code, or the pre-auth ticket it came with, was not */
+    TOTP_FAILED(3),
+    /** A user registered through /register */
+    USER_REGISTERED(4),
+    /** A user was deleted */
+    USER_DELETED(5);
+
+    private final byte code;
+
+    AuditType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static AuditType fromCode(byte code) {
+        for (AuditType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown audit event code " + code);
+    }
+
+}
@@ -1,19 +1,36 @@
 package com.reactivelearning.demo.config;
 
+import com.reactivelearning.demo.config.database.ConnectionPoolBuilder;
+import com.reactivelearning.demo.config.database.MeteredConnectionPool;
+import com.reactivelearning.demo.security.util.PasswordEncoderCalibrator;
 import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.r2dbc.connection.R2dbcTransactionManager;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.transaction.reactive.TransactionalOperator;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(PasswordEncoderCalibrator calibrator) {
+        return calibrator.build();
+    }
+
+    /**
+     * The R2DBC connection pool, in place of the one Spring Boot would configure.
+     * @param r2dbcProperties R2dbcProperties : The spring.r2dbc settings
+     * @param connectionPoolBuilder ConnectionPoolBuilder : Holds the app.database.pool settings
+     * @return MeteredConnectionPool : A warmed-up pool
+     */
+    @Bean(destroyMethod = "dispose")
+    public MeteredConnectionPool connectionFactory(
+            R2dbcProperties r2dbcProperties, ConnectionPoolBuilder connectionPoolBuilder) {
+        return connectionPoolBuilder.build(r2dbcProperties);
     }
 
     @Bean
@@ -0,0 +1,117 @@
+package com.reactivelearning.demo.config.database;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * ConnectionPoolBuilder
+ * - Builds the server's R2DBC connection pool from spring.r2dbc (url, username, password), replacing the pool
+ * Spring Boot would configure with its defaults. Acquisitions no longer queue forever: one that waits longer than
+ * maxAcquireTime fails, and is answered with a 503.
+ * - The pool is warmed up as it is built, before the application reports ready.
+ * - With an in-memory H2 database, the database is dropped once its last connection closes, so minIdle must stay
+ * above zero and connections are never retired by age.
+ * - Uses ConfigurationProperties, copying from app.database.pool
+ */
+@Component
+@ConfigurationProperties(prefix = "app.database.pool")
+public class ConnectionPoolBuilder {
+
+    private int initialSize = 4;
+    private int minIdle = 4;
+    private int maxSize = 16;
+    private Duration maxIdleTime = Duration.ofMinutes(30);
+    private Duration maxAcquireTime = Duration.ofSeconds(2);
+    private Duration maxCreateConnectionTime = Duration.ofSeconds(5);
+    private Duration maxValidationTime = Duration.ofSeconds(1);
+    private String validationQuery = "SELECT 1";
+    private Duration warmupTimeout = Duration.ofSeconds(30);
+
+    private final MeterRegistry meterRegistry;
+
+    private final Logger logger = LoggerFactory.getLogger(ConnectionPoolBuilder.class);
+
+    @Autowired
+    public ConnectionPoolBuilder(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Build
+     * - Creates the pool around the configured database, and warms it up
+     * @param r2dbcProperties R2dbcProperties : The spring.r2dbc settings
+     * @return MeteredConnectionPool : The pool, timing every acquisition
+     */
+    public MeteredConnectionPool build(R2dbcProperties r2dbcProperties) {
+
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(r2dbcProperties.getUrl()).mutate();
+        if (r2dbcProperties.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, r2dbcProperties.getUsername());
+        }
+        if (r2dbcProperties.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, r2dbcProperties.getPassword());
+        }
+
+        ConnectionPool pool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options.build()))
+                .initialSize(initialSize)
+                .minIdle(minIdle)
+                .maxSize(maxSize)
+                .maxIdleTime(maxIdleTime)
+                .maxAcquireTime(maxAcquireTime)
+                .maxCreateConnectionTime(maxCreateConnectionTime)
+                .maxValidationTime(maxValidationTime)
+                .validationQuery(validationQuery)
+                .build());
+
+        MeteredConnectionPool metered = new MeteredConnectionPool(pool, meterRegistry);
+
+        Integer warmed = metered.warmup().block(warmupTimeout);
+        logger.info("Connection pool warmed up with {} connection(s), max {}, acquire timeout {} ms",
+                warmed, maxSize, maxAcquireTime.toMillis());
+
+        return metered;
+
+    }
+
+    // Getters / Setters
+
+    public int getInitialSize() {return initialSize;}
+    public void setInitialSize(int initialSize) {this.initialSize = initialSize;}
+
+    public int getMinIdle() {return minIdle;}
+    public void setMinIdle(int minIdle) {this.minIdle = minIdle;}
+
+    public int getMaxSize() {return maxSize;}
+    public void setMaxSize(int maxSize) {this.maxSize = maxSize;}
+
+    public Duration getMaxIdleTime() {return maxIdleTime;}
+    public void setMaxIdleTime(Duration maxIdleTime) {this.maxIdleTime = maxIdleTime;}
+
+    public Duration getMaxAcquireTime() {return maxAcquireTime;}
+    public void setMaxAcquireTime(Duration maxAcquireTime) {this.maxAcquireTime = maxAcquireTime;}
+
+    public Duration getMaxCreateConnectionTime() {return maxCreateConnectionTime;}
+    public void setMaxCreateConnectionTime(Duration maxCreateConnectionTime) {this.maxCreateConnectionTime = maxCreateConnectionTime;}
+
+    public Duration getMaxValidationTime() {return maxValidationTime;}
+    public void setMaxValidationTime(Duration maxValidationTime) {this.maxValidationTime = maxValidationTime;}
+
+    public String getValidationQuery() {return validationQuery;}
+    public void setValidationQuery(String validationQuery) {this.validationQuery = validationQuery;}
+
+    public Duration getWarmupTimeout() {return warmupTimeout;}
+    public void setWarmupTimeout(Duration warmupTimeout) {this.warmupTimeout = warmupTimeout;}
+
+}
@@ -0,0 +1,98 @@
+package com.reactivelearning.demo.config.database;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MeteredConnectionPool
+ * - Wraps the ConnectionPool, timing every acquisition under "r2dbc.pool.acquire" tagged by outcome (success,
+ * timeout, error), with a percentile histogram.
+ * - Unwraps to the pool, so Spring Boot still binds its gauges (r2dbc.pool.acquired, pending, idle, ...).
+ * - An acquisition that waits longer than the pool's max-acquire-time fails with an R2dbcTimeoutException.
+ * Spring wraps it on the way out, and GlobalHandler maps it to a 503.
+ */
+public class MeteredConnectionPool implements ConnectionFactory, Wrapped<ConnectionFactory>, Closeable, Disposable {
+
+    private final ConnectionPool pool;
+
+    private final Timer acquired;
+    private final Timer timedOut;
+    private final Timer failed;
+
+    public MeteredConnectionPool(ConnectionPool pool, MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.acquired = acquireTimer(meterRegistry, "success");
+        this.timedOut = acquireTimer(meterRegistry, "timeout");
+        this.failed = acquireTimer(meterRegistry, "error");
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return pool.create()
+                    .doOnSuccess(connection -> acquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(error -> (error instanceof R2dbcTimeoutException ? timedOut : failed)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Warm up
+     * - Opens the pool's initial connections, so the first requests do not pay for them
+     * @return Integer : The number of connections opened
+     */
+    public Mono<Integer> warmup() {
+        return pool.warmup();
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return pool.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return pool;
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return pool.close();
+    }
+
+    @Override
+    public void dispose() {
+        pool.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return pool.isDisposed();
+    }
+
+    // Private methods
+
+    private static Timer acquireTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("r2dbc.pool.acquire")
+                .description("Time to acquire a connection from the pool")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.reactivelearning.demo.config.migration;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.r2dbc.connection.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SchemaMigrator
+ * - Applies the versioned SQL scripts under db/migration (V{version}__{description}.sql) in version order, once
+ * each, recording them in the schema_history table. Replaces Spring Boot's schema.sql/data.sql initialisation.
+ * - An applied script whose content has since changed fails startup. Add a new version instead.
+ * - Runs over R2DBC while the context starts, before anything else touches the database. A JDBC-based tool
+ * would open its own connection to the in-memory H2 database, which is dropped once that connection closes.
+ * - Uses ConfigurationProperties, copying from app.database.migration
+ */
+@Component
+@ConfigurationProperties(prefix = "app.database.migration")
+public class SchemaMigrator implements InitializingBean {
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final String CREATE_HISTORY = """
+            CREATE TABLE IF NOT EXISTS schema_history (
+                version INT PRIMARY KEY,
+                description VARCHAR(200) NOT NULL,
+                checksum VARCHAR(64) NOT NULL,
+                installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+                execution_ms BIGINT NOT NULL
+            )
+            """;
+
+    private boolean enabled = true;
+    private String location = "classpath:db/migration";
+    private Duration timeout = Duration.ofMinutes(1);
+
+    private final ConnectionFactory connectionFactory;
+    private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    private final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    @Autowired
+    public SchemaMigrator(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) {
+            List<Migration> applied = migrate().block(timeout);
+            logger.info("Schema is up to date, applied {} migration(s) from {}", applied.size(), location);
+        }
+    }
+
+    /**
+     * Migrate
+     * - Verifies the applied migrations and applies the pending ones, each in its own transaction
+     * @return List : The migrations applied by this call
+     */
+    public Mono<List<Migration>> migrate() {
+        return Mono.fromCallable(this::findMigrations)
+                .flatMap(migrations -> Mono.usingWhen(
+                        connectionFactory.create(),
+                        connection -> execute(connection, CREATE_HISTORY)
+                                .then(appliedChecksums(connection))
+                                .flatMapMany(applied -> Flux.fromIterable(migrations)
+                                        .filter(migration -> isPending(migration, applied)))
+                                .concatMap(migration -> apply(connection, migration))
+                                .collectList(),
+                        Connection::close));
+    }
+
+    /**
+     * A migration script.
+     * @param version int : From the file name, V{version}__
+     * @param description String : From the file name, with underscores as spaces
+     * @param resource Resource : The script
+     * @param checksum String : SHA-256 of the script, hex encoded
+     */
+    public record Migration(int version, String description, Resource resource, String checksum) {}
+
+    // Private methods
+
+    private List<Migration> findMigrations() throws IOException {
+
+        List<Migration> migrations = new ArrayList<>();
+        for (Resource resource : resolver.getResources(location + "/V*__*.sql")) {
+            Matcher matcher = FILE_NAME.matcher(resource.getFilename());
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Migration file name is not V{version}__{description}.sql: " + resource.getFilename());
+            }
+            migrations.add(new Migration(
+                    Integer.parseInt(matcher.group(1)),
+                    matcher.group(2).replace('_', ' '),
+                    resource,
+                    checksum(resource)));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+                throw new IllegalStateException("Duplicate migration version V" + migrations.get(i).version());
+            }
+        }
+
+        return migrations;
+
+    }
+
+    private boolean isPending(Migration migration, Map<Integer, String> applied) {
+        String checksum = applied.get(migration.version());
+        if (checksum == null) {
+            return true;
+        }
+        if (!checksum.equals(migration.checksum())) {
+            throw new IllegalStateException(String.format(
+                    "Migration V%d (%s) has changed since it was applied", migration.version(), migration.description()));
+        }
+        return false;
+    }
+
+    private Mono<Migration> apply(Connection connection, Migration migration) {
+
+        long start = System.nanoTime();
+
+        return Mono.from(connection.beginTransaction())
+                .then(ScriptUtils.executeSqlScript(connection, migration.resource()))
+                .then(Mono.defer(() -> Flux.from(connection
+                                .createStatement("INSERT INTO schema_history (version, description, checksum, execution_ms) VALUES ($1, $2, $3, $4)")
+                                .bind(0, migration.version())
+                                .bind(1, migration.description())
+                                .bind(2, migration.checksum())
+                                .bind(3, Duration.ofNanos(System.nanoTime() - start).toMillis())
+                                .execute())
+                        .flatMap(result -> result.getRowsUpdated())
+                        .then()))
+                .then(Mono.from(connection.commitTransaction()))
+                .onErrorResume(error -> Mono.from(connection.rollbackTransaction())
+                        .then(Mono.error(new IllegalStateException(String.format(
+                                "Migration V%d (%s) failed: %s", migration.version(), migration.description(), error.getMessage()), error))))
+                .doOnSuccess(__ -> logger.info("Applied migration V{} ({})", migration.version(), migration.description()))
+                .thenReturn(migration);
+
+    }
+
+    private Mono<Map<Integer, String>> appliedChecksums(Connection connection) {
+        return Flux.from(connection.createStatement("SELECT version, checksum FROM schema_history").execute())
+                .flatMap(result -> result.map(row -> Map.entry(row.get("version", Integer.class), row.get("checksum", String.class))))
+                .collect(HashMap::new, (map, entry) -> map.put(entry.getKey(), entry.getValue()));
+    }
+
+    private Mono<Void> execute(Connection connection, String sql) {
+        return Flux.from(connection.createStatement(sql).execute())
+                .flatMap(result -> result.getRowsUpdated())
+                .then();
+    }
+
+    private String checksum(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(in.readAllBytes()));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Getters / Setters
+
+    public boolean isEnabled() {return enabled;}
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+
+    public String getLocation() {return location;}
+    public void setLocation(String location) {this.location = location;}
+
+    public Duration getTimeout() {return timeout;}
+    public void setTimeout(Duration timeout) {this.timeout = timeout;}
+
+}
@@ -0,0 +1,189 @@
+package com.reactivelearning.demo.config.server;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+
+/**
+ * NettyTransport
+ * - Configures the transport of the embedded Reactor Netty server, which Spring Boot would otherwise run on the
+ * shared NIO loops with its defaults.
+ * - transport picks the channel implementation: auto uses native epoll when the host supports it, epoll asks for
+ * it and falls back to NIO with a warning, nio never uses it.
+ * - The server gets its own loops: workerThreads serve connections (0 keeps Reactor Netty's default of one per
+ * core, at least 4), selectorThreads accept them (0 accepts on the worker loops).
+ * - Connections allocate from the configured allocator, and speak HTTP/1.1 and, with http2Cleartext, HTTP/2 over
+ * plain TCP (h2c, by prior knowledge or upgrade). Pooled direct buffers, the default, come from Netty's shared
+ * PooledByteBufAllocator.DEFAULT, so the server does not keep a second set of arenas next to the clients'. Only
+ * pooled heap buffers need an allocator of their own.
+ * - Idle connections are closed after idleTimeout, and after maxKeepAliveRequests requests if above zero. TCP
+ * keep-alive probes are sent on idle connections with tcpKeepAlive. These take precedence over server.netty.*.
+ * - Tasks waiting on each loop are published as netty.eventloop.pending-tasks, tagged by group and loop index. A
+ * growing queue means the loop is blocked or overloaded.
+ * - Uses ConfigurationProperties, copying from app.server.transport
+ */
+@Component
+@ConfigurationProperties(prefix = "app.server.transport")
+public class NettyTransport implements NettyServerCustomizer, InitializingBean, DisposableBean {
+
+    public enum Transport {AUTO, EPOLL, NIO}
+
+    public enum Allocator {POOLED_DIRECT, POOLED_HEAP, UNPOOLED}
+
+    private Transport transport = Transport.AUTO;
+    private int workerThreads = 0;
+    private int selectorThreads = 0;
+    private Allocator allocator = Allocator.POOLED_DIRECT;
+    private boolean http2Cleartext = true;
+    private Duration idleTimeout = Duration.ofSeconds(60);
+    private int maxKeepAliveRequests = 0;
+    private boolean tcpKeepAlive = true;
+    private Duration shutdownQuietPeriod = Duration.ofSeconds(2);
+    private Duration shutdownTimeout = Duration.ofSeconds(15);
+
+    private final MeterRegistry meterRegistry;
+
+    private LoopResources loops;
+    private boolean useNative;
+    private ByteBufAllocator byteBufAllocator;
+
+    private final Logger logger = LoggerFactory.getLogger(NettyTransport.class);
+
+    @Autowired
+    public NettyTransport(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+
+        boolean nativeSupported = LoopResources.hasNativeSupport();
+        useNative = switch (transport) {
+            case AUTO -> nativeSupported;
+            case EPOLL -> {
+                if (!nativeSupported) {
+                    logger.warn("Native epoll transport is not available on this host, using NIO");
+                }
+                yield nativeSupported;
+            }
+            case NIO -> false;
+        };
+
+        int workers = workerThreads > 0 ? workerThreads : LoopResources.DEFAULT_IO_WORKER_COUNT;
+        loops = selectorThreads > 0
+                ? LoopResources.create("server", selectorThreads, workers, true)
+                : LoopResources.create("server", workers, true);
+
+        byteBufAllocator = switch (allocator) {
+            case POOLED_DIRECT -> PooledByteBufAllocator.DEFAULT;
+            case POOLED_HEAP -> new PooledByteBufAllocator(false);
+            case UNPOOLED -> UnpooledByteBufAllocator.DEFAULT;
+        };
+
+        register(loops.onServer(useNative), "worker");
+        if (selectorThreads > 0) {
+            register(loops.onServerSelect(useNative), "selector");
+        }
+
+        logger.info("Server transport: {}, {} worker and {} selector thread(s), {} buffers{}",
+                useNative ? "epoll" : "nio", workers, selectorThreads > 0 ? selectorThreads : "shared",
+                allocator.name().toLowerCase(), http2Cleartext ? ", h2c enabled" : "");
+
+    }
+
+    @Override
+    public HttpServer apply(HttpServer server) {
+        HttpServer configured = server
+                .runOn(loops, useNative)
+                .childOption(ChannelOption.ALLOCATOR, byteBufAllocator)
+                .childOption(ChannelOption.SO_KEEPALIVE, tcpKeepAlive)
+                .idleTimeout(idleTimeout)
+                .maxKeepAliveRequests(maxKeepAliveRequests > 0 ? maxKeepAliveRequests : -1);
+        return http2Cleartext
+                ? configured.protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                : configured.protocol(HttpProtocol.HTTP11);
+    }
+
+    @Override
+    public void destroy() {
+        loops.disposeLater(shutdownQuietPeriod, shutdownTimeout).block();
+    }
+
+    /**
+     * Is native
+     * @return boolean : Whether the server runs on native epoll rather than NIO
+     */
+    public boolean isNative() {
+        return useNative;
+    }
+
+    // Private methods
+
+    /**
+     * Publishes the pending-task count of every loop in the group
+     */
+    private void register(EventLoopGroup group, String name) {
+        int index = 0;
+        for (EventExecutor executor : group) {
+            if (executor instanceof SingleThreadEventExecutor loop) {
+                Gauge.builder("netty.eventloop.pending-tasks", loop, SingleThreadEventExecutor::pendingTasks)
+                        .tag("group", name)
+                        .tag("loop", String.valueOf(index))
+                        .register(meterRegistry);
+            }
+            index++;
+        }
+    }
+
+    // Getters / Setters
+
+    public Transport getTransport() {return transport;}
+    public void setTransport(Transport transport) {this.transport = transport;}
+
+    public int getWorkerThreads() {return workerThreads;}
+    public void setWorkerThreads(int workerThreads) {this.workerThreads = workerThreads;}
+
+    public int getSelectorThreads() {return selectorThreads;}
+    public void setSelectorThreads(int selectorThreads) {this.selectorThreads = selectorThreads;}
+
+    public Allocator getAllocator() {return allocator;}
+    public void setAllocator(Allocator allocator) {this.allocator = allocator;}
+
+    public boolean isHttp2Cleartext() {return http2Cleartext;}
+    public void setHttp2Cleartext(boolean http2Cleartext) {this.http2Cleartext = http2Cleartext;}
+
+    public Duration getIdleTimeout() {return idleTimeout;}
+    public void setIdleTimeout(Duration idleTimeout) {this.idleTimeout = idleTimeout;}
+
+    public int getMaxKeepAliveRequests() {return maxKeepAliveRequests;}
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {this.maxKeepAliveRequests = maxKeepAliveRequests;}
+
+    public boolean isTcpKeepAlive() {return tcpKeepAlive;}
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {this.tcpKeepAlive = tcpKeepAlive;}
+
+    public Duration getShutdownQuietPeriod() {return shutdownQuietPeriod;}
+    public void setShutdownQuietPeriod(Duration shutdownQuietPeriod) {this.shutdownQuietPeriod = shutdownQuietPeriod;}
+
+    public Duration getShutdownTimeout() {return shutdownTimeout;}
+    public void setShutdownTimeout(Duration shutdownTimeout) {this.shutdownTimeout = shutdownTimeout;}
+
+}
@@ -0,0 +1,48 @@
+package com.reactivelearning.demo.controller;
+
+import com.reactivelearning.demo.security.jwt.JwtKeyRing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+@RestController
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+
+    @Autowired
+    public JwksController(JwtKeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    /**
+     * Controller method for /.well-known/jwks.json
+     * - Publishes the public keys tokens are signed with, so other services can verify them offline.
+     * - The document is pre-rendered on rotation. Clients that send a matching If-None-Match get a 304.
+     * @param exchange ServerWebExchange : Used for the conditional request check
+     * @return String : The JWK set
+     */
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<String>> jwks(ServerWebExchange exchange) {
+
+        JwtKeyRing.JwkSet jwkSet = keyRing.getJwkSet();
+
+        exchange.getResponse().getHeaders().setCacheControl(
+                CacheControl.maxAge(keyRing.getJwksMaxAge()).cachePublic());
+
+        if (exchange.checkNotModified(jwkSet.etag())) {
+            return Mono.empty();
+        }
+
+        return Mono.just(ResponseEntity.ok()
+                .eTag(jwkSet.etag())
+                .body(jwkSet.json()));
+
+    }
+
+}
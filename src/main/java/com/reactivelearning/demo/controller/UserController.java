@@ -1,15 +1,23 @@
 package com.reactivelearning.demo.controller;
 
 import com.reactivelearning.demo.dto.auth.LoginRequest;
+import com.reactivelearning.demo.dto.auth.LoginResponse;
 import com.reactivelearning.demo.dto.auth.RegisterRequest;
+import com.reactivelearning.demo.dto.auth.TicketLoginRequest;
 import com.reactivelearning.demo.dto.user.PartialUserDTO;
 import com.reactivelearning.demo.dto.user.UserDTO;
+import com.reactivelearning.demo.dto.user.UserImportReport;
+import com.reactivelearning.demo.dto.user.UserPage;
+import com.reactivelearning.demo.dto.user.UserSummary;
+import com.reactivelearning.demo.service.UserDirectory;
+import com.reactivelearning.demo.service.UserImporter;
 import com.reactivelearning.demo.service.UserService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpResponse;
@@ -26,10 +34,14 @@ import java.util.UUID;
 public class UserController {
 
     private final UserService userService;
+    private final UserDirectory userDirectory;
+    private final UserImporter userImporter;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserDirectory userDirectory, UserImporter userImporter) {
         this.userService = userService;
+        this.userDirectory = userDirectory;
+        this.userImporter = userImporter;
     }
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
@@ -38,33 +50,33 @@ public class UserController {
      * Controller method for /login
      * @param loginRequest Object of LoginRequest. Holds the TOTP code for authenticating a user if they have
      *                     totp enabled.
-     * @return Void : The controller returns a status code and related authentication cookies.
+     * @return String : The controller returns a status code and related authentication cookies. If the user
+     * still has to provide a TOTP code, it returns 202 with a pre-auth ticket for /login/totp as the body.
      */
     @PostMapping("/auth/login")
-    public Mono<ResponseEntity<Void>> login(
+    public Mono<ResponseEntity<String>> login(
             ServerHttpResponse response,
             @RequestBody @Valid LoginRequest loginRequest
     ) {
         return userService.login(loginRequest)
                 .doOnSubscribe(sub -> logger.info("POST connection received at /api/v1/auth/login"))
-                .map(loginResponse -> {
-                    if (loginResponse.requires2fa()) {
-                        return ResponseEntity.status(HttpStatus.CONTINUE).build();
-                    } else if (loginResponse.invalid2fa()) {
-                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-                    } else if (loginResponse.success()) {
-                        ResponseCookie cookie = ResponseCookie
-                                .from("reactive_authn_authz", loginResponse.getJwtToken())
-                                .httpOnly(true)
-                                .sameSite("Strict")
-                                .path("/")
-                                .build();
-                        response.addCookie(cookie);
-                        return ResponseEntity.status(HttpStatus.OK).build();
-                    } else {
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-                    }
-                });
+                .map(loginResponse -> toResponseEntity(response, loginResponse));
+    }
+
+    /**
+     * Controller method for /login/totp, the second leg of an MFA login
+     * - Needs no Basic auth. The pre-auth ticket from /login stands in for the password.
+     * @param ticketLoginRequest Object of TicketLoginRequest. Holds the pre-auth ticket and the TOTP code.
+     * @return String : The controller returns a status code and related authentication cookies.
+     */
+    @PostMapping("/auth/login/totp")
+    public Mono<ResponseEntity<String>> loginWithTicket(
+            ServerHttpResponse response,
+            @RequestBody @Valid TicketLoginRequest ticketLoginRequest
+    ) {
+        return userService.loginWithTicket(ticketLoginRequest)
+                .doOnSubscribe(sub -> logger.info("POST connection received at /api/v1/auth/login/totp"))
+                .map(loginResponse -> toResponseEntity(response, loginResponse));
     }
 
     /**
@@ -99,11 +111,49 @@ public class UserController {
                 .map(createdUsers -> ResponseEntity.ok(createdUsers));
     }
 
-    @GetMapping("/users")
-    public Mono<ResponseEntity<Flux<Map<UUID, UserDTO>>>> getUsers() {
+    /**
+     * Controller method for /users
+     * @param after UUID : The cursor from the previous page's next field. Omit it for the first page.
+     * @param limit Integer : The page size. Omit it for the default, values above the maximum are capped.
+     * @return UserPage : One page of users in id order, and the cursor for the next page
+     */
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<UserPage>> getUsers(
+            @RequestParam(value = "after", required = false) UUID after,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
         logger.info("GET connection received at /api/v1/users");
-        return Mono.fromSupplier(() -> ResponseEntity.ok(
-                userService.getUsers()));
+        return userDirectory.page(after, limit)
+                .map(page -> ResponseEntity.ok(page));
+    }
+
+    /**
+     * Controller method for /users, when the client accepts application/x-ndjson
+     * - Streams every user after the cursor, one JSON object per line, as fast as the client reads them
+     * @param after UUID : The cursor to start after. Omit it to start from the first user.
+     * @return UserSummary : The users in id order
+     */
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserSummary> streamUsers(
+            @RequestParam(value = "after", required = false) UUID after
+    ) {
+        logger.info("GET connection received at /api/v1/users, streaming");
+        return userDirectory.stream(after);
+    }
+
+    /**
+     * Controller method for /users/import
+     * - Creates users in bulk. Each line of the body is one user, as {"username", "password", "email", "role"}.
+     * @param lines String : The NDJSON body, one line at a time
+     * @return UserImportReport : How many users were created, and the line and reason of each record rejected
+     */
+    @PostMapping(value = "/users/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<UserImportReport>> importUsers(
+            @RequestBody Flux<String> lines
+    ) {
+        logger.info("POST connection received at /api/v1/users/import");
+        return userImporter.importUsers(lines)
+                .map(report -> ResponseEntity.ok(report));
     }
 
     @DeleteMapping(value = "/users/{id}")
@@ -130,4 +180,32 @@ public class UserController {
         return Mono.fromSupplier(() -> ResponseEntity.status(HttpStatus.OK).build());
     }
 
+    // Private methods
+
+    /**
+     * Maps the result of a login to its response, adding the authentication cookie on success
+     * @param response ServerHttpResponse : The response to add the cookie to
+     * @param loginResponse LoginResponse : The result of logging in
+     * @return String : The response, holding the pre-auth ticket if 2FA is still required. A user who has not
+     * enabled MFA and sent no code gets a 200 without a cookie.
+     */
+    private ResponseEntity<String> toResponseEntity(ServerHttpResponse response, LoginResponse loginResponse) {
+        return switch (loginResponse) {
+            case LoginResponse.Authenticated authenticated -> {
+                ResponseCookie cookie = ResponseCookie
+                        .from("reactive_authn_authz", authenticated.jwtToken())
+                        .httpOnly(true)
+                        .sameSite("Strict")
+                        .path("/")
+                        .build();
+                response.addCookie(cookie);
+                yield ResponseEntity.status(HttpStatus.OK).build();
+            }
+            case LoginResponse.TotpRequired required ->
+                    ResponseEntity.status(HttpStatus.ACCEPTED).body(required.preAuthTicket());
+            case LoginResponse.TotpInvalid invalid -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            case LoginResponse.MfaNotEnrolled notEnrolled -> ResponseEntity.status(HttpStatus.OK).build();
+        };
+    }
+
 }
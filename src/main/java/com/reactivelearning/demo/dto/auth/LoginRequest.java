@@ -1,13 +1,12 @@
 package com.reactivelearning.demo.dto.auth;
 
-import com.reactivelearning.demo.exception.entities.TOTPInvalidException;
-import com.reactivelearning.demo.exception.entities.TOTPNotProvidedException;
-
 /**
  * A DTO class for use with /login. It holds data useful for logging in, such as 2FA (totp codes)
  */
 public class LoginRequest {
 
+    public static final int INVALID_TOTP = -1;
+
     private String totp;
 
     public LoginRequest() {}
@@ -17,24 +16,35 @@ public class LoginRequest {
     }
 
     /**
-     * Get the TOTP code
-     * - If the TOTP code was not provided, is blank, or length != 6, then it's wrong.
-     * @return Integer : TOTP in int format
+     * Has TOTP
+     * @return boolean : Whether a TOTP code was sent at all
      */
-    public int getTotp() {
+    public boolean hasTotp() {
+        return totp != null && !totp.isBlank();
+    }
 
-        if (totp == null || totp.isBlank()) {
-            throw new TOTPNotProvidedException("TOTP not provided");
-        } else if (totp.length() != 6) {
-            throw new TOTPInvalidException("Provided TOTP is invalid");
+    /**
+     * TOTP code
+     * - A code must be exactly six digits.
+     * @return int : The code, or INVALID_TOTP if it is missing or malformed
+     */
+    public int totpCode() {
+        if (totp == null || totp.length() != 6) {
+            return INVALID_TOTP;
         }
-
-        try {
-            return Integer.parseInt(totp);
-        } catch (NumberFormatException ex) {
-            throw new TOTPInvalidException("Provided TOTP is not a number");
+        int code = 0;
+        for (int i = 0; i < 6; i++) {
+            char digit = totp.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return INVALID_TOTP;
+            }
+            code = code * 10 + (digit - '0');
         }
+        return code;
+    }
 
+    public String getTotp() {
+        return totp;
     }
 
     public void setTotp(String totp) {
@@ -1,67 +1,34 @@
 package com.reactivelearning.demo.dto.auth;
 
 /**
- * A DTO class that the API returns when hitting /login. It simplifies the controller logic by allowing the
- * service layer to specify if the server succeeded, needs more information, or authentication failed.
+ * The result of a login, as the service layer hands it to the controller. Each outcome is its own type, so the
+ * controller maps it with a switch and expected outcomes never travel as exceptions.
  */
-public class LoginResponse {
-
-    private boolean success;
-    private boolean requires2fa;
-    private boolean invalid2fa;
-    private String jwtToken;
-
-    public LoginResponse() {}
-
-    public LoginResponse(
-            boolean success,
-            boolean requires2fa,
-            boolean invalid2fa,
-            String jwtToken) {
-        this.success = success;
-        this.requires2fa = requires2fa;
-        this.invalid2fa = invalid2fa;
-        this.jwtToken = jwtToken;
-    }
-
-    public static LoginResponse of(
-            boolean success,
-            boolean requires2fa,
-            boolean invalid2fa,
-            String jwtToken) {
-        return new LoginResponse(success, requires2fa, invalid2fa, jwtToken);
-    }
-
-    public boolean success() {
-        return success;
-    }
-
-    public void setSuccess(boolean success) {
-        this.success = success;
-    }
-
-    public boolean requires2fa() {
-        return requires2fa;
-    }
-
-    public void setRequires2fa(boolean requires2fa) {
-        this.requires2fa = requires2fa;
-    }
-
-    public boolean invalid2fa() {
-        return invalid2fa;
-    }
-
-    public void setInvalid2fa(boolean invalid2fa) {
-        this.invalid2fa = invalid2fa;
-    }
-
-    public String getJwtToken() {
-        return jwtToken;
-    }
-
-    public void setJwtToken(String jwtToken) {
-        this.jwtToken = jwtToken;
-    }
+public sealed interface LoginResponse {
+
+    LoginResponse TOTP_INVALID = new TotpInvalid();
+    LoginResponse MFA_NOT_ENROLLED = new MfaNotEnrolled();
+
+    /**
+     * The user is logged in
+     * @param jwtToken String : The JWT for the authentication cookie
+     */
+    record Authenticated(String jwtToken) implements LoginResponse {}
+
+    /**
+     * The user passed the password step but still has to provide a TOTP code
+     * @param preAuthTicket String : The ticket to redeem at /login/totp
+     */
+    record TotpRequired(String preAuthTicket) implements LoginResponse {}
+
+    /**
+     * The TOTP code, or the pre-auth ticket it came with, was wrong, malformed or missing
+     */
+    record TotpInvalid() implements LoginResponse {}
+
+    /**
+     * The password was right and the user has not enabled MFA, but sent no TOTP code to confirm it with
+     */
+    record MfaNotEnrolled() implements LoginResponse {}
 
 }
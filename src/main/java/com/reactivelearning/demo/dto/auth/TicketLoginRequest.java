@@ -0,0 +1,26 @@
+package com.reactivelearning.demo.dto.auth;
+
+/**
+ * A DTO class for use with /login/totp, the second leg of an MFA login. It holds the pre-auth ticket issued by
+ * /login alongside the TOTP code.
+ */
+public class TicketLoginRequest extends LoginRequest {
+
+    private String ticket;
+
+    public TicketLoginRequest() {}
+
+    public TicketLoginRequest(String ticket, String totp) {
+        super(totp);
+        this.ticket = ticket;
+    }
+
+    public String getTicket() {
+        return ticket;
+    }
+
+    public void setTicket(String ticket) {
+        this.ticket = ticket;
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.reactivelearning.demo.dto.user;
+
+/**
+ * Data transfer object, one record a bulk import rejected
+ * - line is the record's 1-based line in the NDJSON body. username is null if the line could not be read.
+ */
+public record UserImportError(long line, String username, String message) {}
@@ -0,0 +1,9 @@
+package com.reactivelearning.demo.dto.user;
+
+import java.util.List;
+
+/**
+ * Data transfer object, the outcome of a bulk import
+ * - errors lists the rejected records in line order, up to the configured limit. failed counts all of them.
+ */
+public record UserImportReport(long imported, long failed, List<UserImportError> errors) {}
@@ -0,0 +1,10 @@
+package com.reactivelearning.demo.dto.user;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Data transfer object, one page of the user listing
+ * - next is the cursor for the following page, passed back as ?after=. It is null on the last page.
+ */
+public record UserPage(List<UserSummary> users, UUID next) {}
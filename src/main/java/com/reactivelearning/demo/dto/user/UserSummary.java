@@ -0,0 +1,9 @@
+package com.reactivelearning.demo.dto.user;
+
+import java.util.UUID;
+
+/**
+ * Data transfer object, one row of the user listing
+ * - Read straight from the users table, without the password hash.
+ */
+public record UserSummary(UUID id, String username, String email) {}
@@ -38,6 +38,10 @@ public class Mfa {
         return id;
     }
 
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
     public UUID getUsersId() {
         return usersId;
     }
@@ -69,7 +69,7 @@ public class User implements UserDetails {
 
     public List<String> getRolesAsStrings() {
         return roles.stream()
-                .map(role -> "ROLE_{}" + role.getRole())
+                .map(role -> "ROLE_" + role.getRole())
                 .toList();
     }
 
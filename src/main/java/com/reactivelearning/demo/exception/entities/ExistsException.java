@@ -1,6 +1,6 @@
 package com.reactivelearning.demo.exception.entities;
 
-public class ExistsException extends RuntimeException {
+public class ExistsException extends ExpectedException {
     public ExistsException(String message) {
         super(message);
     }
@@ -0,0 +1,12 @@
+package com.reactivelearning.demo.exception.entities;
+
+/**
+ * The base for failures a client can cause at will (unknown users, taken names, shed load), which are handled and
+ * never logged with a trace. They skip the stack walk and suppression list, so raising one costs little more than
+ * allocating it. Being immutable, an instance with a fixed message can be shared as a constant.
+ */
+public abstract class ExpectedException extends RuntimeException {
+    protected ExpectedException(String message) {
+        super(message, null, false, false);
+    }
+}
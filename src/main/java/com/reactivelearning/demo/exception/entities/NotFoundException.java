@@ -1,6 +1,6 @@
 package com.reactivelearning.demo.exception.entities;
 
-public class NotFoundException extends RuntimeException {
+public class NotFoundException extends ExpectedException {
     public NotFoundException(String message) {
         super(message);
     }
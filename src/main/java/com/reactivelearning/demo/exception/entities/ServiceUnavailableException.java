@@ -0,0 +1,22 @@
+package com.reactivelearning.demo.exception.entities;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when the server sheds load instead of queueing it. Annotated so that failures raised outside of a
+ * controller (e.g. inside a SecurityWebFilterChain) are still mapped to a 503.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends ExpectedException {
+
+    /**
+     * The 503 raised whenever a request is shed for lack of capacity, shared since it carries no stack trace
+     */
+    public static final ServiceUnavailableException BUSY =
+            new ServiceUnavailableException("The server is busy, please try again later.");
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,6 @@
 package com.reactivelearning.demo.exception.entities;
 
-public class WeakPasswordException extends RuntimeException {
+public class WeakPasswordException extends ExpectedException {
     public WeakPasswordException(String message) {
         super(message);
     }
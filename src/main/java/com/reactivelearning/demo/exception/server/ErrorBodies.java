@@ -0,0 +1,116 @@
+package com.reactivelearning.demo.exception.server;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ErrorBodies
+ * - Error responses repeat a handful of messages, so each body is encoded to UTF-8 once and kept as a read-only
+ * ByteBuffer. Writing one wraps a duplicate of it, without copying or encoding again.
+ * - A DataBuffer tracks its own read position and is released once written, so the buffers are shared rather than
+ * the DataBuffers built over them.
+ * - Up to MAX_CACHED bodies of each kind are kept, past that they are encoded per response. Messages that vary per
+ * request, e.g. ones carrying a cause, should go through uncachedText so they do not crowd out the fixed ones.
+ */
+public final class ErrorBodies {
+
+    static final int MAX_CACHED = 256;
+
+    private static final Map<String, ByteBuffer> TEXT = new ConcurrentHashMap<>();
+    private static final Map<String, ByteBuffer> JSON = new ConcurrentHashMap<>();
+
+    private ErrorBodies() {}
+
+    /**
+     * Text
+     * - The message itself, as the body of a text/plain response
+     * @param message String : The message to send
+     * @return ByteBuffer : The encoded body, read-only
+     */
+    public static ByteBuffer text(String message) {
+        return cached(TEXT, message == null ? "" : message, false);
+    }
+
+    /**
+     * Uncached text
+     * - As text, for a message unlikely to be sent twice
+     * @param message String : The message to send
+     * @return ByteBuffer : The encoded body, read-only
+     */
+    public static ByteBuffer uncachedText(String message) {
+        return encode(message == null ? "" : message, false);
+    }
+
+    /**
+     * JSON
+     * - The message as {"response": "..."}, the shape every JSON error from this server takes
+     * @param message String : The message to send, escaped as needed
+     * @return ByteBuffer : The encoded body, read-only
+     */
+    public static ByteBuffer json(String message) {
+        return cached(JSON, message == null ? "" : message, true);
+    }
+
+    /**
+     * Wrap
+     * - A DataBuffer over a body, for a single response
+     * @param factory DataBufferFactory : The response's buffer factory
+     * @param body ByteBuffer : A body from text or json
+     * @return DataBuffer : A buffer reading the whole body, sharing its bytes
+     */
+    public static DataBuffer wrap(DataBufferFactory factory, ByteBuffer body) {
+        return factory.wrap(body.duplicate());
+    }
+
+    // Private methods
+
+    private static ByteBuffer cached(Map<String, ByteBuffer> cache, String message, boolean json) {
+        ByteBuffer body = cache.get(message);
+        if (body != null) {
+            return body;
+        }
+        body = encode(message, json);
+        if (cache.size() < MAX_CACHED) {
+            ByteBuffer previous = cache.putIfAbsent(message, body);
+            return previous != null ? previous : body;
+        }
+        return body;
+    }
+
+    private static ByteBuffer encode(String message, boolean json) {
+        String body = json ? "{\"response\": \"" + escape(message) + "\"}" : message;
+        return ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    private static String escape(String message) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            String replacement = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(message.length() + 16).append(message, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? message : escaped.toString();
+    }
+
+}
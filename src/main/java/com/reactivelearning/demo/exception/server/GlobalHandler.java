@@ -1,108 +1,164 @@
 package com.reactivelearning.demo.exception.server;
 
 import com.reactivelearning.demo.exception.entities.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.bind.support.WebExchangeBindException;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GlobalHandler
+ * - Maps exceptions to responses. Every handled exception is counted under "http.exceptions", tagged by its type.
+ * - Bodies are written from buffers encoded once per message, as under attack the error path is the hot path.
+ * Expected failures extend ExpectedException and carry no stack trace.
+ */
 @RestControllerAdvice
 public class GlobalHandler {
 
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
     private static final Logger logger = LoggerFactory.getLogger(GlobalHandler.class);
 
+    private final ClassValue<Counter> counters;
+
+    @Autowired
+    public GlobalHandler(MeterRegistry meterRegistry) {
+        this.counters = new ClassValue<>() {
+            @Override
+            protected Counter computeValue(Class<?> type) {
+                return meterRegistry.counter("http.exceptions", "exception", type.getSimpleName());
+            }
+        };
+    }
+
     @ExceptionHandler(WebExchangeBindException.class)
-    public Mono<ResponseEntity<String>> handleValidationException(WebExchangeBindException ex) {
-        return Mono.fromSupplier(() -> ResponseEntity
-                .status(HttpStatus.BAD_REQUEST)
-                .body("Please check your provided JSON data and try again."))
-                .doOnSubscribe(sub -> logger.error("ConstraintViolationException handled"));
+    public Mono<ResponseEntity<DataBuffer>> handleValidationException(WebExchangeBindException ex) {
+        count(ex);
+        logger.error("ConstraintViolationException handled");
+        return respond(HttpStatus.BAD_REQUEST, "Please check your provided JSON data and try again.");
     }
 
     @ExceptionHandler(NotFoundException.class)
-    public Mono<ResponseEntity<String>> handleNotFoundException(NotFoundException ex) {
-        return Mono.fromSupplier(() -> ResponseEntity
-                .status(HttpStatus.BAD_REQUEST)
-                .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.error("User could not be found."));
+    public Mono<ResponseEntity<DataBuffer>> handleNotFoundException(NotFoundException ex) {
+        count(ex);
+        logger.error("User could not be found.");
+        return respond(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
     @ExceptionHandler(ExistsException.class)
-    public Mono<ResponseEntity<String>> handleExistsException(ExistsException ex) {
-        return Mono.fromSupplier(() -> ResponseEntity
-                .status(HttpStatus.BAD_REQUEST)
-                .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.error("User tried registering with duplicate name."));
+    public Mono<ResponseEntity<DataBuffer>> handleExistsException(ExistsException ex) {
+        count(ex);
+        logger.error("User tried registering with duplicate name.");
+        return respond(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
     @ExceptionHandler(WeakPasswordException.class)
-    public Mono<ResponseEntity<String>> handleWeakPasswordException(WeakPasswordException ex) {
-        return Mono.fromSupplier(
-                () -> ResponseEntity
-                        .status(HttpStatus.BAD_REQUEST)
-                        .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.error(
-                        "User tried registering with a password <= 8 characters long."
-                ));
+    public Mono<ResponseEntity<DataBuffer>> handleWeakPasswordException(WeakPasswordException ex) {
+        count(ex);
+        logger.error("User tried registering with a password <= 8 characters long.");
+        return respond(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
     @ExceptionHandler(RolesNotFoundException.class)
-    public Mono<ResponseEntity<String>> handleRolesNotFoundException(RolesNotFoundException ex) {
-        return Mono.fromSupplier(() -> ResponseEntity
-                        .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.error("User with no role was found."));
+    public Mono<ResponseEntity<DataBuffer>> handleRolesNotFoundException(RolesNotFoundException ex) {
+        count(ex);
+        logger.error("User with no role was found.");
+        return respond(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
     }
 
     @ExceptionHandler(InternalServerException.class)
-    public Mono<ResponseEntity<String>> handleInternalServerException(InternalServerException ex) {
-        return Mono.fromSupplier(() ->
-                ResponseEntity
-                        .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.error("An internal server error occurred."));
+    public Mono<ResponseEntity<DataBuffer>> handleInternalServerException(InternalServerException ex) {
+        count(ex);
+        logger.error("An internal server error occurred.");
+        return respondOnce(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
     }
 
     @ExceptionHandler(MfaNotFoundException.class)
-    public Mono<ResponseEntity<String>> handleMfaNotFoundException(MfaNotFoundException ex) {
-        return Mono.fromSupplier(() ->
-                ResponseEntity
-                        .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.error("The users MFA could not be found."));
+    public Mono<ResponseEntity<DataBuffer>> handleMfaNotFoundException(MfaNotFoundException ex) {
+        count(ex);
+        logger.error("The users MFA could not be found.");
+        return respond(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
     }
 
-    @ExceptionHandler(TOTPInvalidException.class)
-    public Mono<ResponseEntity<String>> handleTOTPInvalidException(TOTPInvalidException ex) {
-        return Mono.fromSupplier(() ->
-                ResponseEntity
-                        .status(HttpStatus.UNAUTHORIZED)
-                        .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.info("TOTP incorrect."));
+    @ExceptionHandler(MfaRepositoryException.class)
+    public Mono<ResponseEntity<DataBuffer>> handleMfaRepositoryException(MfaRepositoryException ex) {
+        count(ex);
+        logger.info("There was an error manipulating the MFA object in the repository");
+        return respondOnce(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
     }
 
-    @ExceptionHandler(MfaRepositoryException.class)
-    public Mono<ResponseEntity<String>> handleMfaRepositoryException(MfaRepositoryException ex) {
-        return Mono.fromSupplier(() ->
-                        ResponseEntity
-                                .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.info("There was an " +
-                        "error manipulating the MFA object in the repository"));
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public Mono<ResponseEntity<DataBuffer>> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        count(ex);
+        logger.warn("Request was shed because the server is at capacity.");
+        return respond(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+    }
+
+    @ExceptionHandler({DataAccessResourceFailureException.class, CannotCreateTransactionException.class})
+    public Mono<ResponseEntity<DataBuffer>> handleConnectionUnavailableException(RuntimeException ex) {
+        count(ex);
+        logger.warn("Request was shed because no database connection was free: {}", ex.getMessage());
+        return respond(HttpStatus.SERVICE_UNAVAILABLE, "The server is busy, please try again later.");
     }
 
     @ExceptionHandler(Exception.class)
-    public Mono<ResponseEntity<String>> handleGenericException(Exception ex) {
-        return Mono.fromSupplier(
-                () -> ResponseEntity
-                        .status(HttpStatus.BAD_REQUEST)
-                        .body(ex.getMessage()))
-                .doOnSubscribe(sub -> logger.error(
-                        "Exception: {} Type: {}", ex.getMessage(), ex.getClass()));
+    public Mono<ResponseEntity<DataBuffer>> handleGenericException(Exception ex) {
+        count(ex);
+        logger.error("Exception: {} Type: {}", ex.getMessage(), ex.getClass());
+        return respondOnce(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
+    // Private methods
+
+    /**
+     * Respond
+     * - A text/plain response over the message's cached body, see ErrorBodies
+     * @param status HttpStatus : The response status
+     * @param message String : The response body
+     * @return ResponseEntity : The response
+     */
+    private Mono<ResponseEntity<DataBuffer>> respond(HttpStatus status, String message) {
+        return Mono.just(ResponseEntity
+                .status(status)
+                .contentType(TEXT_PLAIN_UTF8)
+                .body(ErrorBodies.wrap(DefaultDataBufferFactory.sharedInstance, ErrorBodies.text(message))));
+    }
+
+    /**
+     * Respond once
+     * - As respond, for messages that vary per request, which are encoded without being cached
+     * @param status HttpStatus : The response status
+     * @param message String : The response body
+     * @return ResponseEntity : The response
+     */
+    private Mono<ResponseEntity<DataBuffer>> respondOnce(HttpStatus status, String message) {
+        return Mono.just(ResponseEntity
+                .status(status)
+                .contentType(TEXT_PLAIN_UTF8)
+                .body(ErrorBodies.wrap(DefaultDataBufferFactory.sharedInstance, ErrorBodies.uncachedText(message))));
+    }
+
+    /**
+     * Count
+     * - Counts a handled exception by its type. Each type's counter is looked up once.
+     * @param ex Exception : The handled exception
+     */
+    private void count(Exception ex) {
+        counters.get(ex.getClass()).increment();
     }
 
 }
@@ -0,0 +1,83 @@
+package com.reactivelearning.demo.repository.user;
+
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.User;
+import io.r2dbc.spi.Readable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * AuthRecordMapper
+ * - Maps the rows of the auth record join into a User aggregate.
+ */
+final class AuthRecordMapper {
+
+    private AuthRecordMapper() {}
+
+    /**
+     * One row of the join, copied out of the driver's row so it can outlive it.
+     */
+    record Row(
+            UUID id,
+            String username,
+            String email,
+            String password,
+            UUID roleId,
+            String role,
+            UUID mfaId,
+            String mfaSecret,
+            Boolean mfaEnabled) {}
+
+    static Row readRow(Readable row) {
+        return new Row(
+                row.get("id", UUID.class),
+                row.get("username", String.class),
+                row.get("email", String.class),
+                row.get("password", String.class),
+                row.get("role_id", UUID.class),
+                row.get("role", String.class),
+                row.get("mfa_id", UUID.class),
+                row.get("mfa_secret", String.class),
+                row.get("mfa_enabled", Boolean.class));
+    }
+
+    /**
+     * To user
+     * - Folds the rows of one user into a User, with its roles and MFA set
+     * @param rows List : The rows of the join, all for the same user
+     * @return User : The aggregate, or null if there are no rows
+     */
+    static User toUser(List<Row> rows) {
+
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Row first = rows.getFirst();
+        User user = new User(first.username(), first.password(), first.email());
+        user.setId(first.id());
+
+        List<Role> roles = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (row.roleId() != null && roles.stream().noneMatch(role -> role.getId().equals(row.roleId()))) {
+                Role role = Role.of(row.role());
+                role.setId(row.roleId());
+                roles.add(role);
+            }
+        }
+        user.setRoles(roles);
+
+        if (first.mfaId() != null) {
+            Mfa mfa = Mfa.of(first.id(), Boolean.TRUE.equals(first.mfaEnabled()), first.mfaSecret());
+            mfa.setId(first.mfaId());
+            user.setMfa(mfa);
+        }
+
+        return user;
+
+    }
+
+}
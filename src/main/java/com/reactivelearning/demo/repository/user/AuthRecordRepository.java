@@ -0,0 +1,21 @@
+package com.reactivelearning.demo.repository.user;
+
+import com.reactivelearning.demo.entities.User;
+import reactor.core.publisher.Mono;
+
+/**
+ * AuthRecordRepository
+ * - A custom fragment of UsersRepository for the login path.
+ */
+public interface AuthRecordRepository {
+
+    /**
+     * Find auth record by username
+     * - Loads a user, all of their roles and their (still encrypted) MFA row in one query
+     * @param username String : The username to look up
+     * @return User : The user with roles and MFA set, or empty if the username does not exist. Roles are empty
+     * if the user has none, and MFA is null if the user has no MFA row.
+     */
+    Mono<User> findAuthRecordByUsername(String username);
+
+}
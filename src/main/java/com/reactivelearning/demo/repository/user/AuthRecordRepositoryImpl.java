@@ -0,0 +1,44 @@
+package com.reactivelearning.demo.repository.user;
+
+import com.reactivelearning.demo.entities.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * AuthRecordRepositoryImpl
+ * - Picked up by Spring Data as the implementation of the AuthRecordRepository fragment.
+ * - The join returns one row per role, each repeating the user and MFA columns. AuthRecordMapper folds them back
+ * into a single User.
+ */
+public class AuthRecordRepositoryImpl implements AuthRecordRepository {
+
+    private static final String FIND_BY_USERNAME = """
+            SELECT u.id, u.username, u.email, u.password,
+                   r.id AS role_id, r.role,
+                   m.id AS mfa_id, m.mfa_secret, m.enabled AS mfa_enabled
+            FROM users u
+            LEFT JOIN users_roles ur ON ur.users_id = u.id
+            LEFT JOIN roles r ON r.id = ur.roles_id
+            LEFT JOIN mfa m ON m.users_id = u.id
+            WHERE u.username = :username
+            """;
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public AuthRecordRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<User> findAuthRecordByUsername(String username) {
+        return databaseClient.sql(FIND_BY_USERNAME)
+                .bind("username", username)
+                .map(AuthRecordMapper::readRow)
+                .all()
+                .collectList()
+                .flatMap(rows -> Mono.justOrEmpty(AuthRecordMapper.toUser(rows)));
+    }
+
+}
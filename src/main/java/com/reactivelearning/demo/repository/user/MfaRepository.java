@@ -1,8 +1,11 @@
 package com.reactivelearning.demo.repository.user;
 
 import com.reactivelearning.demo.entities.Mfa;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
@@ -10,4 +13,23 @@ import java.util.UUID;
 @Repository
 public interface MfaRepository extends ReactiveCrudRepository<Mfa, UUID> {
     Mono<Mfa> findByUsersId(UUID usersId);
+
+    /**
+     * The first page of MFA rows in id order. Continue with findPageAfter.
+     */
+    @Query("SELECT * FROM mfa ORDER BY id LIMIT :limit")
+    Flux<Mfa> findFirstPage(int limit);
+
+    /**
+     * The next page of MFA rows in id order, seeking past the last id of the previous page through the primary key.
+     */
+    @Query("SELECT * FROM mfa WHERE id > :after ORDER BY id LIMIT :limit")
+    Flux<Mfa> findPageAfter(UUID after, int limit);
+
+    /**
+     * Replaces an encrypted secret, but only if it has not changed since it was read.
+     */
+    @Modifying
+    @Query("UPDATE mfa SET mfa_secret = :newSecret WHERE id = :id AND mfa_secret = :oldSecret")
+    Mono<Integer> updateSecret(UUID id, String oldSecret, String newSecret);
 }
@@ -0,0 +1,23 @@
+package com.reactivelearning.demo.repository.user;
+
+import com.reactivelearning.demo.entities.User;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * UserBatchRepository
+ * - A custom fragment of UsersRepository for bulk imports.
+ */
+public interface UserBatchRepository {
+
+    /**
+     * Insert all
+     * - Writes users, their roles and their MFA rows with one multi-row INSERT per table. Run it inside a
+     * transaction, so a failed chunk leaves nothing behind.
+     * @param users List<User> : Users with their id, roles (by id) and encrypted MFA row already set
+     * @return Long : How many users were inserted
+     */
+    Mono<Long> insertAll(List<User> users);
+
+}
@@ -0,0 +1,96 @@
+package com.reactivelearning.demo.repository.user;
+
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * UserBatchRepositoryImpl
+ * - Picked up by Spring Data as the implementation of the UserBatchRepository fragment.
+ * - Each table gets a single INSERT with one VALUES tuple per row, so a chunk costs three round trips rather
+ * than three per user. Ids are generated by the caller, so the child rows can reference users without reading
+ * them back.
+ */
+public class UserBatchRepositoryImpl implements UserBatchRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public UserBatchRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<User> users) {
+
+        if (users.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        List<Object[]> userRows = new ArrayList<>(users.size());
+        List<Object[]> roleRows = new ArrayList<>(users.size());
+        List<Object[]> mfaRows = new ArrayList<>(users.size());
+
+        for (User user : users) {
+            userRows.add(new Object[]{user.getId(), user.getUsername(), user.getEmail(), user.getPassword()});
+            for (Role role : user.getRoles()) {
+                roleRows.add(new Object[]{user.getId(), role.getId()});
+            }
+            Mfa mfa = user.getMfa();
+            if (mfa != null) {
+                mfaRows.add(new Object[]{user.getId(), mfa.getMfaSecret(), mfa.isEnabled()});
+            }
+        }
+
+        return insert("users", new String[]{"id", "username", "email", "password"}, userRows)
+                .flatMap(inserted -> insert("users_roles", new String[]{"users_id", "roles_id"}, roleRows)
+                        .then(insert("mfa", new String[]{"users_id", "mfa_secret", "enabled"}, mfaRows))
+                        .thenReturn(inserted));
+
+    }
+
+    // Private methods
+
+    /**
+     * Builds and runs INSERT INTO table (columns) VALUES (:c_0, ...), (:c_1, ...), binding every value by name
+     */
+    private Mono<Long> insert(String table, String[] columns, List<Object[]> rows) {
+
+        if (rows.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(table)
+                .append(" (")
+                .append(String.join(", ", columns))
+                .append(") VALUES ");
+        Map<String, Object> bindings = new HashMap<>(rows.size() * columns.length * 2);
+
+        for (int i = 0; i < rows.size(); i++) {
+            StringJoiner tuple = new StringJoiner(", ", i == 0 ? "(" : ", (", ")");
+            for (int c = 0; c < columns.length; c++) {
+                String name = columns[c] + "_" + i;
+                tuple.add(":" + name);
+                bindings.put(name, rows.get(i)[c]);
+            }
+            sql.append(tuple);
+        }
+
+        return databaseClient.sql(sql.toString())
+                .bindValues(bindings)
+                .fetch()
+                .rowsUpdated();
+
+    }
+
+}
@@ -1,13 +1,49 @@
 package com.reactivelearning.demo.repository.user;
 
+import com.reactivelearning.demo.dto.user.UserSummary;
 import com.reactivelearning.demo.entities.User;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 @Repository
-public interface UsersRepository extends ReactiveCrudRepository<User, UUID> {
+public interface UsersRepository extends ReactiveCrudRepository<User, UUID>, AuthRecordRepository, UserBatchRepository {
     Mono<User> findByUsername(String username);
+
+    @Query("SELECT password FROM users")
+    Flux<String> findAllPasswords();
+
+    @Query("SELECT username FROM users")
+    Flux<String> findAllUsernames();
+
+    /**
+     * The first page of users in id order. Continue with findPageAfter.
+     */
+    @Query("SELECT id, username, email FROM users ORDER BY id LIMIT :limit")
+    Flux<UserSummary> findFirstPage(int limit);
+
+    /**
+     * The next page of users in id order, seeking past the last id of the previous page through the primary key.
+     */
+    @Query("SELECT id, username, email FROM users WHERE id > :after ORDER BY id LIMIT :limit")
+    Flux<UserSummary> findPageAfter(UUID after, int limit);
+
+    /**
+     * Which of the given usernames are already taken.
+     */
+    @Query("SELECT username FROM users WHERE username IN (:usernames)")
+    Flux<String> findExistingUsernames(Collection<String> usernames);
+
+    /**
+     * Replaces a password hash, but only if it has not changed since it was read.
+     */
+    @Modifying
+    @Query("UPDATE users SET password = :newPassword WHERE id = :id AND password = :oldPassword")
+    Mono<Integer> updatePassword(UUID id, String oldPassword, String newPassword);
 }
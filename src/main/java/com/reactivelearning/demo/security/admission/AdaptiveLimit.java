@@ -0,0 +1,123 @@
+package com.reactivelearning.demo.security.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AdaptiveLimit
+ * - A concurrency limit for one bulkhead, adjusted from the latency of the requests it lets through (AIMD on a
+ * latency gradient).
+ * - Two moving averages of latency are kept: a short one that follows the current load and a long one that
+ * stands in for latency without queueing. Once the short average is more than tolerance times the long one,
+ * requests are queueing somewhere (event loop, crypto executor, connection pool) and the limit is cut by
+ * backoffRatio. Otherwise, while at least half the limit is in use, it grows by one per request.
+ * - A request that fails with a server error also cuts the limit.
+ * - Admission is lock-free: one CAS on the in-flight count. Only the update after a request completes is
+ * synchronized, as the moving averages and the limit change together.
+ */
+public class AdaptiveLimit {
+
+    private static final double SHORT_WEIGHT = 0.2;
+    private static final double LONG_WEIGHT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private double estimate;
+    private double shortLatency;
+    private double longLatency;
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double tolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+        this.estimate = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+        this.limit = (int) estimate;
+    }
+
+    /**
+     * Try acquire
+     * - Takes a slot if fewer than limit requests are in flight
+     * @return boolean : true if the request may proceed, in which case onSuccess, onFailure or onIgnore must follow
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * On success
+     * - Releases a slot, feeding the request's latency into the limit
+     * @param latencyNanos long : How long the request took
+     */
+    public void onSuccess(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (longLatency == 0) {
+                shortLatency = latencyNanos;
+                longLatency = latencyNanos;
+                return;
+            }
+            shortLatency += SHORT_WEIGHT * (latencyNanos - shortLatency);
+            longLatency += LONG_WEIGHT * (latencyNanos - longLatency);
+            if (shortLatency > longLatency * tolerance) {
+                // Start the short average over, so one slow spell cuts the limit once rather than per request
+                shortLatency = longLatency;
+                decrease();
+            } else if (current * 2 >= estimate) {
+                update(estimate + 1);
+            }
+        }
+    }
+
+    /**
+     * On failure
+     * - Releases a slot after a server error, cutting the limit
+     */
+    public void onFailure() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            decrease();
+        }
+    }
+
+    /**
+     * On ignore
+     * - Releases a slot without touching the limit, e.g. for a cancelled or streamed request
+     */
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // Private methods
+
+    private void decrease() {
+        update(estimate * backoffRatio);
+    }
+
+    private void update(double next) {
+        estimate = Math.clamp(next, minLimit, maxLimit);
+        limit = (int) estimate;
+    }
+
+}
@@ -2,6 +2,7 @@ package com.reactivelearning.demo.security.config;
 
 import com.reactivelearning.demo.security.filters.CookieFilter;
 import com.reactivelearning.demo.security.jwt.JwtUtil;
+import com.reactivelearning.demo.security.jwt.VerifiedTokenCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
@@ -11,8 +12,8 @@ public class FilterConfig {
 
     @Bean
     @Order(1)
-    public CookieFilter cookieFilter(JwtUtil jwtUtil) {
-        return new CookieFilter(jwtUtil);
+    public CookieFilter cookieFilter(JwtUtil jwtUtil, VerifiedTokenCache tokenCache) {
+        return new CookieFilter(jwtUtil, tokenCache);
     }
 
 }
@@ -1,15 +1,26 @@
 package com.reactivelearning.demo.security.config;
 
+import com.reactivelearning.demo.audit.AuditLog;
+import com.reactivelearning.demo.audit.AuditType;
+import com.reactivelearning.demo.entities.RoleType;
+import com.reactivelearning.demo.exception.entities.ServiceUnavailableException;
+import com.reactivelearning.demo.exception.server.ErrorBodies;
+import com.reactivelearning.demo.security.crypto.CryptoExecutor;
+import com.reactivelearning.demo.security.crypto.CryptoOperation;
 import com.reactivelearning.demo.security.filters.CookieFilter;
+import com.reactivelearning.demo.security.userdetails.CachingUserDetailsService;
 import com.reactivelearning.demo.service.UserService;
+import com.reactivelearning.demo.service.metrics.AuthMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
@@ -18,13 +29,14 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
 import org.springframework.security.web.server.csrf.CookieServerCsrfTokenRepository;
+import org.springframework.security.web.server.util.matcher.OrServerWebExchangeMatcher;
 import org.springframework.security.web.server.util.matcher.PathPatternParserServerWebExchangeMatcher;
 import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @Configuration
 @EnableWebFluxSecurity
@@ -32,7 +44,7 @@ public class SecurityConfig {
 
     /**
      * The legacy filter.
-     * - For use ONLY with the legacy CRUD operations.
+     * - For use ONLY with the legacy CRUD operations, and the bulk import, which only admins may use.
      * @param http ServerHttpSecurity : A webflux specific filter chain/
      * @param location String : CORS source location
      * @return SecurityWebFilterChain : Webflux specific response
@@ -44,14 +56,20 @@ public class SecurityConfig {
             @Value("${domain.name}") String location) {
 
         return defaultConfig(location, http
-                .securityMatcher(new PathPatternParserServerWebExchangeMatcher("/api/v1/users"))
+                .securityMatcher(new OrServerWebExchangeMatcher(
+                        new PathPatternParserServerWebExchangeMatcher("/api/v1/users"),
+                        new PathPatternParserServerWebExchangeMatcher("/api/v1/users/import")))
                 .authorizeExchange(exchanges -> exchanges
                         .pathMatchers(HttpMethod.POST, "/api/v1/users").permitAll()
                         .pathMatchers(HttpMethod.GET, "/api/v1/users").authenticated()
+                        .pathMatchers(HttpMethod.POST, "/api/v1/users/import").hasRole(RoleType.ADMIN.name())
                 )
                 .csrf(csrf -> csrf
                         .requireCsrfProtectionMatcher(exchange -> {
-                            if (exchange.getRequest().getMethod().matches("GET")) {
+                            // An NDJSON body cannot be sent cross-site without a CORS preflight, which only the
+                            // configured origin passes
+                            if (exchange.getRequest().getMethod().matches("GET")
+                                    || exchange.getRequest().getPath().value().equals("/api/v1/users/import")) {
                                 return ServerWebExchangeMatcher.MatchResult.notMatch();
                             } else {
                                 return ServerWebExchangeMatcher.MatchResult.match();
@@ -62,6 +80,7 @@ public class SecurityConfig {
 
     /**
      * Security filter for /login and /register.
+     * - /login/totp needs no Basic auth, the pre-auth ticket in its body stands in for the password.
      * @param http ServerHttpSecurity: WebFlux-specific Web Filter
      * @param location String : CORS location
      * @return SecurityWebFilterChain : A fully configured filter chain
@@ -75,6 +94,7 @@ public class SecurityConfig {
                 .securityMatcher(new PathPatternParserServerWebExchangeMatcher("/api/v1/auth/**"))
                 .authorizeExchange(exchanges -> exchanges
                         .pathMatchers(HttpMethod.POST, "/api/v1/auth/register").permitAll()
+                        .pathMatchers(HttpMethod.POST, "/api/v1/auth/login/totp").permitAll()
                         .anyExchange().authenticated()
                 )
                 .csrf(csrf -> csrf.disable()));
@@ -103,6 +123,53 @@ public class SecurityConfig {
 
     }
 
+    /**
+     * Well-known documents filter
+     * - The JWK set is public, so resource servers can fetch it without credentials
+     * @param http ServerHttpSecurity : A webflux specific filter chain/
+     * @param location String : CORS source location
+     * @return SecurityWebFilterChain : Webflux specific response
+     */
+    @Order(4)
+    @Bean
+    public SecurityWebFilterChain wellKnownChain (
+            ServerHttpSecurity http, @Value("${domain.name}") String location) {
+
+        return defaultConfig(location, http
+                .securityMatcher(new PathPatternParserServerWebExchangeMatcher("/.well-known/**"))
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(HttpMethod.GET, "/.well-known/jwks.json").permitAll()
+                        .anyExchange().denyAll()
+                )
+                .csrf(csrf -> csrf.disable()));
+
+    }
+
+    /**
+     * Management endpoint filter
+     * - Health, info and the Prometheus scrape are open to GET, so probes and scrapers need no credentials. The MFA
+     * keyset endpoint is for admins only. Any other actuator endpoint stays closed.
+     * @param http ServerHttpSecurity : A webflux specific filter chain/
+     * @param location String : CORS source location
+     * @return SecurityWebFilterChain : Webflux specific response
+     */
+    @Order(5)
+    @Bean
+    public SecurityWebFilterChain managementChain (
+            ServerHttpSecurity http, @Value("${domain.name}") String location) {
+
+        return defaultConfig(location, http
+                .securityMatcher(new PathPatternParserServerWebExchangeMatcher("/manage/**"))
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(HttpMethod.GET, "/manage/health", "/manage/info", "/manage/prometheus")
+                        .permitAll()
+                        .pathMatchers("/manage/mfakeys").hasRole(RoleType.ADMIN.name())
+                        .anyExchange().denyAll()
+                )
+                .csrf(csrf -> csrf.disable()));
+
+    }
+
     /**
      * The default configuration
      * - If any requests hit a URL that does not fall within the set endpoints, it will use this
@@ -110,7 +177,7 @@ public class SecurityConfig {
      * @param location String : CORS source location
      * @return SecurityWebFilterChain : Webflux specific response
      */
-    @Order(4)
+    @Order(6)
     @Bean
     public SecurityWebFilterChain defaultChain (
             ServerHttpSecurity http, @Value("${domain.name}") String location) {
@@ -155,6 +222,7 @@ public class SecurityConfig {
 
     /**
      * The implementation for failing authentication and Spring Security passes the unauthenticated user to us.
+     * - The body for each message is encoded once, see ErrorBodies.
      * @return ServerAuthenticationEntryPoint : A response in JSON.
      */
     private ServerAuthenticationEntryPoint authFailureExceptionHandler() {
@@ -163,11 +231,8 @@ public class SecurityConfig {
             response.setStatusCode(HttpStatus.UNAUTHORIZED);
             response.getHeaders()
                     .add("Content-Type", "application/json");
-            return response.writeWith(Mono.just(response
-                    .bufferFactory()
-                    .wrap(String.format("{\"response\": \"%s\"}", ex.getMessage())
-                            .getBytes(StandardCharsets.UTF_8))
-            ));
+            return response.writeWith(Mono.just(
+                    ErrorBodies.wrap(response.bufferFactory(), ErrorBodies.json(ex.getMessage()))));
         };
     }
 
@@ -175,15 +240,38 @@ public class SecurityConfig {
 
     /**
      * A reactive implementation of basic username/password auth, provided by Spring Security.
+     * - Password matching runs on the CryptoExecutor. If its queue is full, or no database connection is free in
+     * time for the user lookup, the login is shed with a 503.
+     * - Users are looked up through the CachingUserDetailsService, so repeat logins skip the database until the
+     * password check.
+     * - Hashes on outdated parameters are re-encoded after a successful login and handed to UserService.
+     * - Each password match is timed as a stage of the login flow.
+     * - A rejected username or password is recorded in the AuditLog. A shed login is not, it was never checked.
      * @param userService Object of UserService, an injected Service-annotated class
+     * @param userDetailsService Object of CachingUserDetailsService, caches UserService's lookups
      * @param encoder Object of PasswordEncoder, holds password hashing-specific details
+     * @param cryptoExecutor Object of CryptoExecutor, runs BCrypt off the event loop
+     * @param authMetrics Object of AuthMetrics, times the password match
+     * @param auditLog Object of AuditLog, records failed logins
      * @return ReactiveAuthenticationManager : A bean that handles basic auth
      */
     @Bean
-    public ReactiveAuthenticationManager authenticationManager(UserService userService, PasswordEncoder encoder) {
-        UserDetailsRepositoryReactiveAuthenticationManager manager = new UserDetailsRepositoryReactiveAuthenticationManager(userService);
-        manager.setPasswordEncoder(encoder);
-        return manager;
+    public ReactiveAuthenticationManager authenticationManager(
+            UserService userService,
+            CachingUserDetailsService userDetailsService,
+            PasswordEncoder encoder,
+            CryptoExecutor cryptoExecutor,
+            AuthMetrics authMetrics,
+            AuditLog auditLog) {
+        UserDetailsRepositoryReactiveAuthenticationManager manager = new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+        manager.setPasswordEncoder(authMetrics.timePasswordMatch(encoder));
+        manager.setScheduler(cryptoExecutor.scheduler(CryptoOperation.PASSWORD_MATCH));
+        manager.setUserDetailsPasswordService(userService);
+        return authentication -> manager.authenticate(authentication)
+                .doOnError(AuthenticationException.class,
+                        ex -> auditLog.record(AuditType.LOGIN_FAILED, authentication.getName()))
+                .onErrorMap(RejectedExecutionException.class, ex -> ServiceUnavailableException.BUSY)
+                .onErrorMap(DataAccessResourceFailureException.class, ex -> ServiceUnavailableException.BUSY);
     }
 
 }
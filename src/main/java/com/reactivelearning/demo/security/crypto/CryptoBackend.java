@@ -0,0 +1,18 @@
+package com.reactivelearning.demo.security.crypto;
+
+/**
+ * The thread backend used by CryptoExecutor.
+ */
+public enum CryptoBackend {
+
+    /**
+     * A fixed-size pool of platform threads.
+     */
+    PLATFORM,
+
+    /**
+     * One virtual thread per task, each waiting for one of the executor's threads permits before it runs.
+     */
+    VIRTUAL
+
+}
@@ -0,0 +1,214 @@
+package com.reactivelearning.demo.security.crypto;
+
+import com.reactivelearning.demo.exception.entities.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CryptoExecutor
+ * - BCrypt, Tink and TOTP are CPU-bound. Running them inline would freeze the reactor-netty event loop they
+ * were called from, so every crypto call site hands its work to this executor instead.
+ * - The backend is either a fixed pool of platform threads or one virtual thread per task. Either way at most
+ * threads tasks execute at once: virtual threads wait for a permit first, so crypto.queue.wait measures the same
+ * queueing on both.
+ * - At most threads + queueLimit tasks may be outstanding. Anything above that fails fast with a
+ * ServiceUnavailableException (503) rather than queueing without bound.
+ * - Uses ConfigurationProperties, copying from app.security.crypto
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.crypto")
+public class CryptoExecutor implements InitializingBean, DisposableBean {
+
+    private CryptoBackend backend = CryptoBackend.PLATFORM;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueLimit = 256;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final Map<CryptoOperation, Timer> queueWaitTimers = new EnumMap<>(CryptoOperation.class);
+    private final Map<CryptoOperation, Timer> executionTimers = new EnumMap<>(CryptoOperation.class);
+    private final Map<CryptoOperation, Counter> rejectionCounters = new EnumMap<>(CryptoOperation.class);
+    private final Map<CryptoOperation, Scheduler> schedulers = new EnumMap<>(CryptoOperation.class);
+
+    private ExecutorService executor;
+    private Semaphore permits;
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoExecutor.class);
+
+    @Autowired
+    public CryptoExecutor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Builds the backend once the properties are bound.
+     */
+    @Override
+    public void afterPropertiesSet() {
+
+        if (threads < 1 || queueLimit < 0) {
+            throw new IllegalStateException("app.security.crypto requires threads >= 1 and queue-limit >= 0");
+        }
+
+        this.executor = switch (backend) {
+            case PLATFORM -> new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(threads + queueLimit),
+                    Thread.ofPlatform().name("crypto-", 0).daemon(true).factory());
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("crypto-virtual-", 0).factory());
+        };
+        this.permits = backend == CryptoBackend.VIRTUAL ? new Semaphore(threads) : null;
+
+        for (CryptoOperation operation : CryptoOperation.values()) {
+            queueWaitTimers.put(operation, Timer.builder("crypto.queue.wait")
+                    .description("Time a crypto task waited before it started executing")
+                    .tag("operation", operation.getTag())
+                    .register(meterRegistry));
+            executionTimers.put(operation, Timer.builder("crypto.execution")
+                    .description("Time a crypto task spent executing")
+                    .tag("operation", operation.getTag())
+                    .register(meterRegistry));
+            rejectionCounters.put(operation, Counter.builder("crypto.rejected")
+                    .description("Crypto tasks rejected because the queue was full")
+                    .tag("operation", operation.getTag())
+                    .register(meterRegistry));
+            schedulers.put(operation, Schedulers.fromExecutor(task -> dispatch(operation, task)));
+        }
+
+        Gauge.builder("crypto.outstanding", outstanding, AtomicInteger::get)
+                .description("Crypto tasks that are queued or executing")
+                .register(meterRegistry);
+
+        logger.info("Crypto executor started with backend={} threads={} queueLimit={}", backend, threads, queueLimit);
+
+    }
+
+    @Override
+    public void destroy() {
+        schedulers.values().forEach(Scheduler::dispose);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submit
+     * - Runs a crypto task off the calling thread and emits its result
+     * @param operation CryptoOperation : What the task does, used for metrics
+     * @param task Callable : The blocking, CPU-bound work
+     * @return T : The result of the task. Errors thrown by the task are propagated as-is, and a full queue
+     * results in a ServiceUnavailableException.
+     */
+    public <T> Mono<T> submit(CryptoOperation operation, Callable<T> task) {
+        return Mono.create(sink -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            sink.onCancel(() -> cancelled.set(true));
+            try {
+                dispatch(operation, () -> {
+                    if (cancelled.get()) {
+                        return;
+                    }
+                    try {
+                        sink.success(task.call());
+                    } catch (Throwable ex) {
+                        sink.error(ex);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                sink.error(ServiceUnavailableException.BUSY);
+            }
+        });
+    }
+
+    /**
+     * Scheduler
+     * - For call sites we do not own (e.g. Spring Security's authentication manager) that accept a Scheduler.
+     * - A full queue surfaces as a RejectedExecutionException, which callers should map to a
+     * ServiceUnavailableException.
+     * @param operation CryptoOperation : The operation every task on this scheduler is recorded under
+     * @return Scheduler : A scheduler backed by this executor
+     */
+    public Scheduler scheduler(CryptoOperation operation) {
+        return schedulers.get(operation);
+    }
+
+    // Private methods
+
+    /**
+     * Admits a task if there is room, recording queue-wait and execution time around it.
+     * @throws RejectedExecutionException If threads + queueLimit tasks are already outstanding
+     */
+    private void dispatch(CryptoOperation operation, Runnable task) {
+
+        if (outstanding.incrementAndGet() > threads + queueLimit) {
+            outstanding.decrementAndGet();
+            rejectionCounters.get(operation).increment();
+            throw new RejectedExecutionException("Crypto queue is full");
+        }
+
+        long enqueuedAt = System.nanoTime();
+
+        try {
+            executor.execute(() -> {
+                if (permits != null) {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException ex) {
+                        outstanding.decrementAndGet();
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                long startedAt = System.nanoTime();
+                queueWaitTimers.get(operation).record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    executionTimers.get(operation).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    outstanding.decrementAndGet();
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            outstanding.decrementAndGet();
+            rejectionCounters.get(operation).increment();
+            throw ex;
+        }
+
+    }
+
+    // Getters / Setters
+
+    public CryptoBackend getBackend() {return backend;}
+    public void setBackend(CryptoBackend backend) {this.backend = backend;}
+
+    public int getThreads() {return threads;}
+    public void setThreads(int threads) {this.threads = threads;}
+
+    public int getQueueLimit() {return queueLimit;}
+    public void setQueueLimit(int queueLimit) {this.queueLimit = queueLimit;}
+
+}
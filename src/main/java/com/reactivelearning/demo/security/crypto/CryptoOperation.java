@@ -0,0 +1,25 @@
+package com.reactivelearning.demo.security.crypto;
+
+/**
+ * Every CPU-bound crypto operation that is offloaded from the event loop. The tag is used for metrics.
+ */
+public enum CryptoOperation {
+
+    PASSWORD_HASH("password.hash"),
+    PASSWORD_MATCH("password.match"),
+    MFA_ENCRYPT("mfa.encrypt"),
+    MFA_DECRYPT("mfa.decrypt"),
+    MFA_REENCRYPT("mfa.reencrypt"),
+    TOTP_VALIDATE("totp.validate");
+
+    private final String tag;
+
+    CryptoOperation(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.reactivelearning.demo.security.crypto;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.RegistryConfiguration;
+import com.reactivelearning.demo.exception.entities.InternalServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MfaCipher
+ * - Encrypts and decrypts MFA secrets with the keyset from MfaConfig.keysetHandle.
+ * - The Aead primitive is resolved once per keyset, not once per call. A rotation swaps keyset and primitive
+ * together, so callers never see one without the other.
+ * - Keys are only ever rotated in the MfaKeysetStore, and installed from it. Old keys stay in the keyset after a
+ * rotation, so existing secrets still decrypt. MfaReencryptionJob then moves them onto the new primary key.
+ * - Like the other crypto in this package, only call encrypt and decrypt from the CryptoExecutor.
+ */
+@Component
+public class MfaCipher {
+
+    private static final byte[] ASSOCIATED_DATA = "Reactive AuthN/AuthZ".getBytes(StandardCharsets.UTF_8);
+
+    // Tink's TINK and LEGACY output prefixes: a marker byte, then the 4-byte id of the key that encrypted
+    private static final int PREFIX_LENGTH = 5;
+    private static final byte TINK_PREFIX = 0x01;
+    private static final byte LEGACY_PREFIX = 0x00;
+
+    private final AtomicReference<Keyed> current = new AtomicReference<>();
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Logger logger = LoggerFactory.getLogger(MfaCipher.class);
+
+    @Autowired
+    public MfaCipher(KeysetHandle keysetHandle, ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        this.current.set(Keyed.of(keysetHandle));
+    }
+
+    /**
+     * Encrypt
+     * - Use AEAD encryption with the current primary key
+     * @param raw String : The raw string to be encrypted
+     * @return String : Encrypted string, Base64 encoded
+     */
+    public String encrypt(String raw) {
+        try {
+            byte[] cipherText = current.get().aead.encrypt(raw.getBytes(StandardCharsets.UTF_8), ASSOCIATED_DATA);
+            return Base64.getEncoder().encodeToString(cipherText);
+        } catch (GeneralSecurityException exception) {
+            throw new InternalServerException(String.format("Encryption failed: %s", exception.getMessage()));
+        }
+    }
+
+    /**
+     * Decrypt
+     * - Use AEAD decryption with whichever key in the keyset encrypted the secret
+     * @param encrypted String : The Base64 encoded, encrypted string
+     * @return String : Decrypted raw string
+     */
+    public String decrypt(String encrypted) {
+        try {
+            byte[] rawText = current.get().aead.decrypt(Base64.getDecoder().decode(encrypted), ASSOCIATED_DATA);
+            return new String(rawText, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException exception) {
+            throw new InternalServerException(String.format("Encryption failed: %s", exception.getMessage()));
+        }
+    }
+
+    /**
+     * Is current
+     * - Reads the key id from the ciphertext's Tink prefix, without decrypting
+     * @param encrypted String : The Base64 encoded, encrypted string
+     * @return boolean : Whether the secret is already encrypted under the primary key. false for a malformed one.
+     */
+    public boolean isCurrent(String encrypted) {
+        if (encrypted == null || encrypted.length() < 8) {
+            return false;
+        }
+        byte[] prefix;
+        try {
+            prefix = Base64.getDecoder().decode(encrypted.substring(0, 8));
+        } catch (IllegalArgumentException exception) {
+            return false;
+        }
+        if (prefix[0] != TINK_PREFIX && prefix[0] != LEGACY_PREFIX) {
+            return false;
+        }
+        return ByteBuffer.wrap(prefix, 1, PREFIX_LENGTH - 1).getInt() == current.get().primaryKeyId;
+    }
+
+    /**
+     * Primary key id
+     * @return int : The id of the key new secrets are encrypted with
+     */
+    public int getPrimaryKeyId() {
+        return current.get().primaryKeyId;
+    }
+
+    /**
+     * Key count
+     * @return int : How many keys the keyset holds, old ones included
+     */
+    public int getKeyCount() {
+        return current.get().keysetHandle.size();
+    }
+
+    /**
+     * Install
+     * - Swaps in a keyset from the MfaKeysetStore, rotated outside the process. It must still contain every key of
+     * the keyset in use, as existing secrets may be encrypted with any of them.
+     * @param keysetHandle KeysetHandle : The new keyset
+     * @return int : The id of its primary key
+     * @throws InternalServerException : If the new keyset drops a key in use
+     */
+    public synchronized int install(KeysetHandle keysetHandle) {
+        KeysetHandle installed = current.get().keysetHandle;
+        for (int i = 0; i < installed.size(); i++) {
+            int keyId = installed.getAt(i).getId();
+            if (!contains(keysetHandle, keyId)) {
+                throw new InternalServerException(String.format("The new MFA keyset is missing key %d, which is still in use", keyId));
+            }
+        }
+        Keyed keyed = Keyed.of(keysetHandle);
+        current.set(keyed);
+        logger.info("MFA secrets are now encrypted with key {}", keyed.primaryKeyId);
+        eventPublisher.publishEvent(new MfaKeyRotatedEvent(keyed.primaryKeyId));
+        return keyed.primaryKeyId;
+    }
+
+    private static boolean contains(KeysetHandle keysetHandle, int keyId) {
+        for (int i = 0; i < keysetHandle.size(); i++) {
+            if (keysetHandle.getAt(i).getId() == keyId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A keyset and the primitive resolved from it, swapped as one.
+     */
+    private record Keyed(KeysetHandle keysetHandle, Aead aead, int primaryKeyId) {
+
+        static Keyed of(KeysetHandle keysetHandle) {
+            try {
+                return new Keyed(
+                        keysetHandle,
+                        keysetHandle.getPrimitive(RegistryConfiguration.get(), Aead.class),
+                        keysetHandle.getPrimary().getId());
+            } catch (GeneralSecurityException exception) {
+                throw new InternalServerException(String.format("Invalid MFA keyset: %s", exception.getMessage()));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.reactivelearning.demo.security.crypto;
+
+/**
+ * Published by MfaCipher once a new keyset is in use.
+ * @param primaryKeyId int : The id of the keyset's new primary key
+ */
+public record MfaKeyRotatedEvent(int primaryKeyId) {}
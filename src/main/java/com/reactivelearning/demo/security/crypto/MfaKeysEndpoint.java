@@ -0,0 +1,53 @@
+package com.reactivelearning.demo.security.crypto;
+
+import com.google.crypto.tink.KeysetHandle;
+import com.reactivelearning.demo.exception.entities.InternalServerException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * MfaKeysEndpoint
+ * - The operator's handle on the MFA keyset, at /manage/mfakeys. Admins only, see SecurityConfig.managementChain.
+ * - GET reports the primary key and how many keys the keyset holds. POST reloads the keyset from the
+ * MfaKeysetStore after it was rotated there, and installs it if its primary key changed, which starts the
+ * MfaReencryptionJob.
+ * - Keys are never generated here, so a rotation is always durable before any secret is encrypted with it.
+ */
+@Component
+@Endpoint(id = "mfakeys")
+public class MfaKeysEndpoint {
+
+    private final MfaCipher mfaCipher;
+    private final MfaKeysetStore keysetStore;
+
+    @Autowired
+    public MfaKeysEndpoint(MfaCipher mfaCipher, MfaKeysetStore keysetStore) {
+        this.mfaCipher = mfaCipher;
+        this.keysetStore = keysetStore;
+    }
+
+    @ReadOperation
+    public MfaKeys keys() {
+        return new MfaKeys(mfaCipher.getPrimaryKeyId(), mfaCipher.getKeyCount());
+    }
+
+    /**
+     * Reload
+     * @return MfaKeys : The keyset after reloading, with the stored primary key
+     * @throws InternalServerException : If no keyset is stored, or the stored one drops a key in use
+     */
+    @WriteOperation
+    public MfaKeys reload() {
+        KeysetHandle stored = keysetStore.load();
+        if (stored.getPrimary().getId() != mfaCipher.getPrimaryKeyId()) {
+            mfaCipher.install(stored);
+        }
+        return keys();
+    }
+
+    public record MfaKeys(int primaryKeyId, int keyCount) {}
+
+}
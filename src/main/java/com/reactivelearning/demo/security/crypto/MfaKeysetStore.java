@@ -0,0 +1,71 @@
+package com.reactivelearning.demo.security.crypto;
+
+import com.google.crypto.tink.BinaryKeysetReader;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.KeysetHandle;
+import com.reactivelearning.demo.exception.entities.InternalServerException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * MfaKeysetStore
+ * - Where the MFA keyset is kept outside the process: the file at mfa.secret-file if set, e.g. one a key
+ * management system or secret mount keeps up to date, otherwise mfa.secret. Both hold the Base64 encoded binary
+ * keyset.
+ * - Rotation happens in the store. Keys are never generated here or in MfaCipher, so every key that secrets are
+ * encrypted with survives a restart.
+ * - With neither set the store is not durable, and MfaConfig falls back to an ephemeral keyset for development.
+ */
+@Component
+public class MfaKeysetStore {
+
+    private static final String UNDEFINED = "Undefined";
+
+    private final String secret;
+    private final String secretFile;
+
+    @Autowired
+    public MfaKeysetStore(
+            @Value("${mfa.secret:Undefined}") String secret,
+            @Value("${mfa.secret-file:}") String secretFile) {
+        this.secret = secret;
+        this.secretFile = secretFile;
+    }
+
+    /**
+     * Is durable
+     * @return boolean : Whether a keyset is configured, in mfa.secret-file or mfa.secret
+     */
+    public boolean isDurable() {
+        return !secretFile.isBlank() || !secret.equals(UNDEFINED);
+    }
+
+    /**
+     * Load
+     * - Reads the keyset as it is stored now. The file is read again on every call, so it picks up rotations.
+     * @return KeysetHandle : The stored keyset
+     * @throws InternalServerException : If no keyset is configured, or it cannot be read
+     */
+    public KeysetHandle load() {
+        if (!isDurable()) {
+            throw new InternalServerException("No MFA keyset is configured, set mfa.secret-file or mfa.secret");
+        }
+        try {
+            String encoded = secretFile.isBlank()
+                    ? secret
+                    : Files.readString(Path.of(secretFile), StandardCharsets.US_ASCII);
+            return CleartextKeysetHandle.read(BinaryKeysetReader.withBytes(Base64.getDecoder().decode(encoded.strip())));
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException exception) {
+            throw new InternalServerException(String.format("Could not read the MFA keyset: %s", exception.getMessage()));
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.reactivelearning.demo.security.crypto;
+
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.exception.entities.InternalServerException;
+import com.reactivelearning.demo.exception.entities.ServiceUnavailableException;
+import com.reactivelearning.demo.repository.user.MfaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MfaReencryptionJob
+ * - After an MFA key rotation, moves every stored secret onto the new primary key, so old keys can eventually
+ * be dropped from the keyset.
+ * - Streams the mfa table in keyset-paginated batches (seeking by id, never OFFSET). Only rows under an older
+ * key are decrypted and re-encrypted, at most `concurrency` at a time on the CryptoExecutor.
+ * - Each write only applies if the row is unchanged since it was read. A newer rotation cancels the running pass
+ * and starts a fresh one.
+ * - Only runs while the primary key in use is the one in the MfaKeysetStore. Secrets are never moved onto an
+ * ephemeral key, which would lock them out after a restart.
+ * - A secret that cannot be decrypted (malformed, or under a key no longer in the keyset) is logged, counted and
+ * left as it is, so one bad row does not stop the pass.
+ * - Progress is exposed as mfa.reencryption.scanned, mfa.reencryption.reencrypted and mfa.reencryption.skipped
+ * counters and the mfa.reencryption.running gauge.
+ * - Uses ConfigurationProperties, copying from app.security.mfa.reencryption
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.mfa.reencryption")
+public class MfaReencryptionJob {
+
+    private int batchSize = 500;
+    private int concurrency = 2;
+
+    private final MfaRepository mfaRepository;
+    private final MfaCipher mfaCipher;
+    private final MfaKeysetStore keysetStore;
+    private final CryptoExecutor cryptoExecutor;
+
+    private final Counter scanned;
+    private final Counter reencrypted;
+    private final Counter skipped;
+    private final AtomicLong running = new AtomicLong();
+    private final AtomicReference<Disposable> pass = new AtomicReference<>();
+
+    private final Logger logger = LoggerFactory.getLogger(MfaReencryptionJob.class);
+
+    @Autowired
+    public MfaReencryptionJob(
+            MfaRepository mfaRepository,
+            MfaCipher mfaCipher,
+            MfaKeysetStore keysetStore,
+            CryptoExecutor cryptoExecutor,
+            MeterRegistry meterRegistry) {
+        this.mfaRepository = mfaRepository;
+        this.mfaCipher = mfaCipher;
+        this.keysetStore = keysetStore;
+        this.cryptoExecutor = cryptoExecutor;
+        this.scanned = Counter.builder("mfa.reencryption.scanned")
+                .description("MFA rows checked by the re-encryption job")
+                .register(meterRegistry);
+        this.reencrypted = Counter.builder("mfa.reencryption.reencrypted")
+                .description("MFA secrets moved onto the primary key")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("mfa.reencryption.skipped")
+                .description("MFA secrets left as they are because they could not be decrypted")
+                .register(meterRegistry);
+        Gauge.builder("mfa.reencryption.running", running, AtomicLong::get)
+                .description("1 while a re-encryption pass is in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * On startup, a keyset with more than one key may still have secrets under an old key
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (mfaCipher.getKeyCount() > 1) {
+            start();
+        }
+    }
+
+    @EventListener(MfaKeyRotatedEvent.class)
+    public void onRotation(MfaKeyRotatedEvent event) {
+        start();
+    }
+
+    /**
+     * Run
+     * - One full pass over the mfa table
+     * @return Long : How many secrets were re-encrypted
+     */
+    public Mono<Long> run() {
+        return pages()
+                .concatMap(page -> Flux.fromIterable(page)
+                        .doOnNext(mfa -> scanned.increment())
+                        .filter(mfa -> !mfaCipher.isCurrent(mfa.getMfaSecret()))
+                        .flatMap(mfa -> reencrypt(mfa), concurrency)
+                        .filter(updated -> updated)
+                        .count())
+                .reduce(0L, Long::sum);
+    }
+
+    // Private methods
+
+    private synchronized void start() {
+
+        Disposable previous = pass.getAndSet(null);
+        if (previous != null) {
+            previous.dispose();
+        }
+
+        if (!isPrimaryStored()) {
+            return;
+        }
+
+        pass.set(run()
+                .doOnSubscribe(sub -> running.set(1))
+                .doFinally(signal -> running.set(0))
+                .subscribe(
+                        count -> logger.info("MFA re-encryption finished, {} secrets moved to key {}", count, mfaCipher.getPrimaryKeyId()),
+                        error -> logger.error("MFA re-encryption failed: {}", error.getMessage())));
+
+    }
+
+    /**
+     * Whether the primary key in use is also the stored one, so secrets moved onto it survive a restart
+     */
+    private boolean isPrimaryStored() {
+        if (!keysetStore.isDurable()) {
+            logger.warn("Not re-encrypting MFA secrets, the keyset in use is ephemeral");
+            return false;
+        }
+        try {
+            int storedPrimaryKeyId = keysetStore.load().getPrimary().getId();
+            if (storedPrimaryKeyId != mfaCipher.getPrimaryKeyId()) {
+                logger.warn("Not re-encrypting MFA secrets, key {} in use is not the stored primary key {}",
+                        mfaCipher.getPrimaryKeyId(), storedPrimaryKeyId);
+                return false;
+            }
+            return true;
+        } catch (InternalServerException exception) {
+            logger.warn("Not re-encrypting MFA secrets: {}", exception.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Emits the table one page at a time, each page seeking past the last id of the one before.
+     */
+    private Flux<List<Mfa>> pages() {
+        return mfaRepository.findFirstPage(batchSize)
+                .collectList()
+                .expand(page -> page.size() < batchSize
+                        ? Mono.empty()
+                        : mfaRepository.findPageAfter(page.getLast().getId(), batchSize).collectList())
+                .filter(page -> !page.isEmpty());
+    }
+
+    private Mono<Boolean> reencrypt(Mfa mfa) {
+        String oldSecret = mfa.getMfaSecret();
+        return cryptoExecutor.submit(CryptoOperation.MFA_REENCRYPT, () -> mfaCipher.encrypt(mfaCipher.decrypt(oldSecret)))
+                // Logins come first: back off while the crypto queue is full
+                .retryWhen(Retry.backoff(5, Duration.ofMillis(100))
+                        .filter(error -> error instanceof ServiceUnavailableException))
+                .onErrorResume(InternalServerException.class, error -> {
+                    skipped.increment();
+                    logger.warn("Skipping MFA row {}, its secret could not be re-encrypted: {}", mfa.getId(), error.getMessage());
+                    return Mono.empty();
+                })
+                .flatMap(newSecret -> mfaRepository.updateSecret(mfa.getId(), oldSecret, newSecret))
+                .map(updated -> {
+                    if (updated > 0) {
+                        reencrypted.increment();
+                    }
+                    return updated > 0;
+                });
+    }
+
+    // Getters / Setters
+
+    public int getBatchSize() {return batchSize;}
+    public void setBatchSize(int batchSize) {this.batchSize = batchSize;}
+
+    public int getConcurrency() {return concurrency;}
+    public void setConcurrency(int concurrency) {this.concurrency = concurrency;}
+
+}
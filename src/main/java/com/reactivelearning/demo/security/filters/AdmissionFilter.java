@@ -0,0 +1,205 @@
+package com.reactivelearning.demo.security.filters;
+
+import com.reactivelearning.demo.security.admission.AdaptiveLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AdmissionFilter
+ * - Gives each group of endpoints its own bulkhead, so a storm of logins cannot take the event loops, crypto
+ * executor and connections the cheap CRUD endpoints need, and the other way around.
+ * - Each bulkhead admits up to an AdaptiveLimit of requests at once, raised and lowered from the latency it
+ * observes. A request over the limit is shed at once with a 503 and a Retry-After header, before any other filter.
+ * - Streamed requests and responses (NDJSON) hold a slot, but their latency does not move the limit. Nor does a
+ * request the client cancelled, or one that ended in an error the chain did not handle. A 5xx lowers it.
+ * - Paths outside every group are let through.
+ * - Each bulkhead's limit and in-flight count are exported as the admission.limit and admission.in-flight gauges,
+ * and its shed requests as the admission.rejected counter, tagged by group.
+ * - Uses ConfigurationProperties, copying from app.security.filters.admission
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.filters.admission")
+public class AdmissionFilter implements WebFilter, Ordered, InitializingBean {
+
+    // Sheds load ahead of the LoginThrottleFilter and Spring Security
+    public static final int ORDER = LoginThrottleFilter.ORDER - 1;
+
+    private static final byte[] SHED = "{\"response\": \"The server is busy, please try again later.\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private boolean enabled = true;
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private final MeterRegistry meterRegistry;
+
+    private List<Bulkhead> bulkheads = List.of();
+
+    @Autowired
+    public AdmissionFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        List<Bulkhead> built = new ArrayList<>();
+        groups.forEach((name, group) -> {
+            AdaptiveLimit limit = new AdaptiveLimit(
+                    group.initialLimit, group.minLimit, group.maxLimit, group.backoffRatio, group.tolerance);
+            Gauge.builder("admission.limit", limit, AdaptiveLimit::getLimit)
+                    .tag("group", name)
+                    .register(meterRegistry);
+            Gauge.builder("admission.in-flight", limit, AdaptiveLimit::getInFlight)
+                    .tag("group", name)
+                    .register(meterRegistry);
+            Counter rejected = Counter.builder("admission.rejected")
+                    .tag("group", name)
+                    .register(meterRegistry);
+            built.add(new Bulkhead(List.copyOf(group.paths), limit, rejected));
+        });
+        this.bulkheads = List.copyOf(built);
+    }
+
+    /**
+     * Filter
+     * - Admits the request to its group's bulkhead, or sheds it
+     * @param exchange The request information
+     * @param chain The tool to trigger other filters
+     * @return The next filter in line, or the 503
+     */
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        Bulkhead bulkhead = enabled ? bulkheadFor(exchange.getRequest().getPath().value()) : null;
+        if (bulkhead == null) {
+            return chain.filter(exchange);
+        }
+
+        if (!bulkhead.limit().tryAcquire()) {
+            bulkhead.rejected().increment();
+            return shed(exchange.getResponse());
+        }
+
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> release(bulkhead.limit(), exchange, signal, System.nanoTime() - start));
+
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    // Private methods
+
+    private Bulkhead bulkheadFor(String path) {
+        for (Bulkhead bulkhead : bulkheads) {
+            for (String pattern : bulkhead.paths()) {
+                if (pathMatcher.match(pattern, path)) {
+                    return bulkhead;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void release(AdaptiveLimit limit, ServerWebExchange exchange, SignalType signal, long latency) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        // An error escaping the chain has no status yet, and is mostly a rejected cookie
+        if (signal != SignalType.ON_COMPLETE || isStreamed(exchange)) {
+            limit.onIgnore();
+        } else if (status != null && status.is5xxServerError()) {
+            limit.onFailure();
+        } else {
+            limit.onSuccess(latency);
+        }
+    }
+
+    private static boolean isStreamed(ServerWebExchange exchange) {
+        MediaType request = exchange.getRequest().getHeaders().getContentType();
+        MediaType response = exchange.getResponse().getHeaders().getContentType();
+        return (request != null && MediaType.APPLICATION_NDJSON.isCompatibleWith(request))
+                || (response != null && MediaType.APPLICATION_NDJSON.isCompatibleWith(response));
+    }
+
+    private Mono<Void> shed(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, retryAfter.toSeconds())));
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(SHED)));
+    }
+
+    private record Bulkhead(List<String> paths, AdaptiveLimit limit, Counter rejected) {}
+
+    /**
+     * The paths of one bulkhead and how its limit adapts.
+     */
+    public static class Group {
+
+        private List<String> paths = new ArrayList<>();
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        private double tolerance = 2.0;
+
+        public List<String> getPaths() {return paths;}
+        public void setPaths(List<String> paths) {this.paths = paths;}
+
+        public int getInitialLimit() {return initialLimit;}
+        public void setInitialLimit(int initialLimit) {this.initialLimit = initialLimit;}
+
+        public int getMinLimit() {return minLimit;}
+        public void setMinLimit(int minLimit) {this.minLimit = minLimit;}
+
+        public int getMaxLimit() {return maxLimit;}
+        public void setMaxLimit(int maxLimit) {this.maxLimit = maxLimit;}
+
+        public double getBackoffRatio() {return backoffRatio;}
+        public void setBackoffRatio(double backoffRatio) {this.backoffRatio = backoffRatio;}
+
+        public double getTolerance() {return tolerance;}
+        public void setTolerance(double tolerance) {this.tolerance = tolerance;}
+
+    }
+
+    // Getters / Setters
+
+    public boolean isEnabled() {return enabled;}
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+
+    public Duration getRetryAfter() {return retryAfter;}
+    public void setRetryAfter(Duration retryAfter) {this.retryAfter = retryAfter;}
+
+    public Map<String, Group> getGroups() {return groups;}
+    public void setGroups(Map<String, Group> groups) {this.groups = groups;}
+
+}
@@ -2,6 +2,8 @@ package com.reactivelearning.demo.security.filters;
 
 import com.reactivelearning.demo.entities.User;
 import com.reactivelearning.demo.security.jwt.JwtUtil;
+import com.reactivelearning.demo.security.jwt.VerifiedPrincipal;
+import com.reactivelearning.demo.security.jwt.VerifiedTokenCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.http.HttpCookie;
@@ -25,21 +27,27 @@ import java.util.List;
  * - WebFlux automatically registers **every** WebFilter, thus we need to build our Filters
  * in ways that they automatically know when to apply or not.
  * - Uses ConfigurationProperties, copying from app.security.filters.cookies
+ * - The cookie is verified once, through VerifiedTokenCache, and the result is stored in the exchange
+ * attributes under VERIFIED_PRINCIPAL_ATTRIBUTE for anything downstream.
  */
 @Component
 @ConfigurationProperties(prefix = "app.security.filters.cookies")
 public class CookieFilter implements WebFilter {
 
+    public static final String VERIFIED_PRINCIPAL_ATTRIBUTE = CookieFilter.class.getName() + ".VERIFIED_PRINCIPAL";
+
     private boolean enabled = true;
     private List<String> permittedPaths = new ArrayList<>();
 
     private final PathMatcher pathMatcher = new AntPathMatcher();
 
     private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache tokenCache;
 
     @Autowired
-    public CookieFilter(JwtUtil jwtUtil) {
+    public CookieFilter(JwtUtil jwtUtil, VerifiedTokenCache tokenCache) {
         this.jwtUtil = jwtUtil;
+        this.tokenCache = tokenCache;
     }
 
     /**
@@ -69,12 +77,15 @@ public class CookieFilter implements WebFilter {
                 .getFirst("reactive_authn_authz");
 
         // Validate the cookie...
-        if (cookie == null || !jwtUtil.isValid(cookie.getValue())) {
+        VerifiedPrincipal principal = cookie == null ? null : tokenCache.verify(cookie.getValue());
+        if (principal == null) {
             return Mono.error(new BadCredentialsException("Authentication cookie is invalid"));
         }
 
+        exchange.getAttributes().put(VERIFIED_PRINCIPAL_ATTRIBUTE, principal);
+
         // Gather the user's data from the cookie
-        User user = jwtUtil.extractUserFromJwt(cookie.getValue());
+        User user = jwtUtil.toUser(principal);
 
         // If the data is invalid...
         if (user == null) {
@@ -0,0 +1,243 @@
+package com.reactivelearning.demo.security.filters;
+
+import com.reactivelearning.demo.security.throttle.LoginThrottle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * LoginThrottleFilter
+ * - Runs ahead of the Spring Security filter chains, so attempts over the LoginThrottle's budget are answered with
+ * a 429 and a Retry-After header before the password is ever hashed.
+ * - Only applies to the configured paths. The username is read from the Basic Authorization header.
+ * - The client IP is the connection's, unless it comes from one of the trustedProxies (IPs or CIDR ranges). Then
+ * X-Forwarded-For is read from the right, skipping trusted proxies, and the first address left is the client's.
+ * Anything further left was written by the client and is ignored. server.forward-headers-strategy trusts the header
+ * from anyone, so leave it unset and list the proxies here instead.
+ * - Once the security chain has answered, a 401 is recorded as a failed login for the username from that IP, and a
+ * 2xx clears its failures.
+ * - Uses ConfigurationProperties, copying from app.security.filters.login-throttle
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.filters.login-throttle")
+public class LoginThrottleFilter implements WebFilter, Ordered {
+
+    // Spring Security's WebFilterChainProxy is registered at -100
+    public static final int ORDER = -101;
+
+    private static final String BASIC = "Basic ";
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final byte[] THROTTLED = "{\"response\": \"Too many login attempts, please try again later.\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private List<String> paths = new ArrayList<>(List.of("/api/v1/auth/login"));
+    private List<String> trustedProxies = new ArrayList<>();
+
+    private volatile List<Cidr> trustedRanges = List.of();
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private final LoginThrottle loginThrottle;
+
+    @Autowired
+    public LoginThrottleFilter(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    /**
+     * Filter
+     * - Rejects the login if the client IP or username is over budget, or the username is locked out
+     * @param exchange The request information
+     * @param chain The tool to trigger other filters
+     * @return The next filter in line, or the 429
+     */
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.POST || !isThrottledPath(request.getPath().value())) {
+            return chain.filter(exchange);
+        }
+
+        String username = username(request);
+        String clientIp = clientIp(request);
+        long wait = loginThrottle.acquire(clientIp, username);
+        if (wait > 0) {
+            return reject(exchange.getResponse(), wait);
+        }
+
+        return chain.filter(exchange)
+                .doOnSuccess(__ -> {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    if (status == null || status.is2xxSuccessful()) {
+                        loginThrottle.recordSuccess(clientIp, username);
+                    } else if (status.value() == HttpStatus.UNAUTHORIZED.value()) {
+                        loginThrottle.recordFailure(clientIp, username);
+                    }
+                });
+
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    // Private methods
+
+    private boolean isThrottledPath(String path) {
+        for (String throttled : paths) {
+            if (pathMatcher.match(throttled, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The username from a Basic Authorization header, or null if there is none or it is malformed. The security
+     * chain rejects the latter anyway.
+     */
+    private static String username(ServerHttpRequest request) {
+        String header = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BASIC, 0, BASIC.length())) {
+            return null;
+        }
+        try {
+            String credentials = new String(Base64.getDecoder().decode(header.substring(BASIC.length()).trim()),
+                    StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon > 0 ? credentials.substring(0, colon) : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The connection's address, or the nearest untrusted one in X-Forwarded-For if the connection is from a trusted
+     * proxy. An entry that is not an IP address ends the walk at the last address before it.
+     */
+    private String clientIp(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null || address.getAddress() == null) {
+            return address == null ? "unknown" : address.getHostString();
+        }
+        InetAddress client = address.getAddress();
+        List<String> forwarded = request.getHeaders().getOrEmpty(X_FORWARDED_FOR);
+        for (int i = forwarded.size() - 1; i >= 0 && isTrusted(client); i--) {
+            String[] hops = forwarded.get(i).split(",");
+            for (int j = hops.length - 1; j >= 0 && isTrusted(client); j--) {
+                InetAddress hop = parseAddress(hops[j].strip());
+                if (hop == null) {
+                    return client.getHostAddress();
+                }
+                client = hop;
+            }
+        }
+        return client.getHostAddress();
+    }
+
+    private boolean isTrusted(InetAddress address) {
+        for (Cidr range : trustedRanges) {
+            if (range.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses an IP literal, or returns null. Anything else is refused up front, so no lookup is ever made.
+     */
+    private static InetAddress parseAddress(String value) {
+        if (!IPV4.matcher(value).matches() && !(value.indexOf(':') >= 0 && value.chars().allMatch(
+                c -> Character.digit(c, 16) >= 0 || c == ':' || c == '.'))) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(value);
+        } catch (UnknownHostException ex) {
+            return null;
+        }
+    }
+
+    private static Mono<Void> reject(ServerHttpResponse response, long waitNanos) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1))));
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(THROTTLED)));
+    }
+
+    /**
+     * An IP range in CIDR notation. A bare address is a range of one.
+     */
+    private record Cidr(byte[] network, int prefix) {
+
+        static Cidr parse(String value) {
+            int slash = value.indexOf('/');
+            InetAddress address = parseAddress(slash < 0 ? value.strip() : value.substring(0, slash).strip());
+            if (address == null) {
+                throw new IllegalArgumentException("Not an IP address or CIDR range: " + value);
+            }
+            byte[] network = address.getAddress();
+            int prefix = slash < 0 ? network.length * 8 : Integer.parseInt(value.substring(slash + 1).strip());
+            if (prefix < 0 || prefix > network.length * 8) {
+                throw new IllegalArgumentException("Invalid prefix length in " + value);
+            }
+            return new Cidr(network, prefix);
+        }
+
+        boolean contains(InetAddress address) {
+            byte[] bytes = address.getAddress();
+            if (bytes.length != network.length) {
+                return false;
+            }
+            for (int bit = 0; bit < prefix; bit += 8) {
+                int mask = 0xff << (8 - Math.min(8, prefix - bit)) & 0xff;
+                if ((bytes[bit / 8] & mask) != (network[bit / 8] & mask)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    // Getters / Setters
+
+    public List<String> getPaths() {return this.paths;}
+    public void setPaths(List<String> paths) {this.paths = paths;}
+
+    public List<String> getTrustedProxies() {return this.trustedProxies;}
+    public void setTrustedProxies(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+        this.trustedRanges = trustedProxies.stream().map(Cidr::parse).toList();
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.reactivelearning.demo.security.jwt;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AsymmetricJwtKey
+ * - An ES256 (P-256) or EdDSA (Ed25519) key pair. Both produce 64-byte raw signatures, as JWS expects.
+ * - The kid is the key's RFC 7638 JWK thumbprint, so any service can recompute it from the published JWK, and a
+ * key loaded from PEM keeps its kid across restarts.
+ */
+public final class AsymmetricJwtKey implements JwtKey {
+
+    private static final int SIGNATURE_LENGTH = 64;
+    private static final int P256_COORDINATE_LENGTH = 32;
+    private static final int ED25519_KEY_LENGTH = 32;
+
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+    private static final Pattern PEM_BLOCK = Pattern.compile("-----BEGIN ([A-Z ]+)-----([^-]*)-----END \\1-----");
+
+    private final JwsAlgorithm algorithm;
+    private final KeyPair keyPair;
+    private final Map<String, String> jwk;
+    private final String kid;
+    private final byte[] header;
+
+    private AsymmetricJwtKey(JwsAlgorithm algorithm, KeyPair keyPair) {
+        this.algorithm = algorithm;
+        this.keyPair = keyPair;
+        this.jwk = publicJwk(algorithm, keyPair);
+        this.kid = thumbprint(jwk);
+        this.header = JwtCodec.base64Url(
+                "{\"alg\":\"" + algorithm.getId() + "\",\"kid\":\"" + kid + "\",\"typ\":\"JWT\"}");
+    }
+
+    /**
+     * Generate
+     * - Creates a fresh key pair
+     * @param algorithm JwsAlgorithm : ES256 or EDDSA
+     * @return AsymmetricJwtKey : The new key
+     */
+    public static AsymmetricJwtKey generate(JwsAlgorithm algorithm) {
+        try {
+            KeyPairGenerator generator;
+            switch (algorithm) {
+                case ES256 -> {
+                    generator = KeyPairGenerator.getInstance("EC");
+                    generator.initialize(new ECGenParameterSpec("secp256r1"));
+                }
+                case EDDSA -> generator = KeyPairGenerator.getInstance("Ed25519");
+                default -> throw new IllegalArgumentException(algorithm.getId() + " is not an asymmetric algorithm");
+            }
+            return new AsymmetricJwtKey(algorithm, generator.generateKeyPair());
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Could not generate a " + algorithm.getId() + " key", ex);
+        }
+    }
+
+    /**
+     * From PEM
+     * - Loads a configured key pair, e.g. the output of `openssl genpkey` followed by `openssl pkey -pubout`
+     * @param algorithm JwsAlgorithm : ES256 or EDDSA
+     * @param pem String : A PKCS#8 PRIVATE KEY block and the matching PUBLIC KEY block
+     * @return AsymmetricJwtKey : The loaded key
+     * @throws IllegalArgumentException : If a block is missing, or the keys do not suit the algorithm or each other
+     */
+    public static AsymmetricJwtKey fromPem(JwsAlgorithm algorithm, String pem) {
+        byte[] privateKey = null;
+        byte[] publicKey = null;
+        Matcher block = PEM_BLOCK.matcher(pem);
+        while (block.find()) {
+            byte[] der = Base64.getMimeDecoder().decode(block.group(2));
+            switch (block.group(1)) {
+                case "PRIVATE KEY" -> privateKey = der;
+                case "PUBLIC KEY" -> publicKey = der;
+                default -> throw new IllegalArgumentException("Unexpected PEM block " + block.group(1));
+            }
+        }
+        if (privateKey == null || publicKey == null) {
+            throw new IllegalArgumentException("Expected a PRIVATE KEY and a PUBLIC KEY PEM block");
+        }
+        try {
+            KeyFactory factory = KeyFactory.getInstance(switch (algorithm) {
+                case ES256 -> "EC";
+                case EDDSA -> "Ed25519";
+                default -> throw new IllegalArgumentException(algorithm.getId() + " is not an asymmetric algorithm");
+            });
+            KeyPair keyPair = new KeyPair(
+                    factory.generatePublic(new X509EncodedKeySpec(publicKey)),
+                    factory.generatePrivate(new PKCS8EncodedKeySpec(privateKey)));
+            if (keyPair.getPublic() instanceof ECPublicKey ecPublicKey
+                    && ecPublicKey.getParams().getCurve().getField().getFieldSize() != P256_COORDINATE_LENGTH * 8) {
+                throw new IllegalArgumentException("ES256 keys must be on the P-256 curve");
+            }
+            AsymmetricJwtKey key = new AsymmetricJwtKey(algorithm, keyPair);
+            byte[] signature = new byte[SIGNATURE_LENGTH];
+            int length = key.sign(key.header, key.header.length, signature);
+            if (!key.verify(key.header, key.header.length, signature, length)) {
+                throw new IllegalArgumentException("The PRIVATE KEY and PUBLIC KEY are not a pair");
+            }
+            return key;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalArgumentException("Not a " + algorithm.getId() + " key pair: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * To JWK
+     * - The public half of this key, in JWK form
+     * @return Map : JWK members, ready to be serialised
+     */
+    public Map<String, String> toJwk() {
+        Map<String, String> published = new LinkedHashMap<>(jwk);
+        published.put("kid", kid);
+        published.put("use", "sig");
+        published.put("alg", algorithm.getId());
+        return published;
+    }
+
+    @Override
+    public String kid() {return kid;}
+
+    @Override
+    public JwsAlgorithm algorithm() {return algorithm;}
+
+    @Override
+    public byte[] encodedHeader() {return header;}
+
+    @Override
+    public int signatureLength() {return SIGNATURE_LENGTH;}
+
+    @Override
+    public int sign(byte[] data, int length, byte[] out) {
+        try {
+            Signature signature = Signature.getInstance(algorithm.getJcaName());
+            signature.initSign(keyPair.getPrivate());
+            signature.update(data, 0, length);
+            return signature.sign(out, 0, SIGNATURE_LENGTH);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Could not sign with " + algorithm.getId(), ex);
+        }
+    }
+
+    @Override
+    public boolean verify(byte[] data, int length, byte[] signature, int signatureLength) {
+        try {
+            Signature verifier = Signature.getInstance(algorithm.getJcaName());
+            verifier.initVerify(keyPair.getPublic());
+            verifier.update(data, 0, length);
+            return verifier.verify(signature, 0, signatureLength);
+        } catch (SignatureException ex) {
+            return false;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Could not verify with " + algorithm.getId(), ex);
+        }
+    }
+
+    // Private methods
+
+    /**
+     * Builds the required public JWK members, in the lexicographic order RFC 7638 thumbprints use.
+     */
+    private static Map<String, String> publicJwk(JwsAlgorithm algorithm, KeyPair keyPair) {
+        Map<String, String> members = new LinkedHashMap<>();
+        if (algorithm == JwsAlgorithm.ES256) {
+            ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+            members.put("crv", "P-256");
+            members.put("kty", "EC");
+            members.put("x", BASE64_URL.encodeToString(unsigned(publicKey.getW().getAffineX())));
+            members.put("y", BASE64_URL.encodeToString(unsigned(publicKey.getW().getAffineY())));
+        } else {
+            // The X.509 encoding of an Ed25519 key ends with the raw 32-byte key
+            byte[] encoded = keyPair.getPublic().getEncoded();
+            members.put("crv", "Ed25519");
+            members.put("kty", "OKP");
+            members.put("x", BASE64_URL.encodeToString(
+                    Arrays.copyOfRange(encoded, encoded.length - ED25519_KEY_LENGTH, encoded.length)));
+        }
+        return members;
+    }
+
+    private static String thumbprint(Map<String, String> members) {
+        StringBuilder json = new StringBuilder("{");
+        members.forEach((name, value) -> {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(name).append("\":\"").append(value).append('"');
+        });
+        json.append('}');
+        try {
+            return BASE64_URL.encodeToString(MessageDigest.getInstance("SHA-256")
+                    .digest(json.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] unsigned(BigInteger coordinate) {
+        byte[] bytes = coordinate.toByteArray();
+        byte[] fixed = new byte[P256_COORDINATE_LENGTH];
+        int copy = Math.min(bytes.length, P256_COORDINATE_LENGTH);
+        System.arraycopy(bytes, bytes.length - copy, fixed, P256_COORDINATE_LENGTH - copy, copy);
+        return fixed;
+    }
+
+}
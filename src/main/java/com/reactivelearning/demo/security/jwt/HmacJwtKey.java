@@ -0,0 +1,84 @@
+package com.reactivelearning.demo.security.jwt;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * HmacJwtKey
+ * - The shared-secret HS512 key. Its tokens carry no kid, matching the format auth0 produced.
+ * - Each thread keeps its own initialised Mac, so there is no per-call Mac construction.
+ */
+public final class HmacJwtKey implements JwtKey {
+
+    private static final String MAC_ALGORITHM = "HmacSHA512";
+    private static final int SIGNATURE_LENGTH = 64;
+    private static final byte[] HEADER = JwtCodec.base64Url("{\"alg\":\"HS512\",\"typ\":\"JWT\"}");
+
+    private final ThreadLocal<Scratch> scratch;
+
+    public HmacJwtKey(byte[] secret) {
+        SecretKeySpec key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(key));
+    }
+
+    @Override
+    public String kid() {return null;}
+
+    @Override
+    public JwsAlgorithm algorithm() {return JwsAlgorithm.HS512;}
+
+    @Override
+    public byte[] encodedHeader() {return HEADER;}
+
+    @Override
+    public int signatureLength() {return SIGNATURE_LENGTH;}
+
+    @Override
+    public int sign(byte[] data, int length, byte[] out) {
+        Mac mac = scratch.get().mac;
+        try {
+            mac.update(data, 0, length);
+            mac.doFinal(out, 0);
+        } catch (ShortBufferException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return SIGNATURE_LENGTH;
+    }
+
+    @Override
+    public boolean verify(byte[] data, int length, byte[] signature, int signatureLength) {
+        if (signatureLength != SIGNATURE_LENGTH) {
+            return false;
+        }
+        byte[] expected = scratch.get().expected;
+        sign(data, length, expected);
+        // Constant time, so the comparison leaks nothing about how many bytes matched
+        int difference = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            difference |= expected[i] ^ signature[i];
+        }
+        return difference == 0;
+    }
+
+    /**
+     * Per-thread state. None of it escapes a single sign or verify call.
+     */
+    private static final class Scratch {
+
+        private final Mac mac;
+        private final byte[] expected = new byte[SIGNATURE_LENGTH];
+
+        private Scratch(SecretKeySpec key) {
+            try {
+                this.mac = Mac.getInstance(MAC_ALGORITHM);
+                this.mac.init(key);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("Could not initialise " + MAC_ALGORITHM, ex);
+            }
+        }
+
+    }
+
+}
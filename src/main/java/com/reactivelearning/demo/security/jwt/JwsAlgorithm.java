@@ -0,0 +1,35 @@
+package com.reactivelearning.demo.security.jwt;
+
+/**
+ * JwsAlgorithm
+ * - The token signing modes the server supports.
+ * - HS512 uses the shared jwt.secret, so only this service can verify its tokens. ES256 and EdDSA sign with a
+ * private key from JwtKeyRing, and publish the public keys at /.well-known/jwks.json.
+ */
+public enum JwsAlgorithm {
+
+    HS512("HS512", null),
+    ES256("ES256", "SHA256withECDSAinP1363Format"),
+    EDDSA("EdDSA", "Ed25519");
+
+    private final String id;
+    private final String jcaName;
+
+    JwsAlgorithm(String id, String jcaName) {
+        this.id = id;
+        this.jcaName = jcaName;
+    }
+
+    /**
+     * @return String : The JWS alg header value
+     */
+    public String getId() {return id;}
+
+    /**
+     * @return String : The JCA Signature algorithm, or null for HS512
+     */
+    public String getJcaName() {return jcaName;}
+
+    public boolean isAsymmetric() {return jcaName != null;}
+
+}
@@ -0,0 +1,639 @@
+package com.reactivelearning.demo.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * JwtCodec
+ * - A JWT codec for exactly our claim set: sub, authorities, iat and exp.
+ * - Tokens are signed with the JwtKeySource's signing key and verified against any of its verification keys,
+ * so the same codec serves HS512 and the asymmetric (ES256, EdDSA) modes.
+ * - In HS512 mode it produces the same bytes as auth0's JWT.create() for those claims, so tokens from either are
+ * interchangeable.
+ * - Each thread keeps its own scratch buffers, so signing and verifying avoid Jackson and intermediate Base64
+ * strings. The header and payload are read directly from the token's bytes.
+ */
+public final class JwtCodec {
+
+    static final int MAX_SIGNATURE_LENGTH = 64;
+    // Unknown fields are skipped recursively, before the signature is checked, so their nesting is bounded
+    static final int MAX_NESTING_DEPTH = 16;
+
+    private static final byte[] ENCODE = ascii("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ENCODE.length; i++) {
+            DECODE[ENCODE[i]] = (byte) i;
+        }
+    }
+
+    // Indexes matter: readClaims and readHeader switch on them
+    private static final byte[][] CLAIMS = {ascii("sub"), ascii("authorities"), ascii("iat"), ascii("exp"), ascii("nbf")};
+    private static final byte[][] HEADER_FIELDS = {ascii("alg"), ascii("kid")};
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final JwtKeySource keys;
+
+    public JwtCodec(JwtKeySource keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Hmac
+     * - Creates an HS512 codec for a shared secret
+     * @param secret byte[] : The HMAC key
+     * @return JwtCodec : A codec that signs and verifies with that secret only
+     */
+    public static JwtCodec hmac(byte[] secret) {
+        return new JwtCodec(JwtKeySource.of(new HmacJwtKey(secret)));
+    }
+
+    /**
+     * Sign
+     * - Creates a signed JWT
+     * @param subject UUID : The sub claim
+     * @param authorities List : The authorities claim
+     * @param issuedAt long : The iat claim, in epoch seconds
+     * @param expiresAt long : The exp claim, in epoch seconds
+     * @return String : The encoded JWT
+     */
+    public String sign(UUID subject, List<String> authorities, long issuedAt, long expiresAt) {
+
+        Scratch s = SCRATCH.get();
+        JwtKey key = keys.signingKey();
+
+        // Payload JSON, in the same claim order as auth0
+        Writer json = s.json.reset();
+        json.raw("{\"sub\":").string(subject.toString());
+        json.raw(",\"authorities\":[");
+        for (int i = 0; i < authorities.size(); i++) {
+            if (i > 0) {
+                json.raw(",");
+            }
+            json.string(authorities.get(i));
+        }
+        json.raw("],\"iat\":").number(issuedAt);
+        json.raw(",\"exp\":").number(expiresAt).raw("}");
+
+        // header.payload
+        byte[] header = key.encodedHeader();
+        Writer token = s.token.reset();
+        token.bytes(header, 0, header.length).raw(".");
+        token.base64Url(json.buf, 0, json.len);
+
+        // .signature
+        int signatureLength = key.sign(token.buf, token.len, s.signature);
+        token.raw(".").base64Url(s.signature, 0, signatureLength);
+
+        return new String(token.buf, 0, token.len, StandardCharsets.ISO_8859_1);
+
+    }
+
+    /**
+     * Verify
+     * - Checks the algorithm, key, signature and time-based claims of a JWT, then reads its claims
+     * @param jwt String : The encoded JWT
+     * @param nowMillis long : The current time, in epoch milliseconds
+     * @return VerifiedPrincipal : The verified claims, or null if the token is malformed, forged, expired or
+     * signed by a key we do not hold
+     */
+    public VerifiedPrincipal verify(String jwt, long nowMillis) {
+
+        Scratch s = SCRATCH.get();
+
+        // Copy the token into scratch, rejecting anything that is not ASCII
+        int length = jwt.length();
+        byte[] token = s.token.reset().ensure(length);
+        int firstDot = -1;
+        int secondDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = jwt.charAt(i);
+            if (c > 127) {
+                return null;
+            }
+            if (c == '.') {
+                if (firstDot < 0) {
+                    firstDot = i;
+                } else if (secondDot < 0) {
+                    secondDot = i;
+                } else {
+                    return null;
+                }
+            }
+            token[i] = (byte) c;
+        }
+        if (secondDot < 0) {
+            return null;
+        }
+
+        // Header: the common case is byte-for-byte the header one of our keys writes
+        JwtKey key = matchHeader(token, firstDot);
+        if (key == null) {
+            key = readHeader(s, token, firstDot);
+            if (key == null) {
+                return null;
+            }
+        }
+
+        // Signature
+        int signatureLength = decodeBase64Url(token, secondDot + 1, length, s.provided, 0);
+        if (signatureLength != key.signatureLength() || !key.verify(token, secondDot, s.provided, signatureLength)) {
+            return null;
+        }
+
+        // Payload
+        byte[] payload = s.json.reset().ensure(length);
+        int payloadLength = decodeBase64Url(token, firstDot + 1, secondDot, payload, 0);
+        if (payloadLength < 0) {
+            return null;
+        }
+
+        return readClaims(new Reader(payload, payloadLength), nowMillis / 1000);
+
+    }
+
+    // Private methods
+
+    private JwtKey matchHeader(byte[] token, int end) {
+        List<JwtKey> candidates = keys.verificationKeys();
+        for (int i = 0; i < candidates.size(); i++) {
+            byte[] header = candidates.get(i).encodedHeader();
+            if (Arrays.equals(token, 0, end, header, 0, header.length)) {
+                return candidates.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a header that is not byte-for-byte one of ours, and finds the key its alg and kid name.
+     */
+    private JwtKey readHeader(Scratch s, byte[] token, int end) {
+        byte[] header = s.json.reset().ensure(end);
+        int headerLength = decodeBase64Url(token, 0, end, header, 0);
+        if (headerLength < 0) {
+            return null;
+        }
+        Reader reader = new Reader(header, headerLength);
+        String algorithm = null;
+        String kid = null;
+        try {
+            reader.expect('{');
+            if (!reader.tryConsume('}')) {
+                do {
+                    switch (reader.key(HEADER_FIELDS)) {
+                        case 0 -> algorithm = reader.string();
+                        case 1 -> kid = reader.string();
+                        default -> reader.skipValue();
+                    }
+                } while (reader.tryConsume(','));
+                reader.expect('}');
+            }
+        } catch (IllegalArgumentException | ArithmeticException ex) {
+            return null;
+        }
+        if (algorithm == null) {
+            return null;
+        }
+        List<JwtKey> candidates = keys.verificationKeys();
+        for (int i = 0; i < candidates.size(); i++) {
+            JwtKey candidate = candidates.get(i);
+            if (candidate.algorithm().getId().equals(algorithm) && Objects.equals(candidate.kid(), kid)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static VerifiedPrincipal readClaims(Reader reader, long nowSeconds) {
+
+        String subject = null;
+        List<String> authorities = List.of();
+        long expiresAt = -1;
+
+        try {
+            reader.expect('{');
+            if (!reader.tryConsume('}')) {
+                do {
+                    switch (reader.key(CLAIMS)) {
+                        case 0 -> subject = reader.string();
+                        case 1 -> authorities = reader.stringArray();
+                        case 2 -> {
+                            if (reader.number() > nowSeconds) {
+                                return null;
+                            }
+                        }
+                        case 3 -> expiresAt = reader.number();
+                        case 4 -> {
+                            if (reader.number() > nowSeconds) {
+                                return null;
+                            }
+                        }
+                        default -> reader.skipValue();
+                    }
+                } while (reader.tryConsume(','));
+                reader.expect('}');
+            }
+            if (expiresAt <= nowSeconds) {
+                return null;
+            }
+            return new VerifiedPrincipal(
+                    subject == null ? null : UUID.fromString(subject),
+                    authorities,
+                    Instant.ofEpochSecond(expiresAt));
+        } catch (IllegalArgumentException | ArithmeticException ex) {
+            return null;
+        }
+
+    }
+
+    /**
+     * Decodes unpadded base64url from src[from, to) into dst.
+     * @return int : The number of decoded bytes, or -1 if the input is not valid base64url
+     */
+    private static int decodeBase64Url(byte[] src, int from, int to, byte[] dst, int offset) {
+
+        int length = to - from;
+        if (length % 4 == 1 || dst.length - offset < length * 3 / 4) {
+            return -1;
+        }
+
+        int out = offset;
+        int bits = 0;
+        int buffered = 0;
+        for (int i = from; i < to; i++) {
+            int b = src[i];
+            int value = b < 0 ? -1 : DECODE[b];
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            buffered += 6;
+            if (buffered >= 8) {
+                buffered -= 8;
+                dst[out++] = (byte) (bits >> buffered);
+            }
+        }
+        return out - offset;
+
+    }
+
+    /**
+     * Encodes a JSON header, for JwtKey implementations.
+     */
+    static byte[] base64Url(String value) {
+        Writer writer = new Writer(64);
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        writer.base64Url(raw, 0, raw.length);
+        return Arrays.copyOf(writer.buf, writer.len);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Per-thread state. None of it escapes a single sign or verify call.
+     */
+    private static final class Scratch {
+
+        private final Writer json = new Writer(256);
+        private final Writer token = new Writer(512);
+        private final byte[] signature = new byte[MAX_SIGNATURE_LENGTH];
+        private final byte[] provided = new byte[MAX_SIGNATURE_LENGTH + 3];
+
+    }
+
+    /**
+     * A growable byte buffer that knows how to write the JSON and base64url we need.
+     */
+    private static final class Writer {
+
+        private byte[] buf;
+        private int len;
+
+        private Writer(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        private Writer reset() {
+            len = 0;
+            return this;
+        }
+
+        private byte[] ensure(int capacity) {
+            if (buf.length < capacity) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+            }
+            return buf;
+        }
+
+        private Writer raw(String ascii) {
+            ensure(len + ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                buf[len++] = (byte) ascii.charAt(i);
+            }
+            return this;
+        }
+
+        private Writer bytes(byte[] src, int from, int to) {
+            ensure(len + to - from);
+            System.arraycopy(src, from, buf, len, to - from);
+            len += to - from;
+            return this;
+        }
+
+        private Writer number(long value) {
+            return raw(Long.toString(value));
+        }
+
+        /**
+         * Writes a JSON string, escaped the same way Jackson does by default.
+         */
+        private Writer string(String value) {
+            ensure(len + value.length() * 6 + 2);
+            buf[len++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    buf[len++] = '\\';
+                    buf[len++] = (byte) c;
+                } else if (c < 0x20) {
+                    switch (c) {
+                        case '\b' -> raw("\\b");
+                        case '\t' -> raw("\\t");
+                        case '\n' -> raw("\\n");
+                        case '\f' -> raw("\\f");
+                        case '\r' -> raw("\\r");
+                        default -> raw(String.format("\\u%04X", (int) c));
+                    }
+                } else if (c < 0x80) {
+                    buf[len++] = (byte) c;
+                } else {
+                    int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+                    byte[] utf8 = value.substring(i, end).getBytes(StandardCharsets.UTF_8);
+                    bytes(utf8, 0, utf8.length);
+                    i = end - 1;
+                }
+            }
+            buf[len++] = '"';
+            return this;
+        }
+
+        private Writer base64Url(byte[] src, int from, int to) {
+            ensure(len + (to - from + 2) / 3 * 4);
+            int i = from;
+            for (; i + 2 < to; i += 3) {
+                int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+                buf[len++] = ENCODE[bits >>> 18 & 0x3f];
+                buf[len++] = ENCODE[bits >>> 12 & 0x3f];
+                buf[len++] = ENCODE[bits >>> 6 & 0x3f];
+                buf[len++] = ENCODE[bits & 0x3f];
+            }
+            int remaining = to - i;
+            if (remaining == 1) {
+                int bits = (src[i] & 0xff) << 16;
+                buf[len++] = ENCODE[bits >>> 18 & 0x3f];
+                buf[len++] = ENCODE[bits >>> 12 & 0x3f];
+            } else if (remaining == 2) {
+                int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8;
+                buf[len++] = ENCODE[bits >>> 18 & 0x3f];
+                buf[len++] = ENCODE[bits >>> 12 & 0x3f];
+                buf[len++] = ENCODE[bits >>> 6 & 0x3f];
+            }
+            return this;
+        }
+
+    }
+
+    /**
+     * A minimal JSON reader over decoded bytes. Malformed input surfaces as an IllegalArgumentException.
+     */
+    private static final class Reader {
+
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        private Reader(byte[] buf, int end) {
+            this.buf = buf;
+            this.end = end;
+        }
+
+        private void skipWhitespace() {
+            while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t' || buf[pos] == '\n' || buf[pos] == '\r')) {
+                pos++;
+            }
+        }
+
+        private void expect(char c) {
+            if (!tryConsume(c)) {
+                throw new IllegalArgumentException("Expected " + c);
+            }
+        }
+
+        private boolean tryConsume(char c) {
+            skipWhitespace();
+            if (pos < end && buf[pos] == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Reads an object key and its colon.
+         * @return int : The index of the candidate the key's raw bytes equal, or -1
+         */
+        private int key(byte[][] candidates) {
+            expect('"');
+            int start = pos;
+            skipStringBody();
+            int stop = pos - 1;
+            expect(':');
+            for (int i = 0; i < candidates.length; i++) {
+                if (Arrays.equals(buf, start, stop, candidates[i], 0, candidates[i].length)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String string() {
+            expect('"');
+            int start = pos;
+            boolean escaped = skipStringBody();
+            if (!escaped) {
+                return new String(buf, start, pos - 1 - start, StandardCharsets.UTF_8);
+            }
+            StringBuilder builder = new StringBuilder(pos - start);
+            int i = start;
+            while (i < pos - 1) {
+                int runStart = i;
+                while (i < pos - 1 && buf[i] != '\\') {
+                    i++;
+                }
+                builder.append(new String(buf, runStart, i - runStart, StandardCharsets.UTF_8));
+                if (i < pos - 1) {
+                    byte e = buf[i + 1];
+                    switch (e) {
+                        case 'b' -> builder.append('\b');
+                        case 't' -> builder.append('\t');
+                        case 'n' -> builder.append('\n');
+                        case 'f' -> builder.append('\f');
+                        case 'r' -> builder.append('\r');
+                        case 'u' -> {
+                            builder.append(unicodeEscape(i + 2, pos - 1));
+                            i += 4;
+                        }
+                        case '"', '\\', '/' -> builder.append((char) e);
+                        default -> throw new IllegalArgumentException("Invalid escape \\" + (char) e);
+                    }
+                    i += 2;
+                }
+            }
+            return builder.toString();
+        }
+
+        /**
+         * The character of a \\u escape, whose 4 hex digits start at from and must all come before the closing quote
+         * at end. Parsed by hand, as Integer.parseInt would also take a sign.
+         */
+        private char unicodeEscape(int from, int end) {
+            if (from + 4 > end) {
+                throw new IllegalArgumentException("Truncated \\u escape");
+            }
+            int value = 0;
+            for (int i = from; i < from + 4; i++) {
+                int digit = Character.digit(buf[i], 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("Invalid \\u escape");
+                }
+                value = value << 4 | digit;
+            }
+            return (char) value;
+        }
+
+        /**
+         * Moves past the closing quote of a string whose opening quote was consumed.
+         * @return boolean : Whether the string contains escapes
+         */
+        private boolean skipStringBody() {
+            boolean escaped = false;
+            while (pos < end) {
+                byte b = buf[pos++];
+                if (b == '"') {
+                    return escaped;
+                }
+                if (b == '\\') {
+                    escaped = true;
+                    pos++;
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+
+        private List<String> stringArray() {
+            expect('[');
+            if (tryConsume(']')) {
+                return List.of();
+            }
+            List<String> values = new ArrayList<>(2);
+            do {
+                values.add(string());
+            } while (tryConsume(','));
+            expect(']');
+            return values;
+        }
+
+        private long number() {
+            skipWhitespace();
+            boolean negative = pos < end && buf[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            int start = pos;
+            long value = 0;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = Math.addExact(Math.multiplyExact(value, 10), buf[pos++] - '0');
+            }
+            if (pos == start) {
+                throw new IllegalArgumentException("Expected a number");
+            }
+            // Fractional seconds are truncated, as auth0 does
+            if (pos < end && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E')) {
+                while (pos < end && "0123456789.eE+-".indexOf(buf[pos]) >= 0) {
+                    pos++;
+                }
+            }
+            return negative ? -value : value;
+        }
+
+        private void skipValue() {
+            skipValue(0);
+        }
+
+        private void skipValue(int depth) {
+            skipWhitespace();
+            if (pos >= end) {
+                throw new IllegalArgumentException("Expected a value");
+            }
+            switch (buf[pos]) {
+                case '"' -> {
+                    pos++;
+                    skipStringBody();
+                }
+                case '{' -> {
+                    nest(depth);
+                    if (!tryConsume('}')) {
+                        do {
+                            expect('"');
+                            skipStringBody();
+                            expect(':');
+                            skipValue(depth + 1);
+                        } while (tryConsume(','));
+                        expect('}');
+                    }
+                }
+                case '[' -> {
+                    nest(depth);
+                    if (!tryConsume(']')) {
+                        do {
+                            skipValue(depth + 1);
+                        } while (tryConsume(','));
+                        expect(']');
+                    }
+                }
+                case 't' -> literal("true");
+                case 'f' -> literal("false");
+                case 'n' -> literal("null");
+                default -> number();
+            }
+        }
+
+        private void nest(int depth) {
+            if (depth >= MAX_NESTING_DEPTH) {
+                throw new IllegalArgumentException("Nested too deeply");
+            }
+            pos++;
+        }
+
+        private void literal(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (pos >= end || buf[pos++] != literal.charAt(i)) {
+                    throw new IllegalArgumentException("Expected " + literal);
+                }
+            }
+        }
+
+    }
+
+}
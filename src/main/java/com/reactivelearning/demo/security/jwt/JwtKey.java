@@ -0,0 +1,48 @@
+package com.reactivelearning.demo.security.jwt;
+
+/**
+ * JwtKey
+ * - A single signing or verification key, as used by JwtCodec.
+ * - Implementations must be safe to call from many threads at once.
+ */
+public interface JwtKey {
+
+    /**
+     * @return String : The kid header, or null if tokens from this key carry none
+     */
+    String kid();
+
+    JwsAlgorithm algorithm();
+
+    /**
+     * @return byte[] : The base64url-encoded header that tokens from this key start with
+     */
+    byte[] encodedHeader();
+
+    /**
+     * @return int : The length of this key's raw signatures, at most JwtCodec.MAX_SIGNATURE_LENGTH
+     */
+    int signatureLength();
+
+    /**
+     * Sign
+     * - Signs data[0, length) into out
+     * @param data byte[] : The signing input, header.payload
+     * @param length int : How many bytes of data to sign
+     * @param out byte[] : Receives the raw signature
+     * @return int : The signature length
+     */
+    int sign(byte[] data, int length, byte[] out);
+
+    /**
+     * Verify
+     * - Checks a raw signature over data[0, length)
+     * @param data byte[] : The signing input, header.payload
+     * @param length int : How many bytes of data were signed
+     * @param signature byte[] : The raw signature
+     * @param signatureLength int : How many bytes of signature to use
+     * @return boolean : Whether the signature is valid
+     */
+    boolean verify(byte[] data, int length, byte[] signature, int signatureLength);
+
+}
@@ -0,0 +1,243 @@
+package com.reactivelearning.demo.security.jwt;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JwtKeyRing
+ * - Holds the asymmetric signing keys when jwt.signing.algorithm is ES256 or EDDSA, and renders them as a JWK set.
+ * In HS512 mode the ring stays empty and the JWK set has no keys.
+ * - Rotation overlaps in both directions: the next key is published a full rotation interval before it starts
+ * signing, so resource servers have fetched it by then, and a retired key stays published for the retention
+ * period, which must cover the token lifetime.
+ * - The keys come from current-key and next-key, each a PEM or a resource location holding a private and public
+ * key block, plus an optional previous-key that is published but never signs. Configured keys are not rotated on
+ * a timer: an operator rotates them by redeploying with previous-key, current-key and next-key each moved along
+ * by one, so every key is published before it signs and for as long as its tokens live.
+ * - Without configured keys they are generated in memory for development, like the ephemeral jwt.secret, and
+ * rotate every rotation interval. A restart replaces them, so tokens signed before it no longer verify.
+ * - Uses ConfigurationProperties, copying from jwt.signing
+ */
+@Component
+@ConfigurationProperties(prefix = "jwt.signing")
+public class JwtKeyRing implements JwtKeySource, InitializingBean {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private JwsAlgorithm algorithm = JwsAlgorithm.HS512;
+    private Duration rotationInterval = Duration.ofDays(7);
+    private Duration retention = Duration.ofDays(1);
+    private Duration jwksMaxAge = Duration.ofMinutes(5);
+    private String currentKey = "";
+    private String nextKey = "";
+    private String previousKey = "";
+
+    private volatile State state = State.empty();
+    private volatile boolean configured;
+
+    private final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!algorithm.isAsymmetric()) {
+            return;
+        }
+        if (rotationInterval.compareTo(jwksMaxAge) <= 0) {
+            throw new IllegalStateException("jwt.signing.rotation-interval must be longer than jwt.signing.jwks-max-age");
+        }
+        Instant now = Instant.now();
+        if (!currentKey.isBlank() || !nextKey.isBlank()) {
+            if (currentKey.isBlank() || nextKey.isBlank()) {
+                throw new IllegalStateException("jwt.signing.current-key and jwt.signing.next-key must be set together");
+            }
+            configured = true;
+            state = State.of(
+                    new Entry(load("current-key", currentKey), now, null),
+                    new Entry(load("next-key", nextKey), null, null),
+                    previousKey.isBlank() ? List.of() : List.of(new Entry(load("previous-key", previousKey), null, now)));
+        } else {
+            logger.warn("⚠️ No jwt.signing.current-key and next-key configured, generating ephemeral {} keys. " +
+                    "Tokens will not verify after a restart", algorithm.getId());
+            state = State.of(
+                    new Entry(AsymmetricJwtKey.generate(algorithm), now, null),
+                    new Entry(AsymmetricJwtKey.generate(algorithm), now.plus(rotationInterval), null),
+                    List.of());
+        }
+        logger.info("Signing tokens with {} key {}", algorithm.getId(), state.current.key.kid());
+    }
+
+    /**
+     * Rotate
+     * - Checked every minute. Promotes the next key once its activation time has passed, and drops retired keys
+     * that are past their retention.
+     */
+    @Scheduled(fixedDelayString = "${jwt.signing.rotation-check:PT1M}")
+    public void rotate() {
+        rotate(Instant.now());
+    }
+
+    /**
+     * Rotate
+     * - Brings the ring up to date for the given time. Configured keys are left as they are.
+     * @param now Instant : The current time
+     */
+    public synchronized void rotate(Instant now) {
+
+        State current = state;
+        if (!algorithm.isAsymmetric() || configured) {
+            return;
+        }
+
+        Entry signing = current.current;
+        Entry next = current.next;
+        List<Entry> retired = new ArrayList<>(current.retired);
+
+        if (!now.isBefore(next.activatesAt)) {
+            retired.addFirst(new Entry(signing.key, signing.activatesAt, now));
+            signing = next;
+            next = new Entry(AsymmetricJwtKey.generate(algorithm), now.plus(rotationInterval), null);
+            logger.info("Rotated {} signing key to {}", algorithm.getId(), signing.key.kid());
+        }
+
+        boolean expired = retired.removeIf(entry -> !now.isBefore(entry.retiredAt.plus(retention)));
+
+        if (signing != current.current || expired) {
+            state = State.of(signing, next, retired);
+        }
+
+    }
+
+    @Override
+    public JwtKey signingKey() {
+        Entry current = state.current;
+        if (current == null) {
+            throw new IllegalStateException("No asymmetric signing key, jwt.signing.algorithm is " + algorithm.getId());
+        }
+        return current.key;
+    }
+
+    @Override
+    public List<JwtKey> verificationKeys() {
+        return state.verificationKeys;
+    }
+
+    /**
+     * Get JWK set
+     * - The published keys, pre-rendered with their ETag
+     * @return JwkSet : The current JWK set
+     */
+    public JwkSet getJwkSet() {
+        return state.jwkSet;
+    }
+
+    // Private methods
+
+    /**
+     * Reads a configured key, given inline as PEM or as a resource location such as file:/etc/jwt/current.pem
+     */
+    private AsymmetricJwtKey load(String property, String value) {
+        String pem = value;
+        if (!value.contains("-----BEGIN")) {
+            try {
+                pem = new DefaultResourceLoader().getResource(value).getContentAsString(StandardCharsets.US_ASCII);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not read jwt.signing." + property + " from " + value, ex);
+            }
+        }
+        try {
+            return AsymmetricJwtKey.fromPem(algorithm, pem);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalStateException("Invalid jwt.signing." + property + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * A JWK set document and its strong ETag.
+     * @param json String : The document
+     * @param etag String : A quoted ETag, derived from the document's content
+     */
+    public record JwkSet(String json, String etag) {
+
+        static JwkSet of(List<Map<String, String>> keys) {
+            try {
+                String json = MAPPER.writeValueAsString(Map.of("keys", keys));
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+                return new JwkSet(json, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+            } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("Could not render the JWK set", ex);
+            }
+        }
+
+    }
+
+    /**
+     * A key and the times it started signing and was retired.
+     */
+    private record Entry(AsymmetricJwtKey key, Instant activatesAt, Instant retiredAt) {}
+
+    /**
+     * An immutable snapshot of the ring, swapped whole on rotation so readers never lock.
+     */
+    private record State(Entry current, Entry next, List<Entry> retired, List<JwtKey> verificationKeys, JwkSet jwkSet) {
+
+        static State empty() {
+            return new State(null, null, List.of(), List.of(), JwkSet.of(List.of()));
+        }
+
+        static State of(Entry current, Entry next, List<Entry> retired) {
+            List<JwtKey> keys = new ArrayList<>();
+            keys.add(current.key);
+            retired.forEach(entry -> keys.add(entry.key));
+            keys.add(next.key);
+            return new State(
+                    current,
+                    next,
+                    List.copyOf(retired),
+                    List.copyOf(keys),
+                    JwkSet.of(keys.stream().map(key -> ((AsymmetricJwtKey) key).toJwk()).toList()));
+        }
+
+    }
+
+    // Getters / Setters
+
+    public JwsAlgorithm getAlgorithm() {return algorithm;}
+    public void setAlgorithm(JwsAlgorithm algorithm) {this.algorithm = algorithm;}
+
+    public Duration getRotationInterval() {return rotationInterval;}
+    public void setRotationInterval(Duration rotationInterval) {this.rotationInterval = rotationInterval;}
+
+    public Duration getRetention() {return retention;}
+    public void setRetention(Duration retention) {this.retention = retention;}
+
+    public Duration getJwksMaxAge() {return jwksMaxAge;}
+    public void setJwksMaxAge(Duration jwksMaxAge) {this.jwksMaxAge = jwksMaxAge;}
+
+    public String getCurrentKey() {return currentKey;}
+    public void setCurrentKey(String currentKey) {this.currentKey = currentKey;}
+
+    public String getNextKey() {return nextKey;}
+    public void setNextKey(String nextKey) {this.nextKey = nextKey;}
+
+    public String getPreviousKey() {return previousKey;}
+    public void setPreviousKey(String previousKey) {this.previousKey = previousKey;}
+
+}
@@ -0,0 +1,36 @@
+package com.reactivelearning.demo.security.jwt;
+
+import java.util.List;
+
+/**
+ * JwtKeySource
+ * - Supplies JwtCodec with the key to sign new tokens with, and the keys that existing tokens may be signed with.
+ */
+public interface JwtKeySource {
+
+    JwtKey signingKey();
+
+    /**
+     * @return List : Every key a valid token may carry, signing key first. Called on every verification, so
+     * implementations should return a precomputed list.
+     */
+    List<JwtKey> verificationKeys();
+
+    /**
+     * Of
+     * - A source with one fixed key
+     * @param key JwtKey : The key
+     * @return JwtKeySource : A source that signs and verifies with that key only
+     */
+    static JwtKeySource of(JwtKey key) {
+        List<JwtKey> keys = List.of(key);
+        return new JwtKeySource() {
+            @Override
+            public JwtKey signingKey() {return key;}
+
+            @Override
+            public List<JwtKey> verificationKeys() {return keys;}
+        };
+    }
+
+}
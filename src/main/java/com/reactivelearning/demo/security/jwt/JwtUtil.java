@@ -1,23 +1,17 @@
 package com.reactivelearning.demo.security.jwt;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
-import com.auth0.jwt.exceptions.JWTDecodeException;
-import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.DecodedJWT;
 import com.reactivelearning.demo.entities.Role;
 import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.service.RoleRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.Duration;
-import java.util.Date;
-import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -25,15 +19,34 @@ import java.util.stream.IntStream;
 public class JwtUtil {
 
     private final String secret;
+    private final JwtCodec codec;
+    private final RoleRegistry roleRegistry;
 
     private final Duration EXPIRATION_TIMER = Duration.ofDays(1);
 
     private final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
+    public JwtUtil(String secret) {
+        this(secret, null, null);
+    }
+
+    /**
+     * JwtUtil
+     * - Signs with the shared secret (HS512) unless the key ring is configured for an asymmetric algorithm
+     * @param secret String : The HMAC secret, or 'Undefined' to generate one
+     * @param keyRing JwtKeyRing : The asymmetric keys, may be null
+     * @param roleRegistry RoleRegistry : The shared roles for the principal, may be null to allocate them per token
+     */
     @Autowired
     public JwtUtil(
-            @Value("${jwt.secret}") String secret) {
+            @Value("${jwt.secret}") String secret,
+            JwtKeyRing keyRing,
+            RoleRegistry roleRegistry) {
         this.secret = getSecret(secret);
+        this.roleRegistry = roleRegistry;
+        this.codec = keyRing != null && keyRing.getAlgorithm().isAsymmetric()
+                ? new JwtCodec(keyRing)
+                : JwtCodec.hmac(this.secret.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -43,7 +56,7 @@ public class JwtUtil {
      * @return String : The JWT in string format
      */
     public String generateToken(User user) {
-        return createJwtToken(user, Algorithm.HMAC512(getSecret()));
+        return createJwtToken(user);
     }
 
     /**
@@ -53,23 +66,7 @@ public class JwtUtil {
      * @return boolean
      */
     public boolean isValid(String jwt) {
-
-        try {
-
-            Algorithm algorithm = Algorithm.HMAC512(secret);
-
-            JWTVerifier verifier = JWT
-                    .require(algorithm)
-                    .build();
-
-            DecodedJWT decoded = verifier.verify(jwt);
-
-            return decoded.getExpiresAt().compareTo(new Date()) > 0;
-
-        } catch (JWTVerificationException ex) {
-            return false;
-        }
-
+        return verifyAndExtract(jwt) != null;
     }
 
     /**
@@ -78,20 +75,42 @@ public class JwtUtil {
      * @return User : The user object
      */
     public User extractUserFromJwt(String jwt) {
+        VerifiedPrincipal principal = verifyAndExtract(jwt);
+        return principal == null ? null : toUser(principal);
+    }
 
-        try {
-            Algorithm algorithm = Algorithm.HMAC512(secret);
-            JWTVerifier verifier = JWT.require(algorithm).build();
-            DecodedJWT decoded = verifier.verify(jwt);
+    /**
+     * verifyAndExtract
+     * - Verifies the signature and expiration of a JWT and reads its claims, in a single pass
+     * @param jwt String : Encoded JWT
+     * @return VerifiedPrincipal : The verified claims, or null if the JWT is invalid or expired
+     */
+    public VerifiedPrincipal verifyAndExtract(String jwt) {
+        return codec.verify(jwt, System.currentTimeMillis());
+    }
 
+    /**
+     * toUser
+     * - Builds the User principal from verified claims
+     * @param principal VerifiedPrincipal : Claims from verifyAndExtract
+     * @return User : The user object, or null if the claims have no subject or malformed authorities
+     */
+    public User toUser(VerifiedPrincipal principal) {
+
+        if (principal.userId() == null) {
+            return null;
+        }
+
+        try {
             User user = new User();
-            user.setId(UUID.fromString(decoded.getSubject()));
+            user.setId(principal.userId());
             user.setRoles(
-                    decoded
-                            .getClaim("authorities")
-                            .asList(String.class)
+                    principal
+                            .authorities()
                             .stream()
-                            .map(roleStr -> Role.of(roleStr.substring(5)))
+                            .map(roleStr -> roleRegistry != null
+                                    ? roleRegistry.fromAuthority(roleStr)
+                                    : Role.of(roleStr.substring(5)))
                             .toList());
             return user;
         } catch (Exception ex) {
@@ -104,16 +123,15 @@ public class JwtUtil {
      * createJwtToken
      * - Private method to create a JWT
      * @param user User : User to create a Jwt for
-     * @param algorithm Algorithm: The algorithm to sign the JWT. Holds the secret key as well
      * @return String : JWT in String format
      */
-    private String createJwtToken(User user, Algorithm algorithm) {
-        return JWT.create()
-                .withSubject(user.getId().toString())
-                .withClaim("authorities", user.getRolesAsStrings())
-                .withIssuedAt(new Date())
-                .withExpiresAt(new Date(System.currentTimeMillis() + getExpirationTimerInMillis()))
-                .sign(algorithm);
+    private String createJwtToken(User user) {
+        long issuedAt = System.currentTimeMillis();
+        return codec.sign(
+                user.getId(),
+                user.getRolesAsStrings(),
+                issuedAt / 1000,
+                (issuedAt + getExpirationTimerInMillis()) / 1000);
     }
 
     /**
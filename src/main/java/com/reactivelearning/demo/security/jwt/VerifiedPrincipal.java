@@ -0,0 +1,23 @@
+package com.reactivelearning.demo.security.jwt;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The claims of a JWT whose signature and expiration have already been verified.
+ * @param userId UUID : The subject, or null if the token has none
+ * @param authorities List : The authorities claim, e.g. ROLE_USER
+ * @param expiresAt Instant : When the token stops being valid
+ */
+public record VerifiedPrincipal(UUID userId, List<String> authorities, Instant expiresAt) {
+
+    public VerifiedPrincipal {
+        authorities = List.copyOf(authorities);
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+
+}
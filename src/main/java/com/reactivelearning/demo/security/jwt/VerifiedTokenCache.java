@@ -0,0 +1,112 @@
+package com.reactivelearning.demo.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VerifiedTokenCache
+ * - Sits in front of JwtUtil.verifyAndExtract so that repeat requests carrying the same cookie skip signature
+ * verification entirely.
+ * - Keyed by a SHA-256 digest of the token, so raw tokens are never held in memory. Bounded by size, and each
+ * entry is evicted at its token's expiration.
+ * - Invalid tokens are never cached.
+ * - Hit, miss and eviction counts are registered as cache metrics under the name "jwt.verified".
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    private final JwtUtil jwtUtil;
+    private final Cache<TokenDigest, VerifiedPrincipal> cache;
+
+    @Autowired
+    public VerifiedTokenCache(
+            JwtUtil jwtUtil,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.cache.max-size:10000}") long maxSize) {
+        this.jwtUtil = jwtUtil;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpires())
+                .scheduler(Scheduler.systemScheduler())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified");
+    }
+
+    /**
+     * Verify
+     * - Returns the verified claims of a JWT, verifying it only if it has not been seen before
+     * @param jwt String : Encoded JWT
+     * @return VerifiedPrincipal : The verified claims, or null if the JWT is invalid or expired
+     */
+    public VerifiedPrincipal verify(String jwt) {
+
+        VerifiedPrincipal principal = cache.get(TokenDigest.of(jwt), digest -> jwtUtil.verifyAndExtract(jwt));
+
+        // The scheduler evicts promptly, but an entry can outlive its token by a few milliseconds.
+        if (principal != null && principal.isExpired(Instant.now())) {
+            return null;
+        }
+
+        return principal;
+
+    }
+
+    /**
+     * A SHA-256 digest of a token, held as four longs so equality and hashing never touch an array.
+     */
+    private record TokenDigest(long a, long b, long c, long d) {
+
+        static TokenDigest of(String jwt) {
+            ByteBuffer digest = ByteBuffer.wrap(SHA_256.get().digest(jwt.getBytes(StandardCharsets.US_ASCII)));
+            return new TokenDigest(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+        }
+
+    }
+
+    /**
+     * Expires each entry at the exp claim of its token.
+     */
+    private static class UntilTokenExpires implements Expiry<TokenDigest, VerifiedPrincipal> {
+
+        @Override
+        public long expireAfterCreate(TokenDigest key, VerifiedPrincipal value, long currentTime) {
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(
+                    value.expiresAt().toEpochMilli() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenDigest key, VerifiedPrincipal value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(TokenDigest key, VerifiedPrincipal value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+    }
+
+}
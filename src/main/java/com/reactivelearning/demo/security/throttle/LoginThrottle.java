@@ -0,0 +1,254 @@
+package com.reactivelearning.demo.security.throttle;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoginThrottle
+ * - Decides whether a login attempt may go on to the password check, so a burst of attempts is turned away before
+ * it costs a BCrypt computation each.
+ * - Each client IP and each username has a token bucket, refilled at perMinute and holding at most burst tokens.
+ * A bucket is a single AtomicLong, the time its next token is due (GCRA), so taking a token is one CAS with no
+ * lock.
+ * - Failed logins are counted per username and client IP. After freeFailures, each further failure locks the
+ * username out from that IP for baseLockout, doubling per failure up to maxLockout. A successful login from the IP
+ * clears the count. Other IPs are not locked out, so nobody can lock a user out by failing on purpose, and the
+ * username's own bucket still limits guesses spread across many IPs.
+ * - Buckets and counters live in Caffeine caches bounded by maxKeys and dropped after idleExpiry without use, so a
+ * flood of distinct IPs or usernames cannot grow them without bound.
+ * - Rejections are counted as login.throttled, tagged by reason: ip, username or lockout.
+ * - Uses ConfigurationProperties, copying from app.security.login-throttle
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.login-throttle")
+public class LoginThrottle implements InitializingBean {
+
+    private boolean enabled = true;
+    private Limit ip = new Limit(20, 60);
+    private Limit username = new Limit(5, 10);
+    private int freeFailures = 3;
+    private Duration baseLockout = Duration.ofSeconds(1);
+    private Duration maxLockout = Duration.ofMinutes(15);
+    private long maxKeys = 100_000;
+    private Duration idleExpiry = Duration.ofMinutes(15);
+
+    private final Counter ipThrottled;
+    private final Counter usernameThrottled;
+    private final Counter lockedOut;
+
+    private Cache<String, AtomicLong> ipBuckets;
+    private Cache<String, AtomicLong> usernameBuckets;
+    private Cache<Attempt, Failures> failures;
+
+    @Autowired
+    public LoginThrottle(MeterRegistry meterRegistry) {
+        this.ipThrottled = Counter.builder("login.throttled")
+                .tag("reason", "ip")
+                .register(meterRegistry);
+        this.usernameThrottled = Counter.builder("login.throttled")
+                .tag("reason", "username")
+                .register(meterRegistry);
+        this.lockedOut = Counter.builder("login.throttled")
+                .tag("reason", "lockout")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.ipBuckets = newCache();
+        this.usernameBuckets = newCache();
+        this.failures = newCache();
+    }
+
+    /**
+     * Acquire
+     * - Takes a token from the IP's bucket and, if the username is known, from the username's bucket
+     * @param clientIp String : The client's address
+     * @param username String : The username being logged into, or null if the request does not carry one
+     * @return long : 0 if the attempt may go ahead, otherwise how many nanoseconds until it may be retried
+     */
+    public long acquire(String clientIp, String username) {
+
+        if (!enabled) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+
+        if (username != null) {
+            Failures failed = failures.getIfPresent(new Attempt(clientIp, username));
+            long locked = failed == null ? 0 : failed.lockedUntil.get() - now;
+            if (locked > 0) {
+                lockedOut.increment();
+                return locked;
+            }
+        }
+
+        long wait = take(ipBuckets, clientIp, ip, now);
+        if (wait > 0) {
+            ipThrottled.increment();
+            return wait;
+        }
+
+        if (username != null) {
+            wait = take(usernameBuckets, username, this.username, now);
+            if (wait > 0) {
+                usernameThrottled.increment();
+                return wait;
+            }
+        }
+
+        return 0;
+
+    }
+
+    /**
+     * Record failure
+     * - Counts a failed login, locking the username out from the IP once it is past freeFailures
+     * @param clientIp String : The client's address
+     * @param username String : The username that failed to log in
+     */
+    public void recordFailure(String clientIp, String username) {
+        if (!enabled || username == null) {
+            return;
+        }
+        Failures failed = failures.get(new Attempt(clientIp, username), key -> new Failures(System.nanoTime()));
+        long count = failed.count.incrementAndGet();
+        if (count > freeFailures) {
+            int doublings = (int) Math.min(count - freeFailures - 1, 32);
+            long lockout = Math.min(maxLockout.toNanos(), baseLockout.toNanos() << doublings);
+            if (lockout <= 0) {
+                lockout = maxLockout.toNanos();
+            }
+            long until = System.nanoTime() + lockout;
+            failed.lockedUntil.accumulateAndGet(until, Math::max);
+        }
+    }
+
+    /**
+     * Record success
+     * - Clears the username's failed logins from the IP
+     * @param clientIp String : The client's address
+     * @param username String : The username that logged in
+     */
+    public void recordSuccess(String clientIp, String username) {
+        if (enabled && username != null) {
+            failures.invalidate(new Attempt(clientIp, username));
+        }
+    }
+
+    // Private methods
+
+    private <K, V> Cache<K, V> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleExpiry)
+                .build();
+    }
+
+    /**
+     * Takes one token, or reports how long until one is due. The bucket holds the time its next token is due, and
+     * is full when that time is burst tokens behind now.
+     */
+    private static long take(Cache<String, AtomicLong> buckets, String key, Limit limit, long now) {
+        AtomicLong due = buckets.get(key, __ -> new AtomicLong(now - limit.capacity()));
+        long interval = limit.interval();
+        while (true) {
+            long current = due.get();
+            long next = Math.max(current, now - limit.capacity()) + interval;
+            if (next - now > 0) {
+                return next - now;
+            }
+            if (due.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * A username tried from one client IP, the key failures are counted under.
+     */
+    private record Attempt(String clientIp, String username) {}
+
+    /**
+     * The failed logins of one username from one IP, and until when it is locked out. Starts out locked until it was created,
+     * i.e. not locked.
+     */
+    private static final class Failures {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong lockedUntil;
+
+        Failures(long now) {
+            this.lockedUntil = new AtomicLong(now);
+        }
+
+    }
+
+    /**
+     * A token bucket's size, and how many tokens it regains a minute.
+     */
+    public static class Limit {
+
+        private int burst;
+        private int perMinute;
+
+        public Limit() {}
+
+        public Limit(int burst, int perMinute) {
+            this.burst = burst;
+            this.perMinute = perMinute;
+        }
+
+        long interval() {
+            return Duration.ofMinutes(1).toNanos() / Math.max(1, perMinute);
+        }
+
+        long capacity() {
+            return interval() * Math.max(1, burst);
+        }
+
+        public int getBurst() {return burst;}
+        public void setBurst(int burst) {this.burst = burst;}
+
+        public int getPerMinute() {return perMinute;}
+        public void setPerMinute(int perMinute) {this.perMinute = perMinute;}
+
+    }
+
+    // Getters / Setters
+
+    public boolean isEnabled() {return enabled;}
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+
+    public Limit getIp() {return ip;}
+    public void setIp(Limit ip) {this.ip = ip;}
+
+    public Limit getUsername() {return username;}
+    public void setUsername(Limit username) {this.username = username;}
+
+    public int getFreeFailures() {return freeFailures;}
+    public void setFreeFailures(int freeFailures) {this.freeFailures = freeFailures;}
+
+    public Duration getBaseLockout() {return baseLockout;}
+    public void setBaseLockout(Duration baseLockout) {this.baseLockout = baseLockout;}
+
+    public Duration getMaxLockout() {return maxLockout;}
+    public void setMaxLockout(Duration maxLockout) {this.maxLockout = maxLockout;}
+
+    public long getMaxKeys() {return maxKeys;}
+    public void setMaxKeys(long maxKeys) {this.maxKeys = maxKeys;}
+
+    public Duration getIdleExpiry() {return idleExpiry;}
+    public void setIdleExpiry(Duration idleExpiry) {this.idleExpiry = idleExpiry;}
+
+}
@@ -0,0 +1,133 @@
+package com.reactivelearning.demo.security.ticket;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.reactivelearning.demo.entities.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * PreAuthTicketStore
+ * - Bridges the two legs of an MFA login. Once the password step passes, the user is parked here under a random
+ * id and the client receives a ticket: the id and its HMAC-SHA256, "id.signature".
+ * - Redeeming a ticket costs one HMAC. Forged or mangled tickets are rejected before the store is touched, and a
+ * ticket is removed as it is redeemed, so it works once.
+ * - The store is bounded and each ticket expires after the ttl. The HMAC key is generated at startup, so tickets
+ * do not survive a restart, which they could not anyway.
+ * - Hit, miss and eviction counts are registered as cache metrics under the name "mfa.pre-auth".
+ * - Uses ConfigurationProperties, copying from app.security.mfa.pre-auth
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.mfa.pre-auth")
+public class PreAuthTicketStore implements InitializingBean {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int ID_LENGTH = 16;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private Duration ttl = Duration.ofMinutes(2);
+    private long maxSize = 10_000;
+
+    private final MeterRegistry meterRegistry;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> mac;
+
+    private Cache<String, User> tickets;
+
+    public PreAuthTicketStore(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        SecretKeySpec key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(MAC_ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("Could not initialise " + MAC_ALGORITHM, ex);
+            }
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.tickets = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .scheduler(Scheduler.systemScheduler())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tickets, "mfa.pre-auth");
+    }
+
+    /**
+     * Issue
+     * - Parks a user who has passed the password step
+     * @param user User : The authenticated user, holding their decrypted MFA data
+     * @return String : The ticket to present with the TOTP code
+     */
+    public String issue(User user) {
+        byte[] id = new byte[ID_LENGTH];
+        random.nextBytes(id);
+        String encodedId = ENCODER.encodeToString(id);
+        tickets.put(encodedId, user);
+        return encodedId + "." + ENCODER.encodeToString(sign(encodedId));
+    }
+
+    /**
+     * Redeem
+     * - Takes the user back out of the store. Each ticket can only be redeemed once.
+     * @param ticket String : A ticket from issue
+     * @return User : The parked user, or null if the ticket is forged, expired or already used
+     */
+    public User redeem(String ticket) {
+
+        int dot = ticket == null ? -1 : ticket.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+
+        String encodedId = ticket.substring(0, dot);
+        byte[] signature;
+        try {
+            signature = DECODER.decode(ticket.substring(dot + 1));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+
+        if (!MessageDigest.isEqual(sign(encodedId), signature)) {
+            return null;
+        }
+
+        return tickets.asMap().remove(encodedId);
+
+    }
+
+    private byte[] sign(String encodedId) {
+        return mac.get().doFinal(encodedId.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Getters / Setters
+
+    public Duration getTtl() {return ttl;}
+    public void setTtl(Duration ttl) {this.ttl = ttl;}
+
+    public long getMaxSize() {return maxSize;}
+    public void setMaxSize(long maxSize) {this.maxSize = maxSize;}
+
+}
@@ -0,0 +1,67 @@
+package com.reactivelearning.demo.security.totp;
+
+import java.util.Arrays;
+
+/**
+ * Base32
+ * - The RFC 4648 alphabet that authenticator apps expect TOTP secrets in. Encodes without padding, and decodes
+ * ignoring case, padding and spaces, the way users tend to type secrets in.
+ */
+final class Base32 {
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final int[] LOOKUP = new int[128];
+
+    static {
+        Arrays.fill(LOOKUP, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            LOOKUP[ALPHABET[i]] = i;
+            LOOKUP[Character.toLowerCase(ALPHABET[i])] = i;
+        }
+    }
+
+    private Base32() {}
+
+    static String encode(byte[] data) {
+        StringBuilder out = new StringBuilder((data.length * 8 + 4) / 5);
+        int buffer = 0;
+        int bits = 0;
+        for (byte b : data) {
+            buffer = (buffer << 8) | (b & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                out.append(ALPHABET[(buffer >>> (bits - 5)) & 0x1F]);
+                bits -= 5;
+            }
+        }
+        if (bits > 0) {
+            out.append(ALPHABET[(buffer << (5 - bits)) & 0x1F]);
+        }
+        return out.toString();
+    }
+
+    static byte[] decode(String encoded) {
+        byte[] out = new byte[encoded.length() * 5 / 8];
+        int length = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '=' || c == ' ' || c == '-') {
+                continue;
+            }
+            int value = c < 128 ? LOOKUP[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Not a Base32 character: " + c);
+            }
+            buffer = (buffer << 5) | value;
+            bits += 5;
+            if (bits >= 8) {
+                out[length++] = (byte) (buffer >>> (bits - 8));
+                bits -= 8;
+            }
+        }
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+
+}
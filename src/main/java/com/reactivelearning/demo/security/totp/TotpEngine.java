@@ -0,0 +1,174 @@
+package com.reactivelearning.demo.security.totp;
+
+import com.reactivelearning.demo.entities.Mfa;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * TotpEngine
+ * - RFC 6238 time-based codes: HMAC-SHA1 over 30 second steps, truncated to 6 digits, the parameters every
+ * authenticator app defaults to. Replaces GoogleAuthenticator, with codes that are interchangeable with it.
+ * - The secret is decoded per check. Each Mfa is freshly loaded and decrypted per request, so a key cached on it
+ * would never be reused, and decoding 20 bytes of Base32 is cheap next to the HMACs.
+ * - Each thread keeps one Mac and its buffers, re-keyed per check. Beyond the key copy the JCE makes on re-keying,
+ * checking the window allocates nothing.
+ * - Secrets come from a per-thread DRBG, so key generation never contends on one SecureRandom.
+ * - Uses ConfigurationProperties, copying from app.security.mfa.totp
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.mfa.totp")
+public class TotpEngine {
+
+    private static final String MAC_ALGORITHM = "HmacSHA1";
+    private static final long STEP_MILLIS = 30_000;
+    private static final int DIGITS_MODULUS = 1_000_000;
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(() -> {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException ex) {
+            return new SecureRandom();
+        }
+    });
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private int window = 1;
+    private int secretLength = 20;
+
+    /**
+     * Create secret
+     * - A new random secret, Base32 encoded for the otpauth URI
+     * @return String : The secret
+     */
+    public String createSecret() {
+        byte[] secret = new byte[secretLength];
+        RANDOM.get().nextBytes(secret);
+        return Base32.encode(secret);
+    }
+
+    /**
+     * Verify
+     * - Checks a code against the current time step and the steps either side of it, within the window
+     * @param mfa Mfa : The user's MFA data, with the secret decrypted
+     * @param code int : The code the user provided
+     * @return boolean : Valid or not
+     */
+    public boolean verify(Mfa mfa, int code) {
+        return verify(mfa, code, System.currentTimeMillis());
+    }
+
+    /**
+     * Verify
+     * - Checks a code at the given time
+     * @param mfa Mfa : The user's MFA data, with the secret decrypted
+     * @param code int : The code the user provided
+     * @param epochMillis long : The time to check at
+     * @return boolean : Valid or not
+     */
+    public boolean verify(Mfa mfa, int code, long epochMillis) {
+
+        if (code < 0 || code >= DIGITS_MODULUS) {
+            return false;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        scratch.init(keyOf(mfa));
+
+        long step = Math.floorDiv(epochMillis, STEP_MILLIS);
+        // Every step in the window is checked, so timing does not reveal which one matched
+        boolean valid = false;
+        for (long counter = step - window; counter <= step + window; counter++) {
+            valid |= scratch.hotp(counter) == code;
+        }
+        return valid;
+
+    }
+
+    /**
+     * Generate
+     * - The code for the given time, as an authenticator app would show it
+     * @param mfa Mfa : The user's MFA data, with the secret decrypted
+     * @param epochMillis long : The time to generate at
+     * @return int : The code
+     */
+    public int generate(Mfa mfa, long epochMillis) {
+        Scratch scratch = SCRATCH.get();
+        scratch.init(keyOf(mfa));
+        return scratch.hotp(Math.floorDiv(epochMillis, STEP_MILLIS));
+    }
+
+    /**
+     * The decoded key for an Mfa's secret.
+     */
+    private static SecretKeySpec keyOf(Mfa mfa) {
+        return new SecretKeySpec(Base32.decode(mfa.getMfaSecret()), MAC_ALGORITHM);
+    }
+
+    /**
+     * Per-thread state. None of it escapes a single verify or generate call.
+     */
+    private static final class Scratch {
+
+        private final Mac mac;
+        private final byte[] counter = new byte[8];
+        private final byte[] hash;
+
+        private Scratch() {
+            try {
+                this.mac = Mac.getInstance(MAC_ALGORITHM);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("Could not initialise " + MAC_ALGORITHM, ex);
+            }
+            this.hash = new byte[mac.getMacLength()];
+        }
+
+        private void init(SecretKeySpec key) {
+            try {
+                mac.init(key);
+            } catch (InvalidKeyException ex) {
+                throw new IllegalArgumentException("Invalid TOTP secret", ex);
+            }
+        }
+
+        /**
+         * RFC 4226 HOTP: the HMAC of the big-endian counter, dynamically truncated to 31 bits, then to 6 digits.
+         */
+        private int hotp(long value) {
+            for (int i = 7; i >= 0; i--) {
+                counter[i] = (byte) value;
+                value >>>= 8;
+            }
+            try {
+                mac.update(counter, 0, counter.length);
+                mac.doFinal(hash, 0);
+            } catch (ShortBufferException ex) {
+                throw new IllegalStateException(ex);
+            }
+            int offset = hash[hash.length - 1] & 0x0F;
+            int binary = ((hash[offset] & 0x7F) << 24)
+                    | ((hash[offset + 1] & 0xFF) << 16)
+                    | ((hash[offset + 2] & 0xFF) << 8)
+                    | (hash[offset + 3] & 0xFF);
+            return binary % DIGITS_MODULUS;
+        }
+
+    }
+
+    // Getters / Setters
+
+    public int getWindow() {return window;}
+    public void setWindow(int window) {this.window = window;}
+
+    public int getSecretLength() {return secretLength;}
+    public void setSecretLength(int secretLength) {this.secretLength = secretLength;}
+
+}
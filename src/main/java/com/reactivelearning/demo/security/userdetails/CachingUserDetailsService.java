@@ -0,0 +1,170 @@
+package com.reactivelearning.demo.security.userdetails;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.security.crypto.MfaKeyRotatedEvent;
+import com.reactivelearning.demo.service.UserChangedEvent;
+import com.reactivelearning.demo.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * CachingUserDetailsService
+ * - Sits in front of UserService.findByUsername for the authentication manager, so repeat logins by the same user
+ * skip the user, role and MFA query and go straight to the password check.
+ * - Holds an immutable snapshot of each user, bounded by size and expiring ttl after it was loaded. Every hit
+ * hands out a fresh User built from it, so nothing a login does to its principal reaches the cache.
+ * - Concurrent misses for one username share a single query. A failed lookup, e.g. an unknown username, is never
+ * cached.
+ * - Entries are dropped on a UserChangedEvent, published by UserService when a user's username, password or roles
+ * change or the user is deleted. Everything is dropped when the MFA key is rotated, as the cached secrets are
+ * re-encrypted.
+ * - Primary, so it is the ReactiveUserDetailsService Spring Security picks up, rather than UserService.
+ * - Hit, miss and eviction counts are registered as cache metrics under the name "users.details".
+ * - Uses ConfigurationProperties, copying from app.security.user-cache
+ */
+@Component
+@Primary
+@ConfigurationProperties(prefix = "app.security.user-cache")
+public class CachingUserDetailsService implements ReactiveUserDetailsService, InitializingBean {
+
+    private boolean enabled = true;
+    private long maxSize = 10_000;
+    private Duration ttl = Duration.ofMinutes(5);
+
+    private final UserService userService;
+    private final MeterRegistry meterRegistry;
+
+    private AsyncCache<String, Snapshot> cache;
+
+    @Autowired
+    public CachingUserDetailsService(UserService userService, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users.details");
+    }
+
+    /**
+     * FindByUsername
+     * - The user as UserService would load it, from the cache when possible
+     * @param username String : The username provided in the Authorization header
+     * @return User (Implements UserDetails) : A new User, owned by the caller
+     */
+    @Override
+    public Mono<UserDetails> findByUsername(String username) {
+        if (!enabled) {
+            return userService.findByUsername(username);
+        }
+        // The future is shared by every caller waiting on the same username, so one caller cancelling must not
+        // cancel it for the rest
+        return Mono.fromFuture(() -> cache.get(username, (key, executor) -> userService.findByUsername(key)
+                                .map(userDetails -> Snapshot.of((User) userDetails))
+                                .toFuture()),
+                        true)
+                .map(snapshot -> snapshot.toUser());
+    }
+
+    /**
+     * Invalidate
+     * - Drops a user, so the next login reads them again
+     * @param username String : The username the user was cached under
+     */
+    public void invalidate(String username) {
+        cache.synchronous().invalidate(username);
+    }
+
+    @EventListener(UserChangedEvent.class)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.username());
+    }
+
+    @EventListener(MfaKeyRotatedEvent.class)
+    public void onMfaKeyRotated(MfaKeyRotatedEvent event) {
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * The fields of a user, their roles and MFA row, copied out of the mutable entities. The decrypted TOTP key is
+     * never cached.
+     */
+    private record Snapshot(
+            UUID id,
+            String username,
+            String password,
+            String email,
+            List<RoleEntry> roles,
+            MfaEntry mfa) {
+
+        static Snapshot of(User user) {
+            List<RoleEntry> roles = user.getRoles() == null
+                    ? List.of()
+                    : user.getRoles().stream().map(role -> new RoleEntry(role.getId(), role.getRole())).toList();
+            Mfa mfa = user.getMfa();
+            return new Snapshot(
+                    user.getId(),
+                    user.getUsername(),
+                    user.getPassword(),
+                    user.getEmail(),
+                    roles,
+                    mfa == null ? null : new MfaEntry(mfa.getId(), mfa.getUsersId(), mfa.isEnabled(), mfa.getMfaSecret()));
+        }
+
+        User toUser() {
+            User user = new User(username, password, email);
+            user.setId(id);
+            user.setRoles(roles.stream().map(entry -> {
+                Role role = Role.of(entry.role());
+                role.setId(entry.id());
+                return role;
+            }).toList());
+            if (mfa != null) {
+                Mfa copy = Mfa.of(mfa.usersId(), mfa.enabled(), mfa.secret());
+                copy.setId(mfa.id());
+                user.setMfa(copy);
+            }
+            return user;
+        }
+
+    }
+
+    private record RoleEntry(UUID id, String role) {}
+
+    private record MfaEntry(UUID id, UUID usersId, boolean enabled, String secret) {}
+
+    // Getters / Setters
+
+    public boolean isEnabled() {return enabled;}
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+
+    public long getMaxSize() {return maxSize;}
+    public void setMaxSize(long maxSize) {this.maxSize = maxSize;}
+
+    public Duration getTtl() {return ttl;}
+    public void setTtl(Duration ttl) {this.ttl = ttl;}
+
+}
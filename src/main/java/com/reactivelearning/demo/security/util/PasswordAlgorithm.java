@@ -0,0 +1,73 @@
+package com.reactivelearning.demo.security.util;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+/**
+ * The password hashing algorithms the server can encode with. Each one knows its DelegatingPasswordEncoder id,
+ * how to build an encoder for a given cost, and the range the calibrator is allowed to pick from.
+ * - BCRYPT : cost is the log2 work factor.
+ * - ARGON2 : cost is the iteration count, with Spring Security's recommended memory and parallelism.
+ * - PBKDF2 : not calibrated. Its hashes do not record the iteration count, so changing it would lock out
+ * every existing PBKDF2 user.
+ */
+public enum PasswordAlgorithm {
+
+    BCRYPT("bcrypt", 10, 16, true) {
+        @Override
+        public PasswordEncoder create(int cost) {
+            return new BCryptPasswordEncoder(cost);
+        }
+    },
+    ARGON2("argon2", 2, 10, true) {
+        @Override
+        public PasswordEncoder create(int cost) {
+            return new Argon2PasswordEncoder(16, 32, 1, 1 << 14, cost);
+        }
+    },
+    PBKDF2("pbkdf2", 0, 0, false) {
+        @Override
+        public PasswordEncoder create(int cost) {
+            return Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8();
+        }
+    };
+
+    private final String id;
+    private final int minCost;
+    private final int maxCost;
+    private final boolean calibrated;
+
+    PasswordAlgorithm(String id, int minCost, int maxCost, boolean calibrated) {
+        this.id = id;
+        this.minCost = minCost;
+        this.maxCost = maxCost;
+        this.calibrated = calibrated;
+    }
+
+    /**
+     * Create
+     * - Builds an encoder for this algorithm
+     * @param cost int : The work factor. Ignored by algorithms that are not calibrated.
+     * @return PasswordEncoder
+     */
+    public abstract PasswordEncoder create(int cost);
+
+    public String getId() {
+        return id;
+    }
+
+    public int getMinCost() {
+        return minCost;
+    }
+
+    public int getMaxCost() {
+        return maxCost;
+    }
+
+    public boolean isCalibrated() {
+        return calibrated;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.reactivelearning.demo.security.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PasswordEncoderCalibrator
+ * - Builds the server's DelegatingPasswordEncoder. New hashes use the configured algorithm, while hashes from
+ * every other supported algorithm (and legacy, un-prefixed BCrypt hashes) can still be matched.
+ * - Unless a fixed strength is configured, the work factor is calibrated at startup: the highest cost whose
+ * hash time fits in the target latency on this machine, but never below the algorithm's minimum.
+ * - Uses ConfigurationProperties, copying from app.security.password
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.password")
+public class PasswordEncoderCalibrator {
+
+    private static final String CALIBRATION_INPUT = "calibration-password";
+    private static final int SAMPLES = 3;
+
+    private PasswordAlgorithm algorithm = PasswordAlgorithm.BCRYPT;
+    private Duration targetLatency = Duration.ofMillis(50);
+    private Integer strength;
+
+    private final Logger logger = LoggerFactory.getLogger(PasswordEncoderCalibrator.class);
+
+    /**
+     * Build
+     * - Creates the delegating encoder, calibrating the encoding algorithm first if required
+     * @return PasswordEncoder : A DelegatingPasswordEncoder
+     */
+    public PasswordEncoder build() {
+
+        int cost = strength != null ? strength : calibrate();
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        for (PasswordAlgorithm candidate : PasswordAlgorithm.values()) {
+            encoders.put(candidate.getId(), candidate.create(candidate.getMinCost()));
+        }
+        encoders.put(algorithm.getId(), algorithm.create(cost));
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm.getId(), encoders);
+        encoder.setDefaultPasswordEncoderForMatches(encoders.get(PasswordAlgorithm.BCRYPT.getId()));
+
+        logger.info("Password encoder uses {} with cost {}", algorithm.getId(), cost);
+
+        return encoder;
+
+    }
+
+    /**
+     * Calibrate
+     * - Walks the cost upwards from the algorithm's minimum, stopping at the first cost that overshoots the
+     * target latency.
+     * @return int : The chosen cost
+     */
+    private int calibrate() {
+
+        if (!algorithm.isCalibrated()) {
+            return algorithm.getMinCost();
+        }
+
+        long targetNanos = targetLatency.toNanos();
+        int chosen = algorithm.getMinCost();
+
+        for (int cost = algorithm.getMinCost(); cost <= algorithm.getMaxCost(); cost++) {
+
+            long elapsed = measure(algorithm.create(cost));
+            logger.debug("Calibrating {}: cost {} took {} ms", algorithm.getId(), cost, elapsed / 1_000_000);
+
+            if (elapsed > targetNanos) {
+                if (cost == algorithm.getMinCost()) {
+                    logger.warn("⚠️ Minimum {} cost {} takes {} ms, above the {} ms target",
+                            algorithm.getId(), cost, elapsed / 1_000_000, targetLatency.toMillis());
+                }
+                break;
+            }
+
+            chosen = cost;
+
+        }
+
+        return chosen;
+
+    }
+
+    /**
+     * Returns the median of a few hashes, after one warm-up hash.
+     */
+    private long measure(PasswordEncoder encoder) {
+
+        encoder.encode(CALIBRATION_INPUT);
+
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_INPUT);
+            samples[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+
+    }
+
+    // Getters / Setters
+
+    public PasswordAlgorithm getAlgorithm() {return algorithm;}
+    public void setAlgorithm(PasswordAlgorithm algorithm) {this.algorithm = algorithm;}
+
+    public Duration getTargetLatency() {return targetLatency;}
+    public void setTargetLatency(Duration targetLatency) {this.targetLatency = targetLatency;}
+
+    public Integer getStrength() {return strength;}
+    public void setStrength(Integer strength) {this.strength = strength;}
+
+}
@@ -0,0 +1,75 @@
+package com.reactivelearning.demo.security.util;
+
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PasswordUpgradeTracker
+ * - Tracks how many accounts still have a hash that PasswordEncoder wants to upgrade (old algorithm or a
+ * lower cost than the current calibration).
+ * - The count is taken once the application is ready, and decremented as logins upgrade hashes.
+ */
+@Component
+public class PasswordUpgradeTracker {
+
+    private final UsersRepository usersRepository;
+    private final PasswordEncoder encoder;
+
+    private final AtomicLong outdated = new AtomicLong();
+    private final Counter upgraded;
+
+    private final Logger logger = LoggerFactory.getLogger(PasswordUpgradeTracker.class);
+
+    @Autowired
+    public PasswordUpgradeTracker(
+            UsersRepository usersRepository,
+            PasswordEncoder encoder,
+            MeterRegistry meterRegistry) {
+        this.usersRepository = usersRepository;
+        this.encoder = encoder;
+        this.upgraded = Counter.builder("password.hashes.upgraded")
+                .description("Password hashes upgraded on login")
+                .register(meterRegistry);
+        Gauge.builder("password.hashes.outdated", outdated, AtomicLong::get)
+                .description("Accounts whose password hash is still on old parameters")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count outdated hashes
+     * - Streams every stored hash once the application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void countOutdated() {
+        usersRepository.findAllPasswords()
+                .filter(hash -> encoder.upgradeEncoding(hash))
+                .count()
+                .subscribe(
+                        count -> {
+                            outdated.set(count);
+                            logger.info("{} accounts have an outdated password hash", count);
+                        },
+                        error -> logger.error("Failed to count outdated password hashes: {}", error.getMessage()));
+    }
+
+    /**
+     * Record upgrade
+     * - Called once an outdated hash has been replaced in the database
+     */
+    public void recordUpgrade() {
+        upgraded.increment();
+        outdated.updateAndGet(count -> Math.max(0, count - 1));
+    }
+
+}
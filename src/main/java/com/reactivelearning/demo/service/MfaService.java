@@ -1,23 +1,20 @@
 package com.reactivelearning.demo.service;
 
-import com.google.crypto.tink.Aead;
-import com.google.crypto.tink.KeysetHandle;
-import com.google.crypto.tink.RegistryConfiguration;
 import com.reactivelearning.demo.entities.Mfa;
 import com.reactivelearning.demo.entities.User;
-import com.reactivelearning.demo.exception.entities.InternalServerException;
 import com.reactivelearning.demo.exception.entities.MfaNotFoundException;
 import com.reactivelearning.demo.exception.entities.MfaRepositoryException;
 import com.reactivelearning.demo.repository.user.MfaRepository;
-import com.warrenstrange.googleauth.GoogleAuthenticator;
+import com.reactivelearning.demo.security.crypto.CryptoExecutor;
+import com.reactivelearning.demo.security.crypto.CryptoOperation;
+import com.reactivelearning.demo.security.crypto.MfaCipher;
+import com.reactivelearning.demo.security.totp.TotpEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
-import java.util.Base64;
+import java.util.UUID;
 
 /**
  * A service class for working with Mfa objects.
@@ -25,19 +22,22 @@ import java.util.Base64;
 @Service
 public class MfaService {
 
-    private final KeysetHandle keysetHandle;
+    private final MfaCipher mfaCipher;
     private final MfaRepository mfaRepository;
-    private final GoogleAuthenticator authenticator;
+    private final TotpEngine totpEngine;
+    private final CryptoExecutor cryptoExecutor;
 
     private final Logger logger = LoggerFactory.getLogger(MfaService.class);
 
     public MfaService(
-            KeysetHandle keysetHandle,
+            MfaCipher mfaCipher,
             MfaRepository mfaRepository,
-            GoogleAuthenticator authenticator) {
-        this.keysetHandle = keysetHandle;
+            TotpEngine totpEngine,
+            CryptoExecutor cryptoExecutor) {
+        this.mfaCipher = mfaCipher;
         this.mfaRepository = mfaRepository;
-        this.authenticator = authenticator;
+        this.totpEngine = totpEngine;
+        this.cryptoExecutor = cryptoExecutor;
     }
 
     // Asynchronous - Database methods
@@ -46,17 +46,21 @@ public class MfaService {
      * Create MFA
      * - Creates an MFA row in the MFA table, using a User's UUID
      * @param user User : The registering user
-     * @return Mfa : A created Mfa entity
+     * @return Mfa : A copy of the created row holding the plain secret, for the enrollment URI. Only the
+     * encrypted secret is stored.
      */
     public Mono<Mfa> createMfa(User user) {
-        return Mono.fromSupplier(() -> Mfa.of(user.getId(), false, createSecureKey()))
-                .flatMap(mfa ->
-                        Mono.fromSupplier(() -> {
-                            mfa.setMfaSecret(encrypt(mfa.getMfaSecret()));
-                            return mfa;
-                        })) // Possible error.
+        return cryptoExecutor.submit(CryptoOperation.MFA_ENCRYPT, () -> {
+                    String secret = createSecureKey();
+                    return new CreatedSecret(Mfa.of(user.getId(), false, encrypt(secret)), secret); // Possible error.
+                })
                 .doOnError(exception -> logger.error("Failed to encrypt: {}", exception.getMessage()))
-                .flatMap(mfa -> mfaRepository.save(mfa))
+                .flatMap(created -> mfaRepository.save(created.row())
+                        .map(saved -> {
+                            Mfa plain = Mfa.of(saved.getUsersId(), saved.isEnabled(), created.secret());
+                            plain.setId(saved.getId());
+                            return plain;
+                        }))
                 .doOnError(exception -> {
                     logger.error("Failed to save MFA: {}", exception.getMessage());
                     throw new MfaRepositoryException(exception.getMessage());
@@ -74,75 +78,92 @@ public class MfaService {
     public Mono<Mfa> getMfa(User user) {
         return mfaRepository.findByUsersId(user.getId())
                 .switchIfEmpty(Mono.error(new MfaNotFoundException("MFA data not found.")))
-                .flatMap(mfa -> Mono.fromSupplier(() -> {
-                    mfa.setMfaSecret(decrypt(mfa.getMfaSecret()));
-                    return mfa;
-                }))
+                .flatMap(mfa -> decryptSecret(mfa))
                 .doOnError(exception -> {
                     logger.error("Failed to decrypt: {}", exception.getMessage());
                     throw new MfaRepositoryException(exception.getMessage());
                 });
     }
 
-    // Synchronous - Encryption methods
-
-    // Public
+    /**
+     * Decrypt a User's MFA data
+     * - For MFA rows that were already loaded, e.g. with the auth record on login
+     * @param mfa Mfa : The MFA row, with its secret still encrypted
+     * @return Mfa : A copy of the row holding the decrypted secret. The given row is left untouched.
+     */
+    public Mono<Mfa> decryptMfa(Mfa mfa) {
+        return decryptSecret(mfa)
+                .doOnError(exception -> {
+                    logger.error("Failed to decrypt: {}", exception.getMessage());
+                    throw new MfaRepositoryException(exception.getMessage());
+                });
+    }
 
     /**
      * Validate
-     * - A synchronous, blocking request to check if the code is valid
+     * - Checks if the code is valid. The check itself runs on the CryptoExecutor.
      * @param mfa Mfa : A user's MFA data
      * @param code int : The TOTP code provided
      * @return boolean : Valid or not
      */
-    public boolean validate(Mfa mfa, int code) {
-        return authenticator.authorize(mfa.getMfaSecret(), code);
+    public Mono<Boolean> validate(Mfa mfa, int code) {
+        return cryptoExecutor.submit(CryptoOperation.TOTP_VALIDATE, () ->
+                totpEngine.verify(mfa, code));
     }
 
-    // Private
+    private Mono<Mfa> decryptSecret(Mfa mfa) {
+        return cryptoExecutor.submit(CryptoOperation.MFA_DECRYPT, () -> {
+            Mfa decrypted = Mfa.of(mfa.getUsersId(), mfa.isEnabled(), decrypt(mfa.getMfaSecret()));
+            decrypted.setId(mfa.getId());
+            return decrypted;
+        });
+    }
+
+    // Synchronous - Encryption methods, only called from the CryptoExecutor
+
+    /**
+     * New MFA row
+     * - Creates an MFA row for a user, disabled, with a fresh secret that is encrypted and not yet saved. For bulk
+     * imports, which hash and encrypt a whole chunk before writing it at once.
+     * @param usersId UUID : The user the row belongs to
+     * @return Mfa : The unsaved row, holding only the encrypted secret
+     */
+    public Mfa newMfa(UUID usersId) {
+        return Mfa.of(usersId, false, encrypt(createSecureKey()));
+    }
 
     /**
      * Create Secure Key
-     * - Uses GoogleAuthenticator to create a randomly generated key
+     * - Uses TotpEngine to create a randomly generated key
      * @return String : Random key for use in TOTP
      */
     private String createSecureKey() {
-        return authenticator.createCredentials().getKey();
+        return totpEngine.createSecret();
     }
 
     /**
      * Encrypt
-     * - Use AEAD encryption with the KeysetHandler (holds our MFA Secret key)
+     * - Encrypts with the MfaCipher's current primary key
      * @param raw String : The raw string to be encrypted
      * @return String : Encrypted string
      */
     private String encrypt(String raw) {
-        try {
-            Aead aead = keysetHandle.getPrimitive(RegistryConfiguration.get(), Aead.class);
-            byte[] cipherText = aead.encrypt(raw.getBytes(StandardCharsets.UTF_8), "Reactive AuthN/AuthZ".getBytes());
-            return Base64.getEncoder().encodeToString(cipherText);
-        } catch (GeneralSecurityException exception) {
-            throw new InternalServerException(String.format("Encryption failed: %s", exception.getMessage()));
-        }
+        return mfaCipher.encrypt(raw);
     }
 
     /**
      * Decrypt
-     * - Use AEAD decryption with the KeysetHandler (holds the MFA Secret key)
+     * - Decrypts with whichever key in the MfaCipher's keyset encrypted the string
      * @param encrypted String : The encrypted string to be decrypted
      * @return String : Decrypted raw string
      */
     private String decrypt(String encrypted) {
-        try {
-            Aead aead = keysetHandle.getPrimitive(RegistryConfiguration.get(), Aead.class);
-            byte[] rawText = aead.decrypt(
-                    Base64.getDecoder().decode(encrypted),
-                    "Reactive AuthN/AuthZ".getBytes()
-            );
-            return new String(rawText, StandardCharsets.UTF_8);
-        } catch (GeneralSecurityException exception) {
-            throw new InternalServerException(String.format("Encryption failed: %s", exception.getMessage()));
-        }
+        return mfaCipher.decrypt(encrypted);
     }
 
+    /**
+     * A new MFA row, with its secret encrypted, and the plain secret it was made from.
+     */
+    private record CreatedSecret(Mfa row, String secret) {}
+
 }
@@ -0,0 +1,116 @@
+package com.reactivelearning.demo.service;
+
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.RoleType;
+import com.reactivelearning.demo.exception.entities.RolesNotFoundException;
+import com.reactivelearning.demo.repository.user.RolesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RoleRegistry
+ * - Roles are seed data, so they are read once at startup, after the schema migrations, and held in an EnumMap.
+ * Looking a role up costs no query, and every caller shares the same Role instance. Treat them as read-only.
+ * - A role missing from the registry triggers a reload before it is reported missing. refresh() reloads on demand,
+ * swapping in a whole new map, so readers never see a partial one.
+ * - Rows whose name is not a RoleType are ignored.
+ */
+@Component
+@DependsOn("schemaMigrator")
+public class RoleRegistry implements InitializingBean {
+
+    private static final Duration LOAD_TIMEOUT = Duration.ofSeconds(30);
+    private static final Map<String, RoleType> BY_NAME = new HashMap<>();
+    private static final Map<String, RoleType> BY_AUTHORITY = new HashMap<>();
+
+    static {
+        for (RoleType type : RoleType.values()) {
+            BY_NAME.put(type.name(), type);
+            BY_AUTHORITY.put(type.getAuthority(), type);
+        }
+    }
+
+    private final RolesRepository rolesRepository;
+
+    private volatile Map<RoleType, Role> roles = Collections.emptyMap();
+
+    private final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+
+    @Autowired
+    public RoleRegistry(RolesRepository rolesRepository) {
+        this.rolesRepository = rolesRepository;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        refresh().block(LOAD_TIMEOUT);
+    }
+
+    /**
+     * Refresh
+     * - Reloads every role from the roles table
+     * @return Map : The roles now registered
+     */
+    public Mono<Map<RoleType, Role>> refresh() {
+        return rolesRepository.findAll()
+                .filter(role -> BY_NAME.containsKey(role.getRole()))
+                .collect(() -> new EnumMap<RoleType, Role>(RoleType.class),
+                        (loaded, role) -> loaded.put(BY_NAME.get(role.getRole()), role))
+                .map(loaded -> {
+                    roles = Collections.unmodifiableMap(loaded);
+                    logger.info("Role registry loaded {}", loaded.keySet());
+                    return roles;
+                });
+    }
+
+    /**
+     * Get
+     * - The registered role, without reloading
+     * @param type RoleType : The role to look up
+     * @return Role : The shared instance, or null if the role is not registered
+     */
+    public Role get(RoleType type) {
+        return roles.get(type);
+    }
+
+    /**
+     * Find
+     * - The registered role, reloading once if it is missing
+     * @param type RoleType : The role to look up
+     * @return Role : The shared instance
+     * @throws RolesNotFoundException : If the role is not in the roles table
+     */
+    public Mono<Role> find(RoleType type) {
+        Role role = roles.get(type);
+        if (role != null) {
+            return Mono.just(role);
+        }
+        return refresh()
+                .flatMap(loaded -> Mono.justOrEmpty(loaded.get(type)))
+                .switchIfEmpty(Mono.error(new RolesNotFoundException("The server experienced an issue.")));
+    }
+
+    /**
+     * From authority
+     * - Maps a granted authority, e.g. from a JWT, back to its role
+     * @param authority String : The authority, "ROLE_" followed by the role name
+     * @return Role : The shared instance, or a new Role if the name is not registered
+     */
+    public Role fromAuthority(String authority) {
+        RoleType type = BY_AUTHORITY.get(authority);
+        Role role = type == null ? null : roles.get(type);
+        return role != null ? role : Role.of(authority.substring(5));
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.reactivelearning.demo.service;
+
+/**
+ * Published by UserService once a user's credentials, roles or username change, or the user is deleted.
+ * @param username String : The username the user was known by before the change
+ */
+public record UserChangedEvent(String username) {}
@@ -0,0 +1,80 @@
+package com.reactivelearning.demo.service;
+
+import com.reactivelearning.demo.dto.user.UserPage;
+import com.reactivelearning.demo.dto.user.UserSummary;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * UserDirectory
+ * - Lists users with keyset pagination on id: each page seeks past the last id of the one before through the
+ * primary key, so a page costs the same however deep it is, and no query reads more than maxPageSize rows.
+ * - Rows are read straight into UserSummary, without the password hash or the user's roles.
+ * - Uses ConfigurationProperties, copying from app.users.listing
+ */
+@Service
+@ConfigurationProperties(prefix = "app.users.listing")
+public class UserDirectory {
+
+    private int defaultPageSize = 50;
+    private int maxPageSize = 500;
+
+    private final UsersRepository usersRepository;
+
+    @Autowired
+    public UserDirectory(UsersRepository usersRepository) {
+        this.usersRepository = usersRepository;
+    }
+
+    /**
+     * Page
+     * - One page of users in id order
+     * @param after UUID : The cursor from the previous page, or null for the first page
+     * @param limit Integer : The page size, or null for the default. Capped at maxPageSize.
+     * @return UserPage : The users, and the cursor for the next page
+     */
+    public Mono<UserPage> page(UUID after, Integer limit) {
+        int size = limit == null ? defaultPageSize : Math.clamp(limit, 1, maxPageSize);
+        return query(after, size)
+                .collectList()
+                .map(users -> new UserPage(users, users.size() < size ? null : users.getLast().id()));
+    }
+
+    /**
+     * Stream
+     * - Every user after the cursor, in id order, fetched a page at a time as the client asks for them. A page is
+     * only queried once the one before has been sent, so a slow client holds neither rows nor a connection.
+     * @param after UUID : The cursor to start after, or null to start from the first user
+     * @return UserSummary : The users, one by one
+     */
+    public Flux<UserSummary> stream(UUID after) {
+        return page(after, maxPageSize)
+                .expand(page -> page.next() == null ? Mono.empty() : page(page.next(), maxPageSize))
+                .concatMapIterable(UserPage::users, 1)
+                .limitRate(maxPageSize);
+    }
+
+    // Private methods
+
+    private Flux<UserSummary> query(UUID after, int limit) {
+        return after == null
+                ? usersRepository.findFirstPage(limit)
+                : usersRepository.findPageAfter(after, limit);
+    }
+
+    // Getters / Setters
+
+    public int getDefaultPageSize() {return defaultPageSize;}
+    public void setDefaultPageSize(int defaultPageSize) {this.defaultPageSize = defaultPageSize;}
+
+    public int getMaxPageSize() {return maxPageSize;}
+    public void setMaxPageSize(int maxPageSize) {this.maxPageSize = maxPageSize;}
+
+}
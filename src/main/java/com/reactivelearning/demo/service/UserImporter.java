@@ -0,0 +1,299 @@
+package com.reactivelearning.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivelearning.demo.dto.user.UserImportError;
+import com.reactivelearning.demo.dto.user.UserImportReport;
+import com.reactivelearning.demo.dto.user.UserRequest;
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.RoleType;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.exception.entities.ServiceUnavailableException;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.security.crypto.CryptoExecutor;
+import com.reactivelearning.demo.security.crypto.CryptoOperation;
+import com.reactivelearning.demo.security.util.PasswordHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * UserImporter
+ * - Creates users in bulk from an NDJSON stream, one UserRequest per line. A missing role defaults to USER.
+ * - Records are read and validated as they arrive, then grouped into chunks of chunkSize. For each chunk, usernames
+ * already taken (or repeated within the import) are rejected with one query, passwords are hashed and MFA
+ * secrets encrypted at most `concurrency` at a time on the CryptoExecutor, and the survivors are written with
+ * multi-row INSERTs in a single transaction. Imported usernames are added to the UsernameFilter.
+ * - Chunks are imported one after the other, so the body is only read as fast as it can be written.
+ * - A rejected record does not stop the import. If a chunk fails to write, e.g. because a username was taken in
+ * the meantime, every record in it is rejected and the import carries on.
+ * - Progress is exposed as the users.import.records counter, tagged by outcome.
+ * - Uses ConfigurationProperties, copying from app.users.import
+ */
+@Service
+@ConfigurationProperties(prefix = "app.users.import")
+public class UserImporter {
+
+    private int chunkSize = 500;
+    private int concurrency = 4;
+    private int maxReportedErrors = 1000;
+
+    private final UsersRepository usersRepository;
+    private final RoleRegistry roleRegistry;
+    private final UsernameFilter usernameFilter;
+    private final PasswordHandler passwordHandler;
+    private final MfaService mfaService;
+    private final CryptoExecutor cryptoExecutor;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+
+    private final Counter imported;
+    private final Counter rejected;
+
+    private final Logger logger = LoggerFactory.getLogger(UserImporter.class);
+
+    @Autowired
+    public UserImporter(
+            UsersRepository usersRepository,
+            RoleRegistry roleRegistry,
+            UsernameFilter usernameFilter,
+            PasswordHandler passwordHandler,
+            MfaService mfaService,
+            CryptoExecutor cryptoExecutor,
+            TransactionalOperator transactionalOperator,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.usersRepository = usersRepository;
+        this.roleRegistry = roleRegistry;
+        this.usernameFilter = usernameFilter;
+        this.passwordHandler = passwordHandler;
+        this.mfaService = mfaService;
+        this.cryptoExecutor = cryptoExecutor;
+        this.transactionalOperator = transactionalOperator;
+        this.objectMapper = objectMapper;
+        this.imported = Counter.builder("users.import.records")
+                .tag("outcome", "imported")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("users.import.records")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Import users
+     * - Imports every record in the stream, rejecting the ones that cannot be created
+     * @param lines Flux<String> : The NDJSON body, one line at a time. Blank lines are skipped.
+     * @return UserImportReport : How many users were created, and why the others were not
+     */
+    public Mono<UserImportReport> importUsers(Flux<String> lines) {
+        return lines
+                .index()
+                .filter(line -> !line.getT2().isBlank())
+                .map(line -> parse(line.getT1() + 1, line.getT2()))
+                .buffer(chunkSize)
+                .concatMap(chunk -> importChunk(chunk))
+                .reduceWith(Tally::new, Tally::add)
+                .map(Tally::toReport)
+                .doOnNext(report -> logger.info("Imported {} user(s), rejected {}", report.imported(), report.failed()));
+    }
+
+    // Private methods
+
+    /**
+     * Reads and validates one line. Anything that can be checked without the database or the CryptoExecutor is.
+     */
+    private Row parse(long line, String json) {
+
+        UserRequest request;
+        try {
+            request = objectMapper.readValue(json, UserRequest.class);
+        } catch (JsonProcessingException ex) {
+            return Row.rejected(line, null, "Malformed record.");
+        }
+
+        String username = request.getUsername();
+        if (username == null || username.isBlank()) {
+            return Row.rejected(line, null, "Username cannot be empty");
+        } else if (request.getPassword() == null || request.getPassword().isBlank()) {
+            return Row.rejected(line, username, "Password cannot be empty");
+        } else if (request.getEmail() == null || request.getEmail().isBlank()) {
+            return Row.rejected(line, username, "Email cannot be empty");
+        }
+
+        Role role = roleRegistry.get(request.getRole() == null ? RoleType.USER : request.getRole());
+        if (role == null) {
+            return Row.rejected(line, username, "Unknown role.");
+        }
+
+        return new Row(line, request, role, null);
+
+    }
+
+    private Mono<Tally> importChunk(List<Row> chunk) {
+
+        Tally tally = new Tally();
+        Map<String, Row> candidates = new LinkedHashMap<>();
+
+        for (Row row : chunk) {
+            if (row.error() != null) {
+                tally.reject(row.line(), row.username(), row.error());
+            } else if (candidates.putIfAbsent(row.username(), row) != null) {
+                tally.reject(row.line(), row.username(), "Username is repeated in the import.");
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return Mono.just(tally.sorted());
+        }
+
+        return usersRepository.findExistingUsernames(candidates.keySet())
+                .doOnNext(taken -> {
+                    Row row = candidates.remove(taken);
+                    tally.reject(row.line(), row.username(), "Username is taken.");
+                })
+                .thenMany(Flux.defer(() -> Flux.fromIterable(candidates.values())))
+                .flatMapSequential(row -> prepare(row), concurrency)
+                .collectList()
+                .flatMap(prepared -> {
+                    List<User> users = new ArrayList<>(prepared.size());
+                    for (Prepared result : prepared) {
+                        if (result.error() != null) {
+                            tally.reject(result.row().line(), result.row().username(), result.error());
+                        } else {
+                            users.add(result.user());
+                        }
+                    }
+                    return write(prepared, users, tally);
+                })
+                .map(written -> written.sorted());
+
+    }
+
+    /**
+     * Hashes the password and creates the encrypted MFA row on the CryptoExecutor, backing off while its queue is
+     * full so logins come first.
+     */
+    private Mono<Prepared> prepare(Row row) {
+        UserRequest request = row.request();
+        return cryptoExecutor.submit(CryptoOperation.PASSWORD_HASH, () -> {
+                    User user = new User(request.getUsername(), passwordHandler.hash(request.getPassword()), request.getEmail());
+                    user.setId(UUID.randomUUID());
+                    user.setRoles(List.of(row.role()));
+                    user.setMfa(mfaService.newMfa(user.getId()));
+                    return new Prepared(row, user, null);
+                })
+                .retryWhen(Retry.backoff(5, Duration.ofMillis(100))
+                        .filter(error -> error instanceof ServiceUnavailableException))
+                .onErrorResume(error -> Mono.just(new Prepared(row, null, error.getMessage())));
+    }
+
+    private Mono<Tally> write(List<Prepared> prepared, List<User> users, Tally tally) {
+        return transactionalOperator.transactional(usersRepository.insertAll(users))
+                .doOnNext(count -> users.forEach(user -> usernameFilter.add(user.getUsername())))
+                .map(count -> tally.imported(count))
+                .onErrorResume(error -> {
+                    logger.warn("Failed to write an import chunk of {} user(s): {}", users.size(), error.getMessage());
+                    for (Prepared result : prepared) {
+                        if (result.error() == null) {
+                            tally.reject(result.row().line(), result.row().username(), "The user could not be saved.");
+                        }
+                    }
+                    return Mono.just(tally);
+                });
+    }
+
+    /**
+     * One line of the import, either ready to be created or already rejected.
+     */
+    private record Row(long line, UserRequest request, Role role, String error) {
+
+        static Row rejected(long line, String username, String error) {
+            return new Row(line, new UserRequest(username, null, null, null), null, error);
+        }
+
+        String username() {
+            return request.getUsername();
+        }
+
+    }
+
+    /**
+     * A row after the CryptoExecutor, holding either the user to insert or why it could not be prepared.
+     */
+    private record Prepared(Row row, User user, String error) {}
+
+    /**
+     * Counts what was imported and rejected, keeping the first maxReportedErrors rejections. Chunks are tallied one
+     * at a time, so it is never shared between threads.
+     */
+    private class Tally {
+
+        private long imported;
+        private long failed;
+        private final List<UserImportError> errors = new ArrayList<>();
+
+        Tally imported(long count) {
+            imported += count;
+            UserImporter.this.imported.increment(count);
+            return this;
+        }
+
+        void reject(long line, String username, String message) {
+            failed++;
+            rejected.increment();
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new UserImportError(line, username, message));
+            }
+        }
+
+        Tally sorted() {
+            errors.sort(Comparator.comparingLong(UserImportError::line));
+            return this;
+        }
+
+        Tally add(Tally chunk) {
+            imported += chunk.imported;
+            failed += chunk.failed;
+            for (UserImportError error : chunk.errors) {
+                if (errors.size() >= maxReportedErrors) {
+                    break;
+                }
+                errors.add(error);
+            }
+            return this;
+        }
+
+        UserImportReport toReport() {
+            return new UserImportReport(imported, failed, List.copyOf(errors));
+        }
+
+    }
+
+    // Getters / Setters
+
+    public int getChunkSize() {return chunkSize;}
+    public void setChunkSize(int chunkSize) {this.chunkSize = chunkSize;}
+
+    public int getConcurrency() {return concurrency;}
+    public void setConcurrency(int concurrency) {this.concurrency = concurrency;}
+
+    public int getMaxReportedErrors() {return maxReportedErrors;}
+    public void setMaxReportedErrors(int maxReportedErrors) {this.maxReportedErrors = maxReportedErrors;}
+
+}
@@ -1,29 +1,39 @@
 package com.reactivelearning.demo.service;
 
+import com.reactivelearning.demo.audit.AuditLog;
+import com.reactivelearning.demo.audit.AuditType;
 import com.reactivelearning.demo.dto.auth.LoginRequest;
 import com.reactivelearning.demo.dto.auth.LoginResponse;
 import com.reactivelearning.demo.dto.auth.RegisterRequest;
 import com.reactivelearning.demo.dto.auth.RegisterResponse;
+import com.reactivelearning.demo.dto.auth.TicketLoginRequest;
 import com.reactivelearning.demo.dto.user.PartialUserDTO;
 import com.reactivelearning.demo.dto.user.UserDTO;
 import com.reactivelearning.demo.dto.user.UserRequest;
 import com.reactivelearning.demo.entities.*;
 import com.reactivelearning.demo.exception.entities.*;
-import com.reactivelearning.demo.repository.user.RolesRepository;
 import com.reactivelearning.demo.repository.user.UsersRolesRepository;
 import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.security.crypto.CryptoExecutor;
+import com.reactivelearning.demo.security.crypto.CryptoOperation;
 import com.reactivelearning.demo.security.jwt.JwtUtil;
+import com.reactivelearning.demo.security.ticket.PreAuthTicketStore;
 import com.reactivelearning.demo.security.util.PasswordHandler;
+import com.reactivelearning.demo.security.util.PasswordUpgradeTracker;
+import com.reactivelearning.demo.service.metrics.AuthFlow;
+import com.reactivelearning.demo.service.metrics.AuthMetrics;
+import com.reactivelearning.demo.service.metrics.AuthStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.reactive.TransactionalOperator;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -36,6 +46,9 @@ import java.util.UUID;
  * login()
  * - Public method to call from the Controller for the login flow
  * ---
+ * loginWithTicket()
+ * - Public method to call from the Controller for the second leg of an MFA login
+ * ---
  * register()
  * - Public method to call from the controller for the register flow
  * ---
@@ -56,34 +69,55 @@ import java.util.UUID;
  * - Creates a JWT in String format to be used in the returned Cookie
  */
 @Service
-public class UserService implements ReactiveUserDetailsService {
+public class UserService implements ReactiveUserDetailsService, ReactiveUserDetailsPasswordService {
 
     private final UsersRepository usersRepository;
-    private final RolesRepository rolesRepository;
+    private final RoleRegistry roleRegistry;
+    private final UsernameFilter usernameFilter;
     private final UsersRolesRepository usersRolesRepository;
     private final PasswordHandler passwordHandler;
     private final TransactionalOperator transactionalOperator;
     private final MfaService mfaService;
     private final JwtUtil jwtUtil;
+    private final CryptoExecutor cryptoExecutor;
+    private final PasswordUpgradeTracker passwordUpgradeTracker;
+    private final PreAuthTicketStore preAuthTicketStore;
+    private final AuthMetrics authMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AuditLog auditLog;
 
     private static final Logger logger = LoggerFactory.getLogger(ReactiveUserDetailsService.class);
 
     @Autowired
     public UserService(
             UsersRepository usersRepository,
-            RolesRepository rolesRepository,
+            RoleRegistry roleRegistry,
+            UsernameFilter usernameFilter,
             UsersRolesRepository usersRolesRepository,
             PasswordHandler passwordHandler,
             TransactionalOperator transactionalOperator,
             MfaService mfaService,
-            JwtUtil jwtUtil) {
+            JwtUtil jwtUtil,
+            CryptoExecutor cryptoExecutor,
+            PasswordUpgradeTracker passwordUpgradeTracker,
+            PreAuthTicketStore preAuthTicketStore,
+            AuthMetrics authMetrics,
+            ApplicationEventPublisher eventPublisher,
+            AuditLog auditLog) {
         this.usersRepository = usersRepository;
-        this.rolesRepository = rolesRepository;
+        this.roleRegistry = roleRegistry;
+        this.usernameFilter = usernameFilter;
         this.usersRolesRepository = usersRolesRepository;
         this.passwordHandler = passwordHandler;
         this.transactionalOperator = transactionalOperator;
         this.mfaService = mfaService;
         this.jwtUtil = jwtUtil;
+        this.cryptoExecutor = cryptoExecutor;
+        this.passwordUpgradeTracker = passwordUpgradeTracker;
+        this.preAuthTicketStore = preAuthTicketStore;
+        this.authMetrics = authMetrics;
+        this.eventPublisher = eventPublisher;
+        this.auditLog = auditLog;
     }
 
     // Controller methods
@@ -93,69 +127,73 @@ public class UserService implements ReactiveUserDetailsService {
      * - The service layer implementation of a login process
      * - Part of the process is already completed for us via Spring Security with
      * ReactiveAuthenticationManager.
+     * - If the user has MFA enabled but sent no TOTP code, they are issued a pre-auth ticket to redeem with the
+     * code at loginWithTicket, so the second leg skips the password check and the database.
+     * - Every expected outcome, including a missing or wrong code, is a LoginResponse rather than an error.
+     * - Timed as the "login" flow. The password check is timed by the authentication manager.
+     * - A completed login or a wrong code is recorded in the AuditLog. A wrong password is recorded by the
+     * authentication manager.
      * @param loginRequest Object of LoginRequest, holds the login data
      * @return LoginResponse : The result of logging in
      */
     public Mono<LoginResponse> login(LoginRequest loginRequest) {
-        return ReactiveSecurityContextHolder.getContext()
+        return authMetrics.timeLogin(AuthFlow.LOGIN, ReactiveSecurityContextHolder.getContext()
                 .map(context -> (User) context.getAuthentication().getPrincipal())
-                .flatMap(secureUser ->
-                        getMfa(secureUser)
-                                .map(mfa -> {
-                                    secureUser.setMfa(mfa);
-                                    return secureUser;
-                                })
-                                .flatMap(updatedUser ->
-                                        Mono.fromSupplier(() ->
-                                                        validateTOTP(
-                                                                updatedUser,
-                                                                loginRequest.getTotp()))
-                                        .then(generateJwt(updatedUser)
-                                                .flatMap(jwt ->
-                                                        Mono.fromSupplier(() ->
-                                                                LoginResponse.of(
-                                                                        true,
-                                                                        false,
-                                                                        false,
-                                                                        jwt)))))
-                                .onErrorResume(TOTPNotProvidedException.class, ex ->
-                                        Mono.fromSupplier(() ->
-                                            secureUser.getMfa().isEnabled() ?
-                                                    LoginResponse.of(
-                                                        false,
-                                                        true,
-                                                        false,
-                                                        "")
-                                                    : // Ternary
-                                                    LoginResponse.of(
-                                                            true,
-                                                            false,
-                                                            false,
-                                                            ""
-                                                    )))
-                                .onErrorResume(TOTPInvalidException.class, ex ->
-                                        Mono.fromSupplier(() ->
-                                                LoginResponse.of(
-                                                        false,
-                                                        false,
-                                                        true,
-                                                        ""))))
-                .doOnNext(loginResponse -> logger.info("Login was successful: {}", loginResponse.success()));
+                .flatMap(secureUser -> getMfa(secureUser)
+                        .flatMap(mfa -> {
+                            secureUser.setMfa(mfa);
+                            return secondFactor(secureUser, loginRequest);
+                        })
+                        .doOnNext(loginResponse -> audit(secureUser.getUsername(), loginResponse)))
+                .doOnNext(loginResponse -> logger.info("Login was successful: {}",
+                        loginResponse instanceof LoginResponse.Authenticated)));
+    }
+
+    /**
+     * Login with ticket
+     * - The second leg of an MFA login. The ticket stands in for the password step, and carries the user with
+     * their decrypted MFA data, so this costs one HMAC and one TOTP check.
+     * - A ticket works once, whether or not the code is right. A request without a well-formed code is turned
+     * away before the ticket is redeemed.
+     * - Audited as login is. The user of a ticket that was never redeemed is unknown, and recorded as such.
+     * - Timed as the "login.totp" flow.
+     * @param ticketLoginRequest Object of TicketLoginRequest, holds the ticket and the TOTP code
+     * @return LoginResponse : The result of logging in
+     */
+    public Mono<LoginResponse> loginWithTicket(TicketLoginRequest ticketLoginRequest) {
+        return authMetrics.timeLogin(AuthFlow.LOGIN_TOTP, Mono.defer(() -> {
+                    int code = ticketLoginRequest.totpCode();
+                    User user = code == LoginRequest.INVALID_TOTP
+                            ? null
+                            : preAuthTicketStore.redeem(ticketLoginRequest.getTicket());
+                    if (user == null) {
+                        audit(null, LoginResponse.TOTP_INVALID);
+                        return Mono.just(LoginResponse.TOTP_INVALID);
+                    }
+                    return checkTotp(user, code)
+                            .doOnNext(loginResponse -> audit(user.getUsername(), loginResponse));
+                })
+                .doOnNext(loginResponse -> logger.info("Ticket login was successful: {}",
+                        loginResponse instanceof LoginResponse.Authenticated)));
     }
 
     /**
      * Register
      * - The service layer implementation of the register process.
      * - Stays lean by offloading creation to a CRUD operation, passing necessary parameters.
+     * - Timed as the "register" flow.
      * @param registerRequest Object of RegisterRequest, holds the register data
      * @return RegisterResponse : The result of trying to register under these credentials
      */
     public Mono<RegisterResponse> register(RegisterRequest registerRequest) {
-        return Mono.defer(() ->
+        return authMetrics.timeFlow(AuthFlow.REGISTER, Mono.defer(() ->
                 createUser(UserRequest.fromRegisterRequest(registerRequest, RoleType.USER))
                         .flatMap((User savedUser) -> generateURI(savedUser)
                                 .flatMap(mfaUri -> Mono.fromSupplier(() -> RegisterResponse.of(savedUser, mfaUri))))
-                        .doOnNext(sub -> logger.info("Successfully registered user {}", registerRequest.getUsername())));
+                        .doOnNext(sub -> {
+                            auditLog.record(AuditType.USER_REGISTERED, registerRequest.getUsername());
+                            logger.info("Successfully registered user {}", registerRequest.getUsername());
+                        })));
     }
 
     // CRUD operations
@@ -163,18 +201,20 @@ public class UserService implements ReactiveUserDetailsService {
     /**
      * Create User - CRUD Operation
      * - The dedicated method to creating a user and their required dependencies
+     * - The username is added to the UsernameFilter after the transaction commits. Added before, a rebuild
+     * scanning the table in between would not see the row, and would swap in a filter without the name.
      * @param userRequest Object of UserRequest, holds data for the potential user
      * @return User : The created user
      */
     public Mono<User> createUser(UserRequest userRequest) {
         return getRole(userRequest.getRole())
                 .flatMap(foundRole ->
-                        ensureUserDoesNotExist(userRequest.getUsername())
+                        authMetrics.timeStage(AuthStage.USERNAME_CHECK, ensureUserDoesNotExist(userRequest.getUsername()))
                                 .then(Mono.from(
                                         transactionalOperator.transactional( // ATOMIC
                                                 saveUserFromRequest(userRequest)
                                                         .flatMap(savedUser -> saveUserRole(savedUser, foundRole)
-                                                                .flatMap(__ -> saveMfa(savedUser))
+                                                                .flatMap(__ -> authMetrics.timeStage(AuthStage.MFA_CREATE, saveMfa(savedUser)))
                                                                 .map(createdMfa -> {
                                                                     savedUser.setMfa(createdMfa);
                                                                     return savedUser;
@@ -183,6 +223,7 @@ public class UserService implements ReactiveUserDetailsService {
                                     savedUser.setRoles(List.of(foundRole));
                                     return savedUser;
                                 }))
+                .doOnNext(savedUser -> usernameFilter.add(savedUser.getUsername()))
                 .doOnError(error -> logger.error("Error when creating user {}", userRequest.getUsername())))));
 
     }
@@ -192,14 +233,12 @@ public class UserService implements ReactiveUserDetailsService {
     /**
      * Validate TOTP
      * - Checks if the provided TOTP code is valid against the User's MFA data
-     * @param user User : The user trying to log in
+     * @param user User : The user trying to log in, holding their decrypted MFA data
      * @param code int : The code provided on login
-     * @return Void : If it passes, it won't emit anything. If it doesn't, it will throw an error for the
-     * controller to pick up and emit.
+     * @return Boolean : Whether the code is valid
      */
-    public Mono<Void> validateTOTP(User user, int code) {
-        return Mono.fromCallable(() -> mfaService.validate(user.getMfa(), code))
-                .flatMap(valid -> valid ? Mono.empty() : Mono.error(new TOTPInvalidException("Invalid TOTP")));
+    public Mono<Boolean> validateTOTP(User user, int code) {
+        return authMetrics.timeStage(AuthStage.TOTP_VALIDATE, mfaService.validate(user.getMfa(), code));
     }
 
     /**
@@ -223,19 +262,26 @@ public class UserService implements ReactiveUserDetailsService {
      * @return String : The user's JWT
      */
     public Mono<String> generateJwt(User user) {
-        return Mono.fromSupplier(() -> jwtUtil.generateToken(user));
+        return authMetrics.timeStage(AuthStage.JWT_SIGN, Mono.fromSupplier(() -> jwtUtil.generateToken(user)));
     }
 
     // Getters
 
+    /**
+     * Get MFA
+     * - Uses the MFA row loaded with the user's auth record when there is one, so login does not query for it
+     * again. Otherwise it is read from the database.
+     * @param user User : The user
+     * @return Mfa : The user's MFA data, decrypted
+     */
     public Mono<Mfa> getMfa(User user) {
-        return mfaService.getMfa(user);
+        return authMetrics.timeStage(AuthStage.MFA_DECRYPT, user.getMfa() != null
+                ? mfaService.decryptMfa(user.getMfa())
+                : mfaService.getMfa(user));
     }
 
     public Mono<Role> getRole(RoleType role) {
-        return rolesRepository.findByRole(role.name())
-                .switchIfEmpty(Mono.error(new RolesNotFoundException(
-                        "The server experienced an issue.")));
+        return roleRegistry.find(role);
     }
 
     public Mono<User> getUser(String username) {
@@ -257,17 +303,29 @@ public class UserService implements ReactiveUserDetailsService {
     public Mono<UserRoles> saveUserRole(User user, Role role) {
         return Mono.defer(() ->
                 usersRolesRepository.save(UserRoles.of(user.getId(), role.getId())))
-                .switchIfEmpty(Mono.error(new Exception("Could not save user and role IDs.")));
+                .switchIfEmpty(Mono.error(new Exception("Could not save user and role IDs.")))
+                .doOnNext(__ -> eventPublisher.publishEvent(new UserChangedEvent(user.getUsername())));
     }
 
     public Mono<User> saveUserFromRequest(UserRequest userRequest) {
-        return Mono.defer(() -> usersRepository.save(dtoToUser(userRequest))
+        return Mono.defer(() -> authMetrics.timeStage(AuthStage.PASSWORD_HASH, dtoToUser(userRequest))
+                .flatMap(user -> authMetrics.timeStage(AuthStage.USER_INSERT, usersRepository.save(user)))
                 .switchIfEmpty(Mono.error(new ExistsException("The user could not be saved."))));
     }
 
     // Exists
 
+    /**
+     * Ensure User Does Not Exist
+     * - A username the UsernameFilter has never seen is free without a query. The unique key on users.username
+     * still rejects a name taken since, or written around this service.
+     * @param username String : The username to check
+     * @throws ExistsException : If the username is taken
+     */
     public Mono<Void> ensureUserDoesNotExist(String username) {
+        if (!usernameFilter.mightContain(username)) {
+            return Mono.empty();
+        }
         return usersRepository.findByUsername(username)
                 .flatMap(exists -> Mono.error(new ExistsException("Username is taken.")))
                 .then(Mono.empty());
@@ -275,24 +333,19 @@ public class UserService implements ReactiveUserDetailsService {
 
     // Legacy methods (deprecated)
 
-    public Flux<Map<UUID, UserDTO>> getUsers() {
-        return usersRepository.findAll()
-                .map(user -> Map.of(
-                        user.getId(),
-                        UserDTO.of(user.getUsername(), user.getPassword(), user.getEmail())));
-    }
-
     public Mono<Map<UUID, UserDTO>> addUser(UserDTO user) {
-        return Mono.defer(() -> usersRepository.findByUsername(user.getUsername()))
+        return Mono.defer(() -> usernameFilter.mightContain(user.getUsername())
+                        ? usersRepository.findByUsername(user.getUsername())
+                        : Mono.<User>empty())
                 .flatMap(exists -> Mono.error(new ExistsException("Username exists.")))
-                .switchIfEmpty(Mono.defer(() -> usersRepository.save(dtoToUser(user)))
-                        .flatMap(savedUser -> rolesRepository.findByRole("USER")
-                                .switchIfEmpty(Mono.defer(() -> rolesRepository.save(Role.of("USER"))))
+                .switchIfEmpty(Mono.defer(() -> dtoToUser(user).flatMap(newUser -> usersRepository.save(newUser)))
+                        .flatMap(savedUser -> roleRegistry.find(RoleType.USER)
                                 .flatMap(savedRole -> usersRolesRepository.save(
                                         UserRoles.of(
                                                 savedUser.getId(),
                                                 savedRole.getId()))
-                                        .thenReturn(savedUser))))
+                                        .thenReturn(savedUser)))
+                        .doOnNext(savedUser -> usernameFilter.add(savedUser.getUsername())))
                 .map(targetUser -> {
                     User savedUser = (User)targetUser;
                     return Map.of(
@@ -308,14 +361,24 @@ public class UserService implements ReactiveUserDetailsService {
     public Mono<Void> deleteUser(UUID id) {
         return usersRepository.findById(id)
                 .switchIfEmpty(Mono.error(new NotFoundException("Not Found.")))
-                .flatMap(savedUser -> usersRepository.delete(savedUser));
+                .flatMap(savedUser -> usersRepository.delete(savedUser)
+                        .doOnSuccess(__ -> {
+                            auditLog.record(AuditType.USER_DELETED, savedUser.getUsername());
+                            eventPublisher.publishEvent(new UserChangedEvent(savedUser.getUsername()));
+                        }));
     }
 
     public Mono<UserDTO> updateUser(UUID id, PartialUserDTO user) {
         return usersRepository.findById(id)
                 .switchIfEmpty(Mono.error(new NotFoundException("Not Found")))
-                .map(existingUser -> existingUser.update(user.getUsername(), user.getPassword(), user.getEmail()))
-                .flatMap(existingUser -> usersRepository.save(existingUser))
+                .flatMap(existingUser -> {
+                    String previousUsername = existingUser.getUsername();
+                    return usersRepository.save(existingUser.update(user.getUsername(), user.getPassword(), user.getEmail()))
+                            .doOnNext(savedUser -> {
+                                usernameFilter.add(savedUser.getUsername());
+                                eventPublisher.publishEvent(new UserChangedEvent(previousUsername));
+                            });
+                })
                 .map(existingUser -> UserDTO.of(existingUser.getUsername(), existingUser.getPassword(), existingUser.getEmail()));
     }
 
@@ -324,6 +387,8 @@ public class UserService implements ReactiveUserDetailsService {
     /**
      * FindByUsername
      * - Used by ReactiveAuthenticationManager to pull users by their username
+     * - Loads the user, their roles and their MFA row in a single query, so the login step needs no further reads
+     * - A username the UsernameFilter has never seen is rejected without the query
      * @param username String : The username provided by the user in the Authorization header
      * @return User (Implements UserDetails) : An object of User that allows ReactiveAuthenticationManager to
      * authenticate
@@ -332,32 +397,110 @@ public class UserService implements ReactiveUserDetailsService {
      */
     @Override
     public Mono<UserDetails> findByUsername(String username) throws UsernameNotFoundException {
-        return usersRepository.findByUsername(username)
-                .switchIfEmpty(Mono.error(new UsernameNotFoundException("Username not found.")))
-                .flatMap(user -> Mono.defer(() -> rolesRepository.findByUserId(user.getId())
-                            .switchIfEmpty(Mono.error(new RolesNotFoundException(
-                                    "The server had a problem finding the user's configurations."
-                            )))
-                            .collectList()
-                            .map(roles -> {
-                                user.setRoles(roles);
-                                return user;
-                            })));
+        if (!usernameFilter.mightContain(username)) {
+            return Mono.error(new UsernameNotFoundException("Username not found."));
+        }
+        return authMetrics.timeStage(AuthStage.USER_LOOKUP, usersRepository.findAuthRecordByUsername(username)
+                .switchIfEmpty(Mono.error(new UsernameNotFoundException("Username not found."))))
+                .flatMap(user -> user.getRoles().isEmpty()
+                        ? Mono.error(new RolesNotFoundException(
+                                "The server had a problem finding the user's configurations."))
+                        : Mono.just(user));
+    }
+
+    /**
+     * UpdatePassword
+     * - Used by ReactiveAuthenticationManager after a successful login when the stored hash is on outdated
+     * parameters. The new hash has already been computed by the manager.
+     * - Nothing runs until the result is subscribed to. The database write then starts in the background, carrying
+     * the subscriber's context, so the login does not wait on it. It only applies if the stored hash is unchanged,
+     * so a concurrent password change is never overwritten. Once written, the user is dropped from the
+     * CachingUserDetailsService.
+     * @param userDetails UserDetails : The authenticated user, still holding the outdated hash
+     * @param newPassword String : The re-encoded password
+     * @return User (Implements UserDetails) : The user, holding the new hash
+     */
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails userDetails, String newPassword) {
+        return Mono.deferContextual(context -> {
+            User user = (User) userDetails;
+            String oldPassword = user.getPassword();
+            user.setPassword(newPassword);
+            return Mono.<UserDetails>just(user)
+                    .doOnSuccess(__ -> upgradePassword(user, oldPassword, newPassword)
+                            .contextWrite(context)
+                            .subscribe());
+        });
     }
 
     // Private methods
 
-    private User dtoToUser(UserDTO userDTO) {
+    /**
+     * Writes a re-encoded hash, if the stored one is still the outdated hash it replaces. Failures are logged, the
+     * login has already succeeded and the next one will try again.
+     */
+    private Mono<Integer> upgradePassword(User user, String oldPassword, String newPassword) {
+        return usersRepository.updatePassword(user.getId(), oldPassword, newPassword)
+                .doOnNext(updated -> {
+                    if (updated > 0) {
+                        eventPublisher.publishEvent(new UserChangedEvent(user.getUsername()));
+                        passwordUpgradeTracker.recordUpgrade();
+                        logger.info("Upgraded password hash for user {}", user.getId());
+                    }
+                })
+                .doOnError(error -> logger.error("Failed to upgrade password hash for user {}: {}",
+                        user.getId(), error.getMessage()))
+                .onErrorComplete();
+    }
+
+    /**
+     * The step after the password. Without a code, a user with MFA enabled is issued a pre-auth ticket.
+     */
+    private Mono<LoginResponse> secondFactor(User user, LoginRequest loginRequest) {
+        if (!loginRequest.hasTotp()) {
+            return Mono.just(user.getMfa().isEnabled()
+                    ? new LoginResponse.TotpRequired(preAuthTicketStore.issue(user))
+                    : LoginResponse.MFA_NOT_ENROLLED);
+        }
+        int code = loginRequest.totpCode();
+        return code == LoginRequest.INVALID_TOTP ? Mono.just(LoginResponse.TOTP_INVALID) : checkTotp(user, code);
+    }
+
+    private Mono<LoginResponse> checkTotp(User user, int code) {
+        return validateTOTP(user, code)
+                .flatMap(valid -> valid
+                        ? generateJwt(user).map(LoginResponse.Authenticated::new)
+                        : Mono.just(LoginResponse.TOTP_INVALID));
+    }
+
+    /**
+     * Records the outcomes of a login worth auditing: a completed login, or a wrong code
+     */
+    private void audit(String username, LoginResponse loginResponse) {
+        switch (loginResponse) {
+            case LoginResponse.Authenticated authenticated -> auditLog.record(AuditType.LOGIN_SUCCEEDED, username);
+            case LoginResponse.TotpInvalid invalid -> auditLog.record(AuditType.TOTP_FAILED, username);
+            case LoginResponse.TotpRequired required -> {}
+            case LoginResponse.MfaNotEnrolled notEnrolled -> {}
+        }
+    }
+
+    private Mono<User> dtoToUser(UserDTO userDTO) {
         return hashUserPassword(User.fromDTO(userDTO));
     }
 
-    private User dtoToUser(UserRequest userRequest) {
+    private Mono<User> dtoToUser(UserRequest userRequest) {
         return hashUserPassword(User.fromRequest(userRequest));
     }
 
-    private User hashUserPassword(User user) {
-        user.setPassword(passwordHandler.hash(user.getPassword()));
-        return user;
+    /**
+     * Hashes the user's password on the CryptoExecutor, never on the event loop.
+     */
+    private Mono<User> hashUserPassword(User user) {
+        return cryptoExecutor.submit(CryptoOperation.PASSWORD_HASH, () -> {
+            user.setPassword(passwordHandler.hash(user.getPassword()));
+            return user;
+        });
     }
 
 }
@@ -0,0 +1,248 @@
+package com.reactivelearning.demo.service;
+
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * UsernameFilter
+ * - A Bloom filter over every username, so lookups for names that do not exist (credential stuffing, registration
+ * probes) are answered without a query. A negative is definite, a positive still goes to the database.
+ * - Built by streaming the users table once the application is ready, and rebuilt every rebuild-interval. Until
+ * the first build completes, every name is reported as possibly present.
+ * - Names are added as users are created or renamed. Removed names cannot be cleared from a Bloom filter, so they
+ * stay possible until the next rebuild, which only costs a query.
+ * - Sized for headroom times the rows found, at least expectedInsertions, at the configured false-positive rate.
+ * Bits are set with atomic ORs, so adds and lookups need no lock. A rebuild fills a new filter while adds go to
+ * both, then swaps it in.
+ * - Lookups are counted as users.username-filter.lookups, tagged avoided (definite miss, no query) or queried.
+ * - Uses ConfigurationProperties, copying from app.users.username-filter
+ */
+@Component
+@ConfigurationProperties(prefix = "app.users.username-filter")
+public class UsernameFilter {
+
+    private boolean enabled = true;
+    private double falsePositiveRate = 0.01;
+    private long expectedInsertions = 100_000;
+    private double headroom = 2.0;
+
+    private final UsersRepository usersRepository;
+
+    private final Counter avoided;
+    private final Counter queried;
+
+    private volatile Bits current;
+    private volatile Bits building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    private final Logger logger = LoggerFactory.getLogger(UsernameFilter.class);
+
+    @Autowired
+    public UsernameFilter(UsersRepository usersRepository, MeterRegistry meterRegistry) {
+        this.usersRepository = usersRepository;
+        this.avoided = Counter.builder("users.username-filter.lookups")
+                .tag("result", "avoided")
+                .register(meterRegistry);
+        this.queried = Counter.builder("users.username-filter.lookups")
+                .tag("result", "queried")
+                .register(meterRegistry);
+        Gauge.builder("users.username-filter.insertions", this, filter -> {
+                    Bits bits = filter.current;
+                    return bits == null ? 0 : bits.insertions.get();
+                })
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        scheduleRebuild();
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.users.username-filter.rebuild-interval:PT1H}",
+            fixedDelayString = "${app.users.username-filter.rebuild-interval:PT1H}")
+    public void scheduleRebuild() {
+        if (enabled) {
+            rebuild().subscribe(
+                    count -> logger.info("Username filter built over {} username(s)", count),
+                    error -> logger.error("Username filter rebuild failed: {}", error.getMessage()));
+        }
+    }
+
+    /**
+     * Rebuild
+     * - Streams every username into a fresh filter and swaps it in. A rebuild already running is left to finish.
+     * @return Long : How many usernames were loaded, or empty if a rebuild was already running
+     */
+    public Mono<Long> rebuild() {
+        return Mono.defer(() -> {
+            if (!rebuilding.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            return usersRepository.count()
+                    .map(count -> new Bits(Math.max(expectedInsertions, (long) Math.ceil(count * headroom)), falsePositiveRate))
+                    .doOnNext(bits -> building = bits)
+                    .flatMap(bits -> usersRepository.findAllUsernames()
+                            .doOnNext(username -> bits.add(username))
+                            .count()
+                            .doOnNext(count -> {
+                                current = bits;
+                                for (String username; (username = pending.poll()) != null; ) {
+                                    bits.add(username);
+                                }
+                            }))
+                    .doFinally(signal -> {
+                        building = null;
+                        pending.clear();
+                        rebuilding.set(false);
+                    });
+        });
+    }
+
+    /**
+     * Might contain
+     * - Checks the filter before a lookup by username, counting the query avoided on a miss
+     * @param username String : The username about to be looked up
+     * @return boolean : false if the username definitely does not exist, true if it may
+     */
+    public boolean mightContain(String username) {
+        Bits bits = current;
+        if (bits == null || username == null) {
+            return true;
+        }
+        if (bits.mightContain(username)) {
+            queried.increment();
+            return true;
+        }
+        avoided.increment();
+        return false;
+    }
+
+    /**
+     * Add
+     * - Records a username that now exists, in the live filter and in any filter being rebuilt. Names added before
+     * the new filter is allocated are held, and added to it once it is swapped in.
+     * - The live filter is read again at the end: if a rebuild swapped it in meanwhile, the name may have missed
+     * both the filter being built and the held names, so it is added to the new filter directly.
+     * - Must only be called once the user is committed, or a rebuild may scan the table without it.
+     * @param username String : The created or renamed user's username
+     */
+    public void add(String username) {
+        Bits bits = current;
+        if (bits != null) {
+            bits.add(username);
+        }
+        if (rebuilding.get()) {
+            Bits next = building;
+            if (next != null) {
+                next.add(username);
+            } else {
+                pending.add(username);
+            }
+        }
+        Bits swapped = current;
+        if (swapped != bits && swapped != null) {
+            swapped.add(username);
+        }
+    }
+
+    /**
+     * The bit array of one filter, with k probes per name derived from a single 64-bit hash (double hashing).
+     */
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long size;
+        private final int probes;
+        private final AtomicLong insertions = new AtomicLong();
+
+        Bits(long capacity, double falsePositiveRate) {
+            double bits = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (long) Math.ceil(bits / 64)));
+            this.words = new AtomicLongArray(wordCount);
+            this.size = (long) wordCount * 64;
+            this.probes = Math.max(1, (int) Math.round((double) size / capacity * Math.log(2)));
+        }
+
+        void add(String username) {
+            long hash = hash(username);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < probes; i++) {
+                long bit = ((hash + i * step) & Long.MAX_VALUE) % size;
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                if ((words.get(word) & mask) == 0) {
+                    words.getAndAccumulate(word, mask, (previous, set) -> previous | set);
+                }
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(String username) {
+            long hash = hash(username);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < probes; i++) {
+                long bit = ((hash + i * step) & Long.MAX_VALUE) % size;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * FNV-1a over the chars, then a murmur3 finalizer to spread the bits
+         */
+        private static long hash(String username) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < username.length(); i++) {
+                hash ^= username.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+
+    }
+
+    // Getters / Setters
+
+    public boolean isEnabled() {return enabled;}
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+
+    public double getFalsePositiveRate() {return falsePositiveRate;}
+    public void setFalsePositiveRate(double falsePositiveRate) {this.falsePositiveRate = falsePositiveRate;}
+
+    public long getExpectedInsertions() {return expectedInsertions;}
+    public void setExpectedInsertions(long expectedInsertions) {this.expectedInsertions = expectedInsertions;}
+
+    public double getHeadroom() {return headroom;}
+    public void setHeadroom(double headroom) {this.headroom = headroom;}
+
+}
@@ -0,0 +1,22 @@
+package com.reactivelearning.demo.service.metrics;
+
+/**
+ * The authentication pipelines that are timed end to end. The tag is used for metrics.
+ */
+public enum AuthFlow {
+
+    LOGIN("login"),
+    LOGIN_TOTP("login.totp"),
+    REGISTER("register");
+
+    private final String tag;
+
+    AuthFlow(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.reactivelearning.demo.service.metrics;
+
+import com.reactivelearning.demo.dto.auth.LoginResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * AuthMetrics
+ * - Times the login and register pipelines, both end to end ("auth.flow") and stage by stage ("auth.stage"), so a
+ * latency spike can be traced to the stage that caused it.
+ * - Every timer is tagged with its outcome and publishes a percentile histogram.
+ * - Timers are registered on first use, so only the outcomes a stage actually produces are exported.
+ */
+@Component
+public class AuthMetrics {
+
+    private final Map<AuthFlow, Timers> flowTimers = new EnumMap<>(AuthFlow.class);
+    private final Map<AuthStage, Timers> stageTimers = new EnumMap<>(AuthStage.class);
+
+    @Autowired
+    public AuthMetrics(MeterRegistry meterRegistry) {
+        for (AuthFlow flow : AuthFlow.values()) {
+            flowTimers.put(flow, new Timers(meterRegistry, "auth.flow", "flow", flow.getTag()));
+        }
+        for (AuthStage stage : AuthStage.values()) {
+            stageTimers.put(stage, new Timers(meterRegistry, "auth.stage", "stage", stage.getTag()));
+        }
+    }
+
+    /**
+     * Time login
+     * - Times a login flow, tagged by the outcome of its LoginResponse
+     * @param flow AuthFlow : The login flow
+     * @param login Mono<LoginResponse> : The flow, not yet subscribed
+     * @return LoginResponse : The same result, recorded once it completes
+     */
+    public Mono<LoginResponse> timeLogin(AuthFlow flow, Mono<LoginResponse> login) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return login
+                    .doOnSuccess(response -> flowTimers.get(flow).record(
+                            response == null ? AuthOutcome.ERROR : AuthOutcome.of(response), start))
+                    .doOnError(error -> flowTimers.get(flow).record(AuthOutcome.of(error), start));
+        });
+    }
+
+    /**
+     * Time flow
+     * - Times a flow that either succeeds or fails
+     * @param flow AuthFlow : The flow
+     * @param mono Mono<T> : The flow, not yet subscribed
+     * @return T : The same result, recorded once it completes
+     */
+    public <T> Mono<T> timeFlow(AuthFlow flow, Mono<T> mono) {
+        return time(flowTimers.get(flow), mono);
+    }
+
+    /**
+     * Time stage
+     * - Times a single stage, from subscription until it completes or fails
+     * @param stage AuthStage : The stage
+     * @param mono Mono<T> : The stage, not yet subscribed
+     * @return T : The same result, recorded once it completes
+     */
+    public <T> Mono<T> timeStage(AuthStage stage, Mono<T> mono) {
+        return time(stageTimers.get(stage), mono);
+    }
+
+    /**
+     * Time password match
+     * - The password check runs inside Spring Security's authentication manager, so it is timed by wrapping the
+     * encoder it is given. A mismatch is recorded as an error.
+     * @param encoder PasswordEncoder : The encoder to time
+     * @return PasswordEncoder : An encoder that records each match as the PASSWORD_MATCH stage
+     */
+    public PasswordEncoder timePasswordMatch(PasswordEncoder encoder) {
+        return new TimedPasswordEncoder(encoder);
+    }
+
+    // Private methods
+
+    private <T> Mono<T> time(Timers timers, Mono<T> mono) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono
+                    .doOnSuccess(value -> timers.record(AuthOutcome.SUCCESS, start))
+                    .doOnError(error -> timers.record(AuthOutcome.of(error), start));
+        });
+    }
+
+    /**
+     * The timers of one flow or stage, one per outcome.
+     * - Registered on first use. Registering is idempotent, so a race only looks the same timer up twice.
+     */
+    private static class Timers {
+
+        private final MeterRegistry meterRegistry;
+        private final String name;
+        private final String tagKey;
+        private final String tagValue;
+        private final AtomicReferenceArray<Timer> byOutcome = new AtomicReferenceArray<>(AuthOutcome.values().length);
+
+        Timers(MeterRegistry meterRegistry, String name, String tagKey, String tagValue) {
+            this.meterRegistry = meterRegistry;
+            this.name = name;
+            this.tagKey = tagKey;
+            this.tagValue = tagValue;
+        }
+
+        void record(AuthOutcome outcome, long start) {
+            get(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer get(AuthOutcome outcome) {
+            Timer timer = byOutcome.get(outcome.ordinal());
+            if (timer == null) {
+                timer = Timer.builder(name)
+                        .tag(tagKey, tagValue)
+                        .tag("outcome", outcome.getTag())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(100_000))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(meterRegistry);
+                byOutcome.set(outcome.ordinal(), timer);
+            }
+            return timer;
+        }
+
+    }
+
+    /**
+     * Delegates to the real encoder, timing each match.
+     */
+    private class TimedPasswordEncoder implements PasswordEncoder {
+
+        private final PasswordEncoder delegate;
+
+        TimedPasswordEncoder(PasswordEncoder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return delegate.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            long start = System.nanoTime();
+            boolean matches = delegate.matches(rawPassword, encodedPassword);
+            stageTimers.get(AuthStage.PASSWORD_MATCH).record(matches ? AuthOutcome.SUCCESS : AuthOutcome.ERROR, start);
+            return matches;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return delegate.upgradeEncoding(encodedPassword);
+        }
+
+    }
+
+}
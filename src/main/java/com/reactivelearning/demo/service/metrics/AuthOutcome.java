@@ -0,0 +1,50 @@
+package com.reactivelearning.demo.service.metrics;
+
+import com.reactivelearning.demo.dto.auth.LoginResponse;
+
+/**
+ * How a timed flow or stage ended. The tag is used for metrics.
+ */
+public enum AuthOutcome {
+
+    SUCCESS("success"),
+    REQUIRES_2FA("requires2fa"),
+    INVALID_2FA("invalid2fa"),
+    ERROR("error");
+
+    private final String tag;
+
+    AuthOutcome(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Of
+     * - Classifies a login result
+     * @param loginResponse LoginResponse : The result of a login
+     * @return AuthOutcome : The matching outcome
+     */
+    public static AuthOutcome of(LoginResponse loginResponse) {
+        return switch (loginResponse) {
+            case LoginResponse.Authenticated authenticated -> SUCCESS;
+            case LoginResponse.MfaNotEnrolled notEnrolled -> SUCCESS;
+            case LoginResponse.TotpRequired required -> REQUIRES_2FA;
+            case LoginResponse.TotpInvalid invalid -> INVALID_2FA;
+        };
+    }
+
+    /**
+     * Of
+     * - Classifies the error a flow or stage ended with
+     * @param error Throwable : The error
+     * @return AuthOutcome : The matching outcome
+     */
+    public static AuthOutcome of(Throwable error) {
+        return ERROR;
+    }
+
+}
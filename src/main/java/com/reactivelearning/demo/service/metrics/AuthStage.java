@@ -0,0 +1,33 @@
+package com.reactivelearning.demo.service.metrics;
+
+/**
+ * Every stage of the login and register pipelines that is timed on its own. The tag is used for metrics.
+ * - The MFA row is fetched with the auth record on login, so its query is part of USER_LOOKUP.
+ * - Roles come from the RoleRegistry without a query, so looking one up is not a stage.
+ */
+public enum AuthStage {
+
+    // Login
+    USER_LOOKUP("user.lookup"),
+    PASSWORD_MATCH("password.match"),
+    MFA_DECRYPT("mfa.decrypt"),
+    TOTP_VALIDATE("totp.validate"),
+    JWT_SIGN("jwt.sign"),
+
+    // Register
+    USERNAME_CHECK("username.check"),
+    PASSWORD_HASH("password.hash"),
+    USER_INSERT("user.insert"),
+    MFA_CREATE("mfa.create");
+
+    private final String tag;
+
+    AuthStage(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+}
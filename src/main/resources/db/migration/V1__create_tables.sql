@@ -2,7 +2,7 @@ CREATE TABLE IF NOT EXISTS users (
     id UUID DEFAULT RANDOM_UUID(),
     username VARCHAR(100),
     email VARCHAR(100),
-    password VARCHAR(100),
+    password VARCHAR(255),
     mfa_code VARCHAR(100),
     PRIMARY KEY (id)
 );
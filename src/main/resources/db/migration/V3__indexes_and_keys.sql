@@ -0,0 +1,13 @@
+-- Every login looks users up by username. Usernames must also be unique, which ensureUserDoesNotExist only
+-- checked racily.
+ALTER TABLE users ALTER COLUMN username SET NOT NULL;
+ALTER TABLE users ADD CONSTRAINT uk_users_username UNIQUE (username);
+
+-- Role lookups by user, and the reverse. The unique pair also stops a role being granted twice.
+ALTER TABLE users_roles ADD CONSTRAINT uk_users_roles_user_role UNIQUE (users_id, roles_id);
+CREATE INDEX IF NOT EXISTS idx_users_roles_roles_id ON users_roles (roles_id);
+
+-- mfa had no primary key. Each user has at most one MFA row, looked up by users_id.
+ALTER TABLE mfa ALTER COLUMN id SET NOT NULL;
+ALTER TABLE mfa ADD CONSTRAINT pk_mfa PRIMARY KEY (id);
+ALTER TABLE mfa ADD CONSTRAINT uk_mfa_users_id UNIQUE (users_id);
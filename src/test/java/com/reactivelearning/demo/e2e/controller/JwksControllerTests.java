@@ -0,0 +1,65 @@
+package com.reactivelearning.demo.e2e.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-To-End tests for the JWK set, with the server in ES256 mode.
+ * - Uses its own in-memory database, as the other suites' contexts may still hold testdb open.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "jwt.signing.algorithm=es256",
+                "spring.r2dbc.url=r2dbc:h2:mem:///jwksdb;DB_CLOSE_ON_EXIT=TRUE;"
+        })
+@ActiveProfiles("test")
+public class JwksControllerTests {
+
+    private final String JWKS_URI = "/.well-known/jwks.json";
+
+    private final WebTestClient webTestClient;
+
+    @Autowired
+    public JwksControllerTests(WebTestClient webTestClient) {
+        this.webTestClient = webTestClient;
+    }
+
+    /**
+     * The JWK set should be public and cacheable, and a matching If-None-Match should get a 304
+     */
+    @Test
+    void shouldServeJwksWithEtag() {
+
+        String etag = webTestClient.get()
+                .uri(JWKS_URI)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .expectBody()
+                .jsonPath("$.keys[0].kty").isEqualTo("EC")
+                .jsonPath("$.keys[0].alg").isEqualTo("ES256")
+                .returnResult()
+                .getResponseHeaders()
+                .getETag();
+
+        assertNotNull(etag);
+
+        webTestClient.get()
+                .uri(JWKS_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+    }
+
+}
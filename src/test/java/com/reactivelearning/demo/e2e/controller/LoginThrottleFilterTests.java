@@ -0,0 +1,95 @@
+package com.reactivelearning.demo.e2e.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-To-End tests for login throttling.
+ * - Uses its own in-memory database, and an IP budget of two attempts so the third is throttled.
+ * - The test client connects from loopback, which is trusted as a proxy, so X-Forwarded-For stands in for the
+ * clients behind it.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.r2dbc.url=r2dbc:h2:mem:///throttledb;DB_CLOSE_ON_EXIT=TRUE;",
+                "app.security.login-throttle.ip.burst=2",
+                "app.security.login-throttle.ip.per-minute=1",
+                "app.security.filters.login-throttle.trusted-proxies=127.0.0.1,::1/128"
+        })
+@ActiveProfiles("test")
+public class LoginThrottleFilterTests {
+
+    private static final String LOGIN_URI = "/api/v1/auth/login";
+    private static final String BASIC_AUTH = "Basic bm9ib2R5OndoYXRldmVy"; // nobody:whatever
+    private static final String PROXIED_BASIC_AUTH = "Basic cHJveGllZDp3aGF0ZXZlcg=="; // proxied:whatever
+
+    private final WebTestClient webTestClient;
+
+    @Autowired
+    public LoginThrottleFilterTests(WebTestClient webTestClient) {
+        this.webTestClient = webTestClient;
+    }
+
+    /**
+     * Attempts over the IP's budget should be answered with a 429 before the security chain sees them
+     */
+    @Test
+    void shouldReturn429WhenOverBudget() {
+
+        for (int i = 0; i < 2; i++) {
+            webTestClient.post()
+                    .uri(LOGIN_URI)
+                    .header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                    .exchange()
+                    .expectStatus().isUnauthorized();
+        }
+
+        webTestClient.post()
+                .uri(LOGIN_URI)
+                .header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectHeader().exists(HttpHeaders.RETRY_AFTER)
+                .expectBody().jsonPath("$.response").isEqualTo("Too many login attempts, please try again later.");
+
+        webTestClient.post()
+                .uri("/api/v1/auth/register")
+                .bodyValue("{}")
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .exchange()
+                .expectStatus().value(status -> assertNotEquals(429, status));
+
+    }
+
+    /**
+     * Behind a trusted proxy, each forwarded client should have its own budget, and addresses the client put in
+     * X-Forwarded-For itself should not buy it a fresh one
+     */
+    @Test
+    void shouldThrottleEachClientBehindAProxy() {
+
+        for (int i = 0; i < 2; i++) {
+            login("203.0.113.7").expectStatus().isUnauthorized();
+        }
+
+        login("198.51.100.1, 203.0.113.7").expectStatus().isEqualTo(429);
+        login("203.0.113.8").expectStatus().isUnauthorized();
+
+    }
+
+    private WebTestClient.ResponseSpec login(String forwardedFor) {
+        return webTestClient.post()
+                .uri(LOGIN_URI)
+                .header(HttpHeaders.AUTHORIZATION, PROXIED_BASIC_AUTH)
+                .header("X-Forwarded-For", forwardedFor)
+                .exchange();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.reactivelearning.demo.e2e.controller;
+
+import com.reactivelearning.demo.dto.auth.RegisterRequest;
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.security.totp.TotpEngine;
+import com.reactivelearning.demo.service.MfaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-To-End tests for the two-leg MFA login.
+ * - Uses its own in-memory database, as the other suites' contexts may still hold testdb open.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///ticketdb;DB_CLOSE_ON_EXIT=TRUE;")
+@ActiveProfiles("test")
+public class TicketLoginTests {
+
+    private final String LOGIN_URI = "/api/v1/auth/login";
+    private final String TICKET_LOGIN_URI = "/api/v1/auth/login/totp";
+    private final String REGISTER_URI = "/api/v1/auth/register";
+
+    private final WebTestClient webTestClient;
+    private final TotpEngine totpEngine;
+    private final DatabaseClient databaseClient;
+    private final UsersRepository usersRepository;
+    private final MfaService mfaService;
+
+    @Autowired
+    public TicketLoginTests(
+            WebTestClient webTestClient,
+            TotpEngine totpEngine,
+            DatabaseClient databaseClient,
+            UsersRepository usersRepository,
+            MfaService mfaService) {
+        this.webTestClient = webTestClient;
+        this.totpEngine = totpEngine;
+        this.databaseClient = databaseClient;
+        this.usersRepository = usersRepository;
+        this.mfaService = mfaService;
+    }
+
+    /**
+     * With MFA enabled, login without a TOTP code should return a pre-auth ticket, which can be redeemed once
+     * with the code for the authentication cookie
+     */
+    @Test
+    void shouldLogInWithPreAuthTicketWhenMfaIsEnabled() {
+
+        RegisterRequest registerRequest = new RegisterRequest(
+                "ticketuser",
+                "testpassword",
+                "Test"
+        );
+        String encodedUser = "dGlja2V0dXNlcjp0ZXN0cGFzc3dvcmQ=";
+
+        webTestClient.post()
+                .uri(REGISTER_URI)
+                .bodyValue(registerRequest)
+                .exchange()
+                .expectStatus().isCreated();
+
+        databaseClient.sql("UPDATE mfa SET enabled = TRUE WHERE users_id = " +
+                        "(SELECT id FROM users WHERE username = :username)")
+                .bind("username", registerRequest.getUsername())
+                .fetch()
+                .rowsUpdated()
+                .block();
+
+        Mfa mfa = usersRepository.findByUsername(registerRequest.getUsername())
+                .flatMap(user -> mfaService.getMfa(user))
+                .block();
+
+        assertNotNull(mfa);
+
+        // First leg: password only
+        String ticket = webTestClient.post()
+                .uri(LOGIN_URI)
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + encodedUser)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{}") // No TOTP code
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.ACCEPTED)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(ticket);
+
+        // Second leg: ticket and TOTP code, without Basic auth
+        String ticketLoginRequest = String.format("{\"ticket\": \"%s\", \"totp\": \"%06d\"}",
+                ticket, totpEngine.generate(mfa, System.currentTimeMillis()));
+
+        webTestClient.post()
+                .uri(TICKET_LOGIN_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(ticketLoginRequest)
+                .exchange()
+                .expectStatus().isOk()
+                .expectCookie().httpOnly("reactive_authn_authz", true);
+
+        // The ticket is single-use
+        webTestClient.post()
+                .uri(TICKET_LOGIN_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(ticketLoginRequest)
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+    }
+
+}
@@ -15,6 +15,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseCookie;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
@@ -45,7 +46,7 @@ public class UserControllerTests {
     private final WebTestClient webTestClient;
     private final MfaService mfaService;
     private final UserService userService;
-    private final GoogleAuthenticator authenticator;
+    private final GoogleAuthenticator authenticator = new GoogleAuthenticator();
     private final JwtUtil jwtUtil;
     private final String secret;
 
@@ -54,13 +55,11 @@ public class UserControllerTests {
             WebTestClient webTestClient,
             MfaService mfaService,
             UserService userService,
-            GoogleAuthenticator authenticator,
             JwtUtil jwtUtil,
             @Value("${jwt.secret}") String secret) {
         this.webTestClient = webTestClient;
         this.mfaService = mfaService;
         this.userService = userService;
-        this.authenticator = authenticator;
         this.jwtUtil = jwtUtil;
         this.secret = secret;
     }
@@ -116,7 +115,9 @@ public class UserControllerTests {
                 .uri(REGISTER_URI)
                 .bodyValue(registerRequest)
                 .exchange()
-                .expectStatus().is4xxClientError();
+                .expectStatus().is4xxClientError()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_PLAIN)
+                .expectBody(String.class).isEqualTo("Username is taken.");
 
     }
 
@@ -165,7 +166,7 @@ public class UserControllerTests {
         assertNotNull(response);
 
         String secretKey = getSecretCode(response);
-        loginRequest = new LoginRequest(String.valueOf(authenticator.getTotpPassword(secretKey)));
+        loginRequest = new LoginRequest(String.format("%06d", authenticator.getTotpPassword(secretKey)));
 
         // Assertion
         webTestClient.post()
@@ -179,6 +180,43 @@ public class UserControllerTests {
 
     }
 
+    /**
+     * Test that a valid password with the wrong TOTP code leads to a 401, without a cookie
+     */
+    @Test
+    void shouldReturn401WhenLoggingInWithWrongTotp() {
+
+        logger.info("shouldReturn401WhenLoggingInWithWrongTotp: Starting");
+
+        RegisterRequest registerRequest = new RegisterRequest(
+                "wrongtotp",
+                "testpassword",
+                "email");
+        String encodedUser = "d3Jvbmd0b3RwOnRlc3RwYXNzd29yZA==";
+
+        String response = webTestClient.post()
+                .uri(REGISTER_URI)
+                .bodyValue(registerRequest)
+                .exchange()
+                .returnResult(String.class)
+                .getResponseBody()
+                .blockFirst();
+
+        assertNotNull(response);
+
+        int code = authenticator.getTotpPassword(getSecretCode(response));
+        LoginRequest loginRequest = new LoginRequest(String.format("%06d", (code + 1) % 1_000_000));
+
+        webTestClient.post()
+                .uri(LOGIN_URI)
+                .bodyValue(loginRequest)
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + encodedUser)
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE);
+
+    }
+
     /**
      * Test that trying to log in with an unknown user leads to a 4XX response
      */
@@ -275,7 +313,7 @@ public class UserControllerTests {
         assertNotNull(otpCode);
 
         String secretKey = getSecretCode(otpCode);
-        LoginRequest loginRequest = new LoginRequest(String.valueOf(authenticator.getTotpPassword(secretKey)));
+        LoginRequest loginRequest = new LoginRequest(String.format("%06d", authenticator.getTotpPassword(secretKey)));
 
         FluxExchangeResult<String> result = webTestClient.post()
                 .uri(LOGIN_URI)
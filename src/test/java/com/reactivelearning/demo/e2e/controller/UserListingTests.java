@@ -0,0 +1,217 @@
+package com.reactivelearning.demo.e2e.controller;
+
+import com.reactivelearning.demo.dto.auth.RegisterRequest;
+import com.reactivelearning.demo.dto.user.UserPage;
+import com.reactivelearning.demo.dto.user.UserSummary;
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.security.totp.TotpEngine;
+import com.reactivelearning.demo.service.MfaService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-To-End tests for the keyset-paginated and streamed user listing.
+ * - Uses its own in-memory database, so the listing holds only the users created here.
+ * - The maximum page size is lowered so a handful of users spans several pages.
+ * - The listing is behind both the cookie filter and Basic auth, so requests carry both.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.r2dbc.url=r2dbc:h2:mem:///listingdb;DB_CLOSE_ON_EXIT=TRUE;",
+                "app.users.listing.default-page-size=2",
+                "app.users.listing.max-page-size=3"
+        })
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class UserListingTests {
+
+    private static final String USERS_URI = "/api/v1/users";
+    private static final String BASIC_AUTH = "Basic bGlzdGluZ3VzZXI6dGVzdHBhc3N3b3Jk"; // listinguser:testpassword
+    private static final String COOKIE = "reactive_authn_authz";
+    private static final int USER_COUNT = 8;
+
+    private final WebTestClient webTestClient;
+    private final UsersRepository usersRepository;
+    private final MfaService mfaService;
+    private final TotpEngine totpEngine;
+
+    private String cookie;
+
+    @Autowired
+    public UserListingTests(
+            WebTestClient webTestClient,
+            UsersRepository usersRepository,
+            MfaService mfaService,
+            TotpEngine totpEngine) {
+        this.webTestClient = webTestClient;
+        this.usersRepository = usersRepository;
+        this.mfaService = mfaService;
+        this.totpEngine = totpEngine;
+    }
+
+    /**
+     * Registers the user the requests authenticate as, and inserts the rest straight into the table. Skipped when a
+     * rerun finds them already there.
+     */
+    @BeforeAll
+    void registerUsers() {
+
+        if (usersRepository.findByUsername("listinguser").block() == null) {
+
+            webTestClient.post()
+                    .uri("/api/v1/auth/register")
+                    .bodyValue(new RegisterRequest("listinguser", "testpassword", "Test"))
+                    .exchange()
+                    .expectStatus().isCreated();
+
+            Flux.range(1, USER_COUNT - 1)
+                    .concatMap(i -> usersRepository.save(new User("listed" + i, "N/A", "listed" + i + "@test")))
+                    .blockLast();
+
+        }
+
+        Mfa mfa = usersRepository.findByUsername("listinguser")
+                .flatMap(user -> mfaService.getMfa(user))
+                .block();
+
+        assertNotNull(mfa);
+
+        cookie = webTestClient.post()
+                .uri("/api/v1/auth/login")
+                .header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(String.format("{\"totp\": \"%06d\"}", totpEngine.generate(mfa, System.currentTimeMillis())))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Void.class)
+                .getResponseCookies()
+                .getFirst(COOKIE)
+                .getValue();
+
+    }
+
+    /**
+     * Following each page's cursor should visit every user once, in id order, ending on a null cursor
+     */
+    @Test
+    void shouldWalkEveryUserThroughTheCursor() {
+
+        List<UUID> seen = new ArrayList<>();
+        UUID after = null;
+        int pages = 0;
+
+        do {
+            UserPage page = getPage(after, null);
+            assertTrue(page.users().size() <= 2);
+            page.users().forEach(user -> seen.add(user.id()));
+            after = page.next();
+            pages++;
+        } while (after != null);
+
+        assertEquals(USER_COUNT, seen.size());
+        // H2 orders UUIDs as unsigned numbers, as their hex strings sort, unlike UUID.compareTo
+        assertEquals(seen.stream().sorted(Comparator.comparing(UUID::toString)).toList(), seen);
+        assertTrue(pages >= USER_COUNT / 2);
+
+    }
+
+    /**
+     * A page size above the maximum should be capped, and rows should not carry the password hash
+     */
+    @Test
+    void shouldCapThePageSize() {
+
+        String body = webTestClient.get()
+                .uri(uri -> uri.path(USERS_URI).queryParam("limit", 1000).build())
+                .header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                .cookie(COOKIE, cookie)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(body);
+        assertFalse(body.contains("password"));
+        assertEquals(3, getPage(null, 1000).users().size());
+
+    }
+
+    /**
+     * Streaming should send every user as a line of NDJSON, across as many pages as it takes
+     */
+    @Test
+    void shouldStreamEveryUserAsNdjson() {
+
+        List<UserSummary> streamed = webTestClient.get()
+                .uri(USERS_URI)
+                .header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                .cookie(COOKIE, cookie)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(UserSummary.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertNotNull(streamed);
+        assertEquals(USER_COUNT, streamed.size());
+        assertEquals(USER_COUNT, streamed.stream().map(UserSummary::id).distinct().count());
+
+        UUID first = streamed.getFirst().id();
+        List<UserSummary> rest = webTestClient.get()
+                .uri(uri -> uri.path(USERS_URI).queryParam("after", first).build())
+                .header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                .cookie(COOKIE, cookie)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .returnResult(UserSummary.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertNotNull(rest);
+        assertEquals(streamed.subList(1, USER_COUNT), rest);
+
+    }
+
+    private UserPage getPage(UUID after, Integer limit) {
+        UserPage page = webTestClient.get()
+                .uri(uri -> uri.path(USERS_URI)
+                        .queryParamIfPresent("after", Optional.ofNullable(after))
+                        .queryParamIfPresent("limit", Optional.ofNullable(limit))
+                        .build())
+                .header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                .cookie(COOKIE, cookie)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(UserPage.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(page);
+        return page;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.reactivelearning.demo.e2e.server;
+
+import com.reactivelearning.demo.config.server.NettyTransport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-To-End tests for the server transport set up by NettyTransport.
+ * - Uses its own in-memory database, as the other suites' contexts may still hold testdb open.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///transportdb;DB_CLOSE_ON_EXIT=TRUE;")
+@ActiveProfiles("test")
+public class NettyTransportTests {
+
+    private final String HEALTH_URI = "/manage/health";
+
+    @LocalServerPort
+    private int port;
+
+    private final NettyTransport nettyTransport;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public NettyTransportTests(NettyTransport nettyTransport, MeterRegistry meterRegistry) {
+        this.nettyTransport = nettyTransport;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * HTTP/2 over plain TCP and HTTP/1.1 should both be served on the one port
+     */
+    @Test
+    void shouldServeHttp2CleartextAndHttp11() {
+
+        assertEquals("HTTP/2.0", version(HttpProtocol.H2C));
+        assertEquals("HTTP/1.1", version(HttpProtocol.HTTP11));
+
+    }
+
+    /**
+     * The server should run on native epoll wherever the host supports it, and publish each worker loop's queue
+     */
+    @Test
+    void shouldRunOnTheNativeTransportAndPublishLoopQueues() {
+
+        assertEquals(LoopResources.hasNativeSupport(), nettyTransport.isNative());
+        assertEquals(2, meterRegistry.find("netty.eventloop.pending-tasks").tag("group", "worker").gauges().size());
+
+    }
+
+    /**
+     * Connections should allocate from Netty's shared pooled allocator, not a second pool of direct arenas
+     */
+    @Test
+    void shouldAllocateFromTheSharedPooledAllocator() {
+
+        HttpServer server = nettyTransport.apply(HttpServer.create());
+
+        assertSame(PooledByteBufAllocator.DEFAULT, server.configuration().childOptions().get(ChannelOption.ALLOCATOR));
+
+    }
+
+    // Private methods
+
+    private String version(HttpProtocol protocol) {
+        return HttpClient.create()
+                .protocol(protocol)
+                .get()
+                .uri("http://localhost:" + port + HEALTH_URI)
+                .responseSingle((response, body) -> body.then(Mono.just(response.version().text())))
+                .block(Duration.ofSeconds(10));
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.reactivelearning.demo.integration.crypto;
+
+import com.google.crypto.tink.BinaryKeysetWriter;
+import com.google.crypto.tink.CleartextKeysetHandle;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.aead.PredefinedAeadParameters;
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.repository.user.MfaRepository;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.security.crypto.MfaCipher;
+import com.reactivelearning.demo.security.crypto.MfaKeysetStore;
+import com.reactivelearning.demo.security.crypto.MfaReencryptionJob;
+import com.reactivelearning.demo.service.MfaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for re-encrypting MFA secrets after a key rotation.
+ * - Uses its own in-memory database, as the other suites' contexts may still hold testdb open.
+ * - Keeps the keyset in a temporary mfa.secret-file, and rotates it there, as the job only runs against a stored
+ * keyset.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.r2dbc.url=r2dbc:h2:mem:///reencryptiondb;DB_CLOSE_ON_EXIT=TRUE;",
+                "app.security.mfa.reencryption.batch-size=2"
+        })
+@ActiveProfiles("test")
+public class MfaReencryptionJobTests {
+
+    private final UsersRepository usersRepository;
+    private final MfaRepository mfaRepository;
+    private final MfaService mfaService;
+    private final MfaCipher mfaCipher;
+    private final MfaReencryptionJob job;
+    private final MeterRegistry meterRegistry;
+    private final MfaKeysetStore keysetStore;
+
+    private static Path keysetFile;
+
+    @DynamicPropertySource
+    static void keysetProperties(DynamicPropertyRegistry registry) throws GeneralSecurityException, IOException {
+        AeadConfig.register();
+        keysetFile = Files.createTempFile("mfa-keyset", ".b64");
+        keysetFile.toFile().deleteOnExit();
+        writeKeyset(keysetFile, KeysetHandle.generateNew(PredefinedAeadParameters.AES256_GCM));
+        registry.add("mfa.secret-file", keysetFile::toString);
+    }
+
+    @Autowired
+    public MfaReencryptionJobTests(
+            UsersRepository usersRepository,
+            MfaRepository mfaRepository,
+            MfaService mfaService,
+            MfaCipher mfaCipher,
+            MfaReencryptionJob job,
+            MeterRegistry meterRegistry,
+            MfaKeysetStore keysetStore) {
+        this.usersRepository = usersRepository;
+        this.mfaRepository = mfaRepository;
+        this.mfaService = mfaService;
+        this.mfaCipher = mfaCipher;
+        this.job = job;
+        this.meterRegistry = meterRegistry;
+        this.keysetStore = keysetStore;
+    }
+
+    /**
+     * After a rotation, a pass across several pages should leave every secret on the new key, unchanged
+     */
+    @Test
+    void shouldMoveEverySecretToNewPrimaryKey() throws GeneralSecurityException, IOException {
+
+        List<User> users = Flux.range(0, 5)
+                .concatMap(i -> usersRepository.save(new User("Reencrypt" + UUID.randomUUID(), "Test", "Test")))
+                .concatMap(user -> mfaService.createMfa(user).thenReturn(user))
+                .collectList()
+                .block();
+
+        Map<UUID, String> before = Flux.fromIterable(users)
+                .concatMap(user -> mfaService.getMfa(user))
+                .collectMap(Mfa::getUsersId, Mfa::getMfaSecret)
+                .block();
+
+        mfaCipher.install(rotateStoredKeyset());
+        job.run().block();
+
+        List<Mfa> stored = mfaRepository.findAll().collectList().block();
+        assertTrue(stored.stream().allMatch(mfa -> mfaCipher.isCurrent(mfa.getMfaSecret())));
+
+        Map<UUID, String> after = Flux.fromIterable(users)
+                .concatMap(user -> mfaService.getMfa(user))
+                .collectMap(Mfa::getUsersId, Mfa::getMfaSecret)
+                .block();
+        assertEquals(before, after);
+
+    }
+
+    /**
+     * A keyset that is not the stored one should not have secrets moved onto it, as they would not decrypt after a
+     * restart
+     */
+    @Test
+    void shouldNotReencryptOntoAKeysetThatIsNotStored() throws GeneralSecurityException, IOException {
+
+        User user = usersRepository.save(new User("Unstored" + UUID.randomUUID(), "Test", "Test"))
+                .flatMap(saved -> mfaService.createMfa(saved).thenReturn(saved))
+                .block();
+        KeysetHandle unstored = KeysetHandle.newBuilder(keysetStore.load())
+                .addEntry(KeysetHandle.generateEntryFromParameters(PredefinedAeadParameters.AES256_GCM)
+                        .withRandomId()
+                        .makePrimary())
+                .build();
+
+        // Installed without being stored first, the rotation event should stop any pass and not start another
+        mfaCipher.install(unstored);
+        assertEquals(0, meterRegistry.get("mfa.reencryption.running").gauge().value());
+        assertFalse(mfaCipher.isCurrent(mfaRepository.findByUsersId(user.getId()).map(Mfa::getMfaSecret).block()));
+
+        // Back on the stored keyset, with the unstored key kept so nothing already under it is lost
+        writeKeyset(keysetFile, unstored);
+
+    }
+
+    /**
+     * A secret that cannot be decrypted should be counted and left as it is, without stopping the pass
+     */
+    @Test
+    void shouldSkipSecretsThatCannotBeDecrypted() throws GeneralSecurityException, IOException {
+
+        List<User> users = Flux.range(0, 3)
+                .concatMap(i -> usersRepository.save(new User("Malformed" + UUID.randomUUID(), "Test", "Test")))
+                .concatMap(user -> mfaService.createMfa(user).thenReturn(user))
+                .collectList()
+                .block();
+
+        Mfa broken = mfaRepository.findAll()
+                .filter(mfa -> mfa.getUsersId().equals(users.getFirst().getId()))
+                .blockFirst();
+        assertNotNull(broken);
+        assertEquals(1, mfaRepository.updateSecret(broken.getId(), broken.getMfaSecret(), "not*base64*at*all").block());
+
+        double skippedBefore = meterRegistry.get("mfa.reencryption.skipped").counter().count();
+        mfaCipher.install(rotateStoredKeyset());
+        job.run().block();
+
+        // The pass started by the rotation event may have skipped it as well
+        assertTrue(meterRegistry.get("mfa.reencryption.skipped").counter().count() >= skippedBefore + 1);
+        List<Mfa> stored = mfaRepository.findAll().collectList().block();
+        assertTrue(stored.stream()
+                .filter(mfa -> !mfa.getId().equals(broken.getId()))
+                .allMatch(mfa -> mfaCipher.isCurrent(mfa.getMfaSecret())));
+
+        mfaRepository.deleteById(broken.getId()).block();
+
+    }
+
+    // Helpers
+
+    private static void writeKeyset(Path file, KeysetHandle keysetHandle) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CleartextKeysetHandle.write(keysetHandle, BinaryKeysetWriter.withOutputStream(out));
+        Files.writeString(file, Base64.getEncoder().encodeToString(out.toByteArray()), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Rotates the stored keyset the way a key management system would: a new primary key, the old keys kept
+     */
+    private KeysetHandle rotateStoredKeyset() throws GeneralSecurityException, IOException {
+        KeysetHandle rotated = KeysetHandle.newBuilder(keysetStore.load())
+                .addEntry(KeysetHandle.generateEntryFromParameters(PredefinedAeadParameters.AES256_GCM)
+                        .withRandomId()
+                        .makePrimary())
+                .build();
+        writeKeyset(keysetFile, rotated);
+        return rotated;
+    }
+
+}
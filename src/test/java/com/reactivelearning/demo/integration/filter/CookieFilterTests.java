@@ -6,6 +6,9 @@ import com.reactivelearning.demo.entities.RoleType;
 import com.reactivelearning.demo.entities.User;
 import com.reactivelearning.demo.security.filters.CookieFilter;
 import com.reactivelearning.demo.security.jwt.JwtUtil;
+import com.reactivelearning.demo.security.jwt.VerifiedPrincipal;
+import com.reactivelearning.demo.security.jwt.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -26,6 +29,7 @@ import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -41,6 +45,7 @@ public class CookieFilterTests {
 
     private CookieFilter cookieFilter;
     private JwtUtil jwtUtil;
+    private SimpleMeterRegistry registry;
     private User user;
 
     @Mock
@@ -52,7 +57,8 @@ public class CookieFilterTests {
     public CookieFilterTests() {
         this.secret = "IAOWJ8D9AJWDUIDMIUAM3AIUDN";
         this.jwtUtil = new JwtUtil(secret);
-        this.cookieFilter = new CookieFilter(jwtUtil);
+        this.registry = new SimpleMeterRegistry();
+        this.cookieFilter = new CookieFilter(jwtUtil, new VerifiedTokenCache(jwtUtil, registry, 100));
     }
 
     @BeforeEach
@@ -99,4 +105,45 @@ public class CookieFilterTests {
 
     }
 
+
+    /**
+     * A repeated cookie should be served from the cache, and the verified principal stored on the exchange
+     */
+    @Test
+    void shouldVerifyRepeatedCookieOnce() {
+
+        logger.info("shouldVerifyRepeatedCookieOnce: Starting");
+
+        String jwt = jwtUtil.generateToken(user);
+        MultiValueMap<String, HttpCookie> multiValueMap = MultiValueMap
+                .fromSingleValue(
+                        Map.of(
+                                "reactive_authn_authz",
+                                new HttpCookie(
+                                        "reactive_authn_authz",
+                                        jwt)));
+        Map<String, Object> attributes = new HashMap<>();
+
+        ServerHttpRequest request = mock();
+        RequestPath path = mock();
+
+        when(chain.filter(exchange)).thenReturn(Mono.empty());
+        when(exchange.getRequest()).thenReturn(request);
+        when(exchange.getAttributes()).thenReturn(attributes);
+        when(request.getPath()).thenReturn(path);
+        when(path.value()).thenReturn("");
+        when(request.getCookies()).thenReturn(multiValueMap);
+
+        StepVerifier.create(cookieFilter.filter(exchange, chain)).verifyComplete();
+        StepVerifier.create(cookieFilter.filter(exchange, chain)).verifyComplete();
+
+        VerifiedPrincipal principal = (VerifiedPrincipal) attributes.get(CookieFilter.VERIFIED_PRINCIPAL_ATTRIBUTE);
+
+        assertNotNull(principal);
+        assertEquals(user.getId(), principal.userId());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "miss").functionCounter().count());
+
+    }
+
 }
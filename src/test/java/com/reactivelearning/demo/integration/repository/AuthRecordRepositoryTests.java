@@ -0,0 +1,82 @@
+package com.reactivelearning.demo.integration.repository;
+
+import com.reactivelearning.demo.dto.auth.RegisterRequest;
+import com.reactivelearning.demo.entities.RoleType;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the single-query auth record load.
+ * - Uses its own in-memory database, as the other suites' contexts may still hold testdb open.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///authrecorddb;DB_CLOSE_ON_EXIT=TRUE;")
+@ActiveProfiles("test")
+public class AuthRecordRepositoryTests {
+
+    private final UsersRepository usersRepository;
+    private final UserService userService;
+
+    @Autowired
+    public AuthRecordRepositoryTests(UsersRepository usersRepository, UserService userService) {
+        this.usersRepository = usersRepository;
+        this.userService = userService;
+    }
+
+    /**
+     * The auth record should carry the user, their role and their encrypted MFA row
+     */
+    @Test
+    void shouldLoadUserRolesAndMfaTogether() {
+
+        String username = "AuthRecord" + UUID.randomUUID();
+        userService.register(new RegisterRequest(username, "TestPassword1!", "record@test.com")).block();
+
+        User user = usersRepository.findAuthRecordByUsername(username).block();
+
+        assertNotNull(user);
+        assertEquals("record@test.com", user.getEmail());
+        assertEquals(1, user.getRoles().size());
+        assertEquals(RoleType.USER.name(), user.getRoles().getFirst().getRole());
+        assertNotNull(user.getRoles().getFirst().getId());
+        assertNotNull(user.getMfa());
+        assertEquals(user.getId(), user.getMfa().getUsersId());
+
+        // The loaded MFA row is still encrypted, and decrypts without another query
+        StepVerifier.create(userService.getMfa(user))
+                .assertNext(mfa -> {
+                    assertTrue(mfa.getMfaSecret().matches("[A-Z2-7]+"));
+                    assertNotEquals(mfa.getMfaSecret(), user.getMfa().getMfaSecret());
+                })
+                .verifyComplete();
+
+    }
+
+    /**
+     * An unknown username should be empty in the repository and an error for Spring Security
+     */
+    @Test
+    void shouldFailForUnknownUsername() {
+
+        StepVerifier.create(usersRepository.findAuthRecordByUsername("Missing"))
+                .verifyComplete();
+
+        StepVerifier.create(userService.findByUsername("Missing"))
+                .expectError(UsernameNotFoundException.class)
+                .verify();
+
+    }
+
+}
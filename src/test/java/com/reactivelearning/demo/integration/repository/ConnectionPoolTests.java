@@ -0,0 +1,108 @@
+package com.reactivelearning.demo.integration.repository;
+
+import com.reactivelearning.demo.config.database.MeteredConnectionPool;
+import com.reactivelearning.demo.exception.server.GlobalHandler;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the R2DBC connection pool.
+ * - Uses its own in-memory database and a pool of two, so it can be exhausted.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.r2dbc.url=r2dbc:h2:mem:///pooldb;DB_CLOSE_ON_EXIT=TRUE;",
+                "app.database.pool.initial-size=2",
+                "app.database.pool.min-idle=2",
+                "app.database.pool.max-size=2",
+                "app.database.pool.max-acquire-time=200ms"
+        })
+@ActiveProfiles("test")
+public class ConnectionPoolTests {
+
+    private final MeteredConnectionPool connectionPool;
+    private final UsersRepository usersRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ConnectionPoolTests(
+            MeteredConnectionPool connectionPool,
+            UsersRepository usersRepository,
+            MeterRegistry meterRegistry) {
+        this.connectionPool = connectionPool;
+        this.usersRepository = usersRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * The pool should be open before the application is ready, with its gauges and acquire timer registered
+     */
+    @Test
+    void shouldWarmUpPoolAndExportMetrics() {
+
+        PoolMetrics metrics = ((ConnectionPool) connectionPool.unwrap()).getMetrics().orElseThrow();
+
+        assertEquals(2, metrics.allocatedSize());
+
+        StepVerifier.create(usersRepository.findByUsername("nobody"))
+                .expectComplete()
+                .verify();
+
+        assertNotNull(meterRegistry.find("r2dbc.pool.acquired").gauge());
+        assertNotNull(meterRegistry.find("r2dbc.pool.pending").gauge());
+        assertTrue(meterRegistry.get("r2dbc.pool.acquire").tag("outcome", "success").timer().count() > 0);
+
+    }
+
+    /**
+     * With every connection taken, a query should fail once the acquire timeout passes, and be answered with a 503
+     */
+    @Test
+    void shouldFailFastWhenPoolIsExhausted() {
+
+        List<Connection> held = List.of(
+                Mono.from(connectionPool.create()).block(),
+                Mono.from(connectionPool.create()).block());
+
+        DataAccessResourceFailureException error;
+        try {
+            error = assertThrows(DataAccessResourceFailureException.class, () ->
+                    usersRepository.findByUsername("nobody").block());
+        } finally {
+            held.forEach(connection -> Mono.from(connection.close()).block());
+        }
+
+        assertInstanceOf(R2dbcTimeoutException.class, error.getCause());
+        assertEquals(1, meterRegistry.get("r2dbc.pool.acquire").tag("outcome", "timeout").timer().count());
+
+        ResponseEntity<DataBuffer> response = new GlobalHandler(meterRegistry)
+                .handleConnectionUnavailableException(error)
+                .block();
+        assertNotNull(response);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("The server is busy, please try again later.", response.getBody().toString(StandardCharsets.UTF_8));
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.reactivelearning.demo.integration.repository;
+
+import com.reactivelearning.demo.config.migration.SchemaMigrator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the versioned migrations and the query plans they exist for.
+ * - Uses its own in-memory database, as the other suites' contexts may still hold testdb open.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///migrationdb;DB_CLOSE_ON_EXIT=TRUE;")
+@ActiveProfiles("test")
+public class SchemaMigrationTests {
+
+    private final String ID = "'" + UUID.randomUUID() + "'";
+
+    private final SchemaMigrator schemaMigrator;
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public SchemaMigrationTests(SchemaMigrator schemaMigrator, DatabaseClient databaseClient) {
+        this.schemaMigrator = schemaMigrator;
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Every migration should be recorded once, and running again should apply nothing
+     */
+    @Test
+    void shouldRecordMigrationsOnce() {
+
+        StepVerifier.create(databaseClient.sql("SELECT version FROM schema_history ORDER BY version")
+                        .map(row -> row.get("version", Integer.class))
+                        .all()
+                        .collectList())
+                .assertNext(versions -> assertEquals(List.of(1, 2, 3), versions))
+                .verifyComplete();
+
+        StepVerifier.create(schemaMigrator.migrate())
+                .assertNext(applied -> assertTrue(applied.isEmpty()))
+                .verifyComplete();
+
+    }
+
+    /**
+     * UsersRepository.findByUsername
+     */
+    @Test
+    void shouldUseIndexForUserByUsername() {
+        assertIndexed("SELECT * FROM users WHERE username = 'Test'");
+    }
+
+    /**
+     * AuthRecordRepository.findAuthRecordByUsername
+     */
+    @Test
+    void shouldUseIndexesForAuthRecord() {
+        assertIndexed("""
+                SELECT u.id, u.username, u.email, u.password,
+                       r.id AS role_id, r.role,
+                       m.id AS mfa_id, m.mfa_secret, m.enabled AS mfa_enabled
+                FROM users u
+                LEFT JOIN users_roles ur ON ur.users_id = u.id
+                LEFT JOIN roles r ON r.id = ur.roles_id
+                LEFT JOIN mfa m ON m.users_id = u.id
+                WHERE u.username = 'Test'
+                """);
+    }
+
+    /**
+     * RolesRepository.findByUserId and RolesRepository.findByRole
+     */
+    @Test
+    void shouldUseIndexesForRoles() {
+        assertIndexed("SELECT r.id, r.role FROM roles r JOIN users_roles ur ON ur.roles_id = r.id WHERE ur.users_id = " + ID);
+        assertIndexed("SELECT * FROM roles WHERE role = 'USER'");
+    }
+
+    /**
+     * UsersRolesRepository.findByUsersIdAndRolesId
+     */
+    @Test
+    void shouldUseIndexForUserRole() {
+        assertIndexed("SELECT * FROM users_roles ur WHERE ur.users_id = " + ID + " AND ur.roles_id = " + ID);
+    }
+
+    /**
+     * MfaRepository.findByUsersId
+     */
+    @Test
+    void shouldUseIndexForMfaByUser() {
+        assertIndexed("SELECT * FROM mfa WHERE users_id = " + ID);
+    }
+
+    // Private methods
+
+    /**
+     * H2 marks a table read without an index as tableScan in its plan.
+     */
+    private void assertIndexed(String query) {
+        String plan = databaseClient.sql("EXPLAIN " + query)
+                .map(row -> row.get(0, String.class))
+                .one()
+                .block();
+        assertNotNull(plan);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+}
@@ -123,6 +123,28 @@ public class MfaServiceTests {
 
     }
 
+    /**
+     * The created Mfa should hold the plain secret for the enrollment URI, matching what is later decrypted
+     */
+    @Test
+    void shouldReturnPlainSecretWhenCreatingMfa() {
+
+        User user = new User("Test" + UUID.randomUUID(), "Test", "Test");
+
+        StepVerifier
+                .create(usersRepository.save(user)
+                        .then(mfaService.createMfa(user))
+                        .flatMap(created -> mfaService.getMfa(user)
+                                .map(found -> {
+                                    assertEquals(found.getMfaSecret(), created.getMfaSecret());
+                                    assertEquals(found.getId(), created.getId());
+                                    return created;
+                                })))
+                .expectNextCount(1)
+                .verifyComplete();
+
+    }
+
     /**
      * The Mfa object should fail when trying to retrieve invalid data
      */
@@ -0,0 +1,94 @@
+package com.reactivelearning.demo.integration.service;
+
+import com.reactivelearning.demo.dto.user.UserImportError;
+import com.reactivelearning.demo.dto.user.UserImportReport;
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.service.MfaService;
+import com.reactivelearning.demo.service.UserImporter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the bulk user import.
+ * - Uses its own in-memory database, and chunks of three so a small import spans several chunks.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.r2dbc.url=r2dbc:h2:mem:///importdb;DB_CLOSE_ON_EXIT=TRUE;",
+                "app.users.import.chunk-size=3"
+        })
+@ActiveProfiles("test")
+public class UserImporterTests {
+
+    private final UserImporter userImporter;
+    private final UsersRepository usersRepository;
+    private final MfaService mfaService;
+
+    @Autowired
+    public UserImporterTests(
+            UserImporter userImporter,
+            UsersRepository usersRepository,
+            MfaService mfaService) {
+        this.userImporter = userImporter;
+        this.usersRepository = usersRepository;
+        this.mfaService = mfaService;
+    }
+
+    /**
+     * Valid records should be created with their role and an encrypted MFA row, and each bad one reported by line
+     */
+    @Test
+    void shouldImportValidRecordsAndReportTheRest() {
+
+        StepVerifier.create(usersRepository.save(new User("takenuser", "N/A", "taken@test")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Flux<String> lines = Flux.just(
+                "{\"username\": \"import1\", \"password\": \"testpassword\", \"email\": \"import1@test\"}",
+                "{\"username\": \"import2\", \"password\": \"testpassword\", \"email\": \"import2@test\", \"role\": \"ADMIN\"}",
+                "not json",
+                "",
+                "{\"username\": \"import1\", \"password\": \"testpassword\", \"email\": \"again@test\"}",
+                "{\"username\": \"takenuser\", \"password\": \"testpassword\", \"email\": \"taken@test\"}",
+                "{\"username\": \"weakuser\", \"password\": \"weak\", \"email\": \"weak@test\"}",
+                "{\"username\": \"noemail\", \"password\": \"testpassword\"}",
+                "{\"username\": \"import3\", \"password\": \"testpassword\", \"email\": \"import3@test\"}");
+
+        UserImportReport report = userImporter.importUsers(lines).block();
+
+        assertNotNull(report);
+        assertEquals(3, report.imported());
+        assertEquals(5, report.failed());
+        assertEquals(List.of(3L, 5L, 6L, 7L, 8L), report.errors().stream().map(UserImportError::line).toList());
+        assertEquals("Malformed record.", report.errors().get(0).message());
+        assertEquals("Username is taken.", report.errors().get(2).message());
+        assertEquals("weakuser", report.errors().get(3).username());
+
+        User admin = usersRepository.findAuthRecordByUsername("import2").block();
+        assertNotNull(admin);
+        assertEquals("ADMIN", admin.getRoles().getFirst().getRole());
+        assertNotEquals("testpassword", admin.getPassword());
+
+        Mfa mfa = mfaService.getMfa(admin).block();
+        assertNotNull(mfa);
+        assertFalse(mfa.isEnabled());
+
+        StepVerifier.create(usersRepository.findByUsername("import3"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.reactivelearning.demo.integration.service;
 
+import com.reactivelearning.demo.audit.AuditLog;
 import com.reactivelearning.demo.dto.auth.RegisterRequest;
 import com.reactivelearning.demo.dto.user.UserRequest;
 import com.reactivelearning.demo.entities.Mfa;
@@ -11,15 +12,22 @@ import com.reactivelearning.demo.exception.entities.WeakPasswordException;
 import com.reactivelearning.demo.repository.user.RolesRepository;
 import com.reactivelearning.demo.repository.user.UsersRepository;
 import com.reactivelearning.demo.repository.user.UsersRolesRepository;
+import com.reactivelearning.demo.security.crypto.CryptoExecutor;
 import com.reactivelearning.demo.security.jwt.JwtUtil;
+import com.reactivelearning.demo.security.ticket.PreAuthTicketStore;
 import com.reactivelearning.demo.security.util.PasswordHandler;
+import com.reactivelearning.demo.security.util.PasswordUpgradeTracker;
 import com.reactivelearning.demo.service.MfaService;
+import com.reactivelearning.demo.service.RoleRegistry;
 import com.reactivelearning.demo.service.UserService;
+import com.reactivelearning.demo.service.UsernameFilter;
+import com.reactivelearning.demo.service.metrics.AuthMetrics;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.reactive.TransactionalOperator;
@@ -52,8 +60,16 @@ public class UserServiceTests {
             UsersRepository usersRepository,
             RolesRepository rolesRepository,
             UsersRolesRepository usersRolesRepository,
+            RoleRegistry roleRegistry,
+            UsernameFilter usernameFilter,
             TransactionalOperator transactionalOperator,
-            JwtUtil jwtUtil
+            JwtUtil jwtUtil,
+            CryptoExecutor cryptoExecutor,
+            PasswordUpgradeTracker passwordUpgradeTracker,
+            PreAuthTicketStore preAuthTicketStore,
+            AuthMetrics authMetrics,
+            ApplicationEventPublisher eventPublisher,
+            AuditLog auditLog
     ) {
         this.passwordHandler = passwordHandler;
         this.usersRepository = usersRepository;
@@ -63,12 +79,19 @@ public class UserServiceTests {
         this.jwtUtil = jwtUtil;
         this.userService = new UserService(
                 usersRepository,
-                rolesRepository,
+                roleRegistry,
+                usernameFilter,
                 usersRolesRepository,
                 passwordHandler,
                 transactionalOperator,
                 mfaService,
-                jwtUtil
+                jwtUtil,
+                cryptoExecutor,
+                passwordUpgradeTracker,
+                preAuthTicketStore,
+                authMetrics,
+                eventPublisher,
+                auditLog
         );
     }
 
@@ -187,4 +210,37 @@ public class UserServiceTests {
 
     }
 
+    /**
+     * Upgrading a hash should write nothing until the result is subscribed to, then store the new hash
+     */
+    @Test
+    void shouldUpgradePasswordOnlyOnceSubscribed() throws InterruptedException {
+
+        logger.info("shouldUpgradePasswordOnlyOnceSubscribed: Starting");
+
+        Mfa mfa = Mfa.of(UUID.randomUUID(), false, "");
+        when(mfaService.createMfa(any(User.class))).thenReturn(Mono.just(mfa));
+
+        User user = userService.createUser(new UserRequest("Upgrade", "UpgradePassword", "Upgrade", RoleType.USER))
+                .block();
+        assertNotNull(user);
+        String oldPassword = user.getPassword();
+        String newPassword = passwordHandler.hash("UpgradePassword");
+
+        Mono<?> upgrade = userService.updatePassword(user, newPassword);
+        Thread.sleep(200);
+        assertEquals(oldPassword, usersRepository.findByUsername("Upgrade").map(User::getPassword).block());
+
+        StepVerifier.create(upgrade)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!newPassword.equals(usersRepository.findByUsername("Upgrade").map(User::getPassword).block())) {
+            assertTrue(System.nanoTime() < deadline, "The new hash was never written");
+            Thread.sleep(20);
+        }
+
+    }
+
 }
@@ -0,0 +1,83 @@
+package com.reactivelearning.demo.unit.admission;
+
+import com.reactivelearning.demo.security.admission.AdaptiveLimit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveLimitTests {
+
+    private static final long MILLI = 1_000_000;
+
+    /**
+     * No more than limit requests should be admitted at once, and a released slot should be reusable
+     */
+    @Test
+    void shouldAdmitUpToTheLimit() {
+
+        AdaptiveLimit limit = new AdaptiveLimit(2, 1, 10, 0.5, 2.0);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.onIgnore();
+        assertTrue(limit.tryAcquire());
+
+    }
+
+    /**
+     * A fully used limit should grow while latency holds steady, and be cut once it climbs
+     */
+    @Test
+    void shouldGrowUntilLatencyClimbs() {
+
+        AdaptiveLimit limit = new AdaptiveLimit(4, 1, 100, 0.5, 2.0);
+
+        for (int i = 0; i < 20; i++) {
+            fill(limit);
+            release(limit, 10 * MILLI);
+        }
+        int grown = limit.getLimit();
+        assertTrue(grown > 4, "Limit: " + grown);
+
+        for (int i = 0; i < 10 && limit.getLimit() == grown; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.onSuccess(200 * MILLI);
+        }
+        assertEquals(grown / 2, limit.getLimit());
+
+    }
+
+    /**
+     * Server errors should cut the limit, but never below the minimum
+     */
+    @Test
+    void shouldBackOffOnFailureToTheMinimum() {
+
+        AdaptiveLimit limit = new AdaptiveLimit(8, 2, 10, 0.5, 2.0);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.onFailure();
+        }
+
+        assertEquals(2, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+
+    }
+
+    private static void fill(AdaptiveLimit limit) {
+        while (limit.tryAcquire()) {
+            // Take every slot
+        }
+    }
+
+    private static void release(AdaptiveLimit limit, long latency) {
+        while (limit.getInFlight() > 0) {
+            limit.onSuccess(latency);
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.reactivelearning.demo.unit.admission;
+
+import com.reactivelearning.demo.security.filters.AdmissionFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionFilterTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * A full bulkhead should shed with a 503, without holding up the other groups or paths outside every group
+     */
+    @Test
+    void shouldShedOnlyTheFullBulkhead() {
+
+        AdmissionFilter filter = new AdmissionFilter(meterRegistry);
+        filter.setGroups(Map.of(
+                "login", group("/api/v1/auth/login"),
+                "crud", group("/api/v1/users")));
+        filter.afterPropertiesSet();
+
+        Sinks.Empty<Void> pending = Sinks.empty();
+        WebFilterChain stuck = exchange -> pending.asMono();
+        WebFilterChain done = exchange -> Mono.empty();
+
+        filter.filter(exchange("/api/v1/auth/login"), stuck).subscribe();
+
+        MockServerWebExchange shed = exchange("/api/v1/auth/login");
+        filter.filter(shed, done).block();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shed.getResponse().getStatusCode());
+        assertEquals("1", shed.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        MockServerWebExchange crud = exchange("/api/v1/users");
+        filter.filter(crud, done).block();
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, crud.getResponse().getStatusCode());
+
+        MockServerWebExchange other = exchange("/api/v1/csrf");
+        filter.filter(other, done).block();
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, other.getResponse().getStatusCode());
+
+        pending.tryEmitEmpty();
+        MockServerWebExchange admitted = exchange("/api/v1/auth/login");
+        filter.filter(admitted, done).block();
+        assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, admitted.getResponse().getStatusCode());
+
+        assertEquals(1, meterRegistry.get("admission.rejected").tag("group", "login").counter().count());
+        assertEquals(1, meterRegistry.get("admission.limit").tag("group", "login").gauge().value());
+
+    }
+
+    private static AdmissionFilter.Group group(String path) {
+        AdmissionFilter.Group group = new AdmissionFilter.Group();
+        group.setPaths(List.of(path));
+        group.setInitialLimit(1);
+        group.setMaxLimit(1);
+        return group;
+    }
+
+    private static MockServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post(path));
+    }
+
+}
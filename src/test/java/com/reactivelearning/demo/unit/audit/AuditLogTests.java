@@ -0,0 +1,262 @@
+package com.reactivelearning.demo.unit.audit;
+
+import com.reactivelearning.demo.audit.AuditEvent;
+import com.reactivelearning.demo.audit.AuditLog;
+import com.reactivelearning.demo.audit.AuditRing;
+import com.reactivelearning.demo.audit.AuditSegment;
+import com.reactivelearning.demo.audit.AuditType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuditLogTests {
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AuditLog auditLog;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (auditLog != null) {
+            auditLog.destroy();
+        }
+    }
+
+    /**
+     * Events should be readable by time range as soon as the writer has stored them, before any sync
+     */
+    @Test
+    void shouldScanWrittenEventsByTimeRange() throws Exception {
+
+        auditLog = start(DataSize.ofMegabytes(1), 8);
+        Instant before = Instant.now();
+
+        auditLog.record(AuditType.USER_REGISTERED, "audited");
+        auditLog.record(AuditType.LOGIN_FAILED, "audited");
+        auditLog.record(AuditType.TOTP_FAILED, null);
+        auditLog.record(AuditType.LOGIN_SUCCEEDED, "audited");
+        awaitWritten(4);
+
+        List<AuditEvent> events = auditLog.scan(before, Instant.now()).collectList().block();
+
+        assertNotNull(events);
+        assertEquals(List.of(AuditType.USER_REGISTERED, AuditType.LOGIN_FAILED, AuditType.TOTP_FAILED,
+                AuditType.LOGIN_SUCCEEDED), events.stream().map(AuditEvent::type).toList());
+        assertEquals("audited", events.getFirst().username());
+        assertNull(events.get(2).username());
+        assertEquals(0, auditLog.scan(before.minusSeconds(60), before.minusSeconds(30)).count().block());
+
+    }
+
+    /**
+     * A full segment should roll over to the next, and only the newest maxSegments should be kept
+     */
+    @Test
+    void shouldRollSegmentsAndDeleteTheOldest() throws Exception {
+
+        auditLog = start(DataSize.ofBytes(256), 3);
+
+        for (int i = 0; i < 100; i++) {
+            auditLog.record(AuditType.LOGIN_SUCCEEDED, "user" + i);
+        }
+        awaitWritten(100);
+
+        assertEquals(3, segments().size());
+
+        List<String> usernames = auditLog.scan(Instant.EPOCH, Instant.now())
+                .map(AuditEvent::username)
+                .collectList()
+                .block();
+
+        assertNotNull(usernames);
+        assertFalse(usernames.isEmpty());
+        assertEquals("user99", usernames.getLast());
+        for (int i = 1; i < usernames.size(); i++) {
+            assertEquals(Integer.parseInt(usernames.get(i - 1).substring(4)) + 1,
+                    Integer.parseInt(usernames.get(i).substring(4)));
+        }
+
+    }
+
+    /**
+     * A closed segment's header should let a scan skip it when it falls outside the range
+     */
+    @Test
+    void shouldSkipClosedSegmentsOutsideTheRange() throws Exception {
+
+        Path path = directory.resolve("audit-0000000000000001.seg");
+        try (AuditSegment segment = AuditSegment.create(path, 4096)) {
+            assertTrue(segment.append(new AuditEvent(1_000, AuditType.USER_DELETED, "deleted")));
+            assertTrue(segment.append(new AuditEvent(2_000, AuditType.USER_DELETED, "deleted")));
+        }
+
+        assertEquals(2, AuditSegment.read(path, 0, 5_000, true).size());
+        assertEquals(1, AuditSegment.read(path, 1_500, 5_000, true).size());
+        assertTrue(AuditSegment.read(path, 3_000, 5_000, true).isEmpty());
+
+    }
+
+    /**
+     * A segment left unsynced by a crash should have its header rebuilt, so a trusted scan no longer skips it
+     */
+    @Test
+    void shouldRecoverTheHeaderOfAnUnsyncedSegment() throws Exception {
+
+        Path path = directory.resolve("audit-0000000000000001.seg");
+        AuditSegment crashed = AuditSegment.create(path, 4096);
+        assertTrue(crashed.append(new AuditEvent(1_000, AuditType.LOGIN_FAILED, "crashed")));
+        assertTrue(crashed.append(new AuditEvent(2_000, AuditType.LOGIN_FAILED, "crashed")));
+
+        // Never synced, as if the process died here
+        assertTrue(AuditSegment.read(path, 0, 5_000, true).isEmpty());
+
+        AuditSegment.recover(path);
+
+        assertEquals(2, AuditSegment.read(path, 0, 5_000, true).size());
+        assertEquals(1, AuditSegment.read(path, 1_500, 5_000, true).size());
+        crashed.close();
+
+    }
+
+    /**
+     * An idle writer should park until an event arrives, and still write it straight away
+     */
+    @Test
+    void shouldWakeTheIdleWriterOnRecord() throws Exception {
+
+        auditLog = start(DataSize.ofMegabytes(1), 8);
+        Thread writer = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("audit-writer"))
+                .findFirst()
+                .orElseThrow();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (writer.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "The idle writer never parked without a deadline");
+            Thread.sleep(5);
+        }
+
+        auditLog.record(AuditType.LOGIN_SUCCEEDED, "woken");
+        awaitWritten(1);
+
+    }
+
+    /**
+     * A full ring should turn events away rather than wait, and every event should be either written or dropped
+     */
+    @Test
+    void shouldDropAndCountEventsWhenTheRingIsFull() throws Exception {
+
+        AuditRing<Integer> ring = new AuditRing<>(3);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+
+        auditLog = new AuditLog(meterRegistry);
+        auditLog.setDirectory(directory);
+        auditLog.setCapacity(2);
+        auditLog.afterPropertiesSet();
+
+        for (int i = 0; i < 10_000; i++) {
+            auditLog.record(AuditType.LOGIN_FAILED, "flood");
+        }
+        auditLog.destroy();
+
+        assertEquals(10_000, count("written") + count("dropped"));
+        assertEquals(0, count("failed"));
+
+    }
+
+    /**
+     * Each producer's events should come out in the order it offered them, with none lost or repeated
+     */
+    @Test
+    void shouldKeepEachProducersOrderAcrossThreads() throws Exception {
+
+        int producers = 4;
+        int perProducer = 20_000;
+        AuditRing<long[]> ring = new AuditRing<>(64);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    while (!ring.offer(new long[] {producer, i})) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        long[] next = new long[producers];
+        int taken = 0;
+        while (taken < producers * perProducer) {
+            long[] element = ring.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[(int) element[0]]++, element[1]);
+            taken++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+
+    }
+
+    // Helpers
+
+    private AuditLog start(DataSize segmentSize, int maxSegments) throws Exception {
+        AuditLog log = new AuditLog(meterRegistry);
+        log.setDirectory(directory);
+        log.setSegmentSize(segmentSize);
+        log.setMaxSegments(maxSegments);
+        log.setSyncInterval(Duration.ofMillis(50));
+        log.afterPropertiesSet();
+        return log;
+    }
+
+    private void awaitWritten(int events) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (count("written") < events) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the audit writer");
+            Thread.sleep(5);
+        }
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("audit.events").tag("outcome", outcome).counter().count();
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).toList();
+        }
+    }
+
+}
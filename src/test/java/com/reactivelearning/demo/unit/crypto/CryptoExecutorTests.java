@@ -0,0 +1,124 @@
+package com.reactivelearning.demo.unit.crypto;
+
+import com.reactivelearning.demo.exception.entities.ServiceUnavailableException;
+import com.reactivelearning.demo.security.crypto.CryptoBackend;
+import com.reactivelearning.demo.security.crypto.CryptoExecutor;
+import com.reactivelearning.demo.security.crypto.CryptoOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CryptoExecutorTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private CryptoExecutor cryptoExecutor;
+
+    private CryptoExecutor start(CryptoBackend backend, int threads, int queueLimit) {
+        cryptoExecutor = new CryptoExecutor(registry);
+        cryptoExecutor.setBackend(backend);
+        cryptoExecutor.setThreads(threads);
+        cryptoExecutor.setQueueLimit(queueLimit);
+        cryptoExecutor.afterPropertiesSet();
+        return cryptoExecutor;
+    }
+
+    @AfterEach
+    void teardown() {
+        cryptoExecutor.destroy();
+    }
+
+    /**
+     * A submitted task should run off the calling thread and record its timings
+     */
+    @Test
+    void shouldRunTaskOnCryptoThread() {
+
+        start(CryptoBackend.PLATFORM, 1, 0);
+
+        StepVerifier.create(cryptoExecutor.submit(CryptoOperation.PASSWORD_HASH, () -> Thread.currentThread().getName()))
+                .assertNext(name -> assertTrue(name.startsWith("crypto-")))
+                .verifyComplete();
+
+        assertEquals(1, registry.get("crypto.execution").tag("operation", "password.hash").timer().count());
+        assertEquals(1, registry.get("crypto.queue.wait").tag("operation", "password.hash").timer().count());
+
+    }
+
+    /**
+     * Once threads + queueLimit tasks are outstanding, new tasks should fail fast with a 503
+     */
+    @Test
+    void shouldRejectWhenQueueIsFull() throws InterruptedException {
+
+        start(CryptoBackend.VIRTUAL, 1, 1);
+
+        CountDownLatch release = new CountDownLatch(1);
+        Mono<Boolean> blocked = cryptoExecutor.submit(CryptoOperation.PASSWORD_MATCH,
+                () -> release.await(5, TimeUnit.SECONDS));
+
+        blocked.subscribe();
+        blocked.subscribe();
+
+        StepVerifier.create(cryptoExecutor.submit(CryptoOperation.PASSWORD_MATCH, () -> true))
+                .expectError(ServiceUnavailableException.class)
+                .verify();
+
+        assertEquals(1.0, registry.get("crypto.rejected").tag("operation", "password.match").counter().count());
+
+        release.countDown();
+
+    }
+
+    /**
+     * The virtual backend should run no more than threads tasks at once, and count the rest as queued
+     */
+    @Test
+    void shouldLimitVirtualThreadsToThreads() throws InterruptedException {
+
+        start(CryptoBackend.VIRTUAL, 2, 8);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(6);
+        for (int i = 0; i < 6; i++) {
+            cryptoExecutor.submit(CryptoOperation.PASSWORD_HASH, () -> {
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(50);
+                        running.decrementAndGet();
+                        return true;
+                    })
+                    .subscribe(__ -> done.countDown());
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, peak.get());
+        assertTrue(registry.get("crypto.queue.wait").tag("operation", "password.hash").timer()
+                .max(TimeUnit.MILLISECONDS) >= 40);
+
+    }
+
+    /**
+     * Errors thrown by the task should reach the subscriber untouched
+     */
+    @Test
+    void shouldPropagateTaskErrors() {
+
+        start(CryptoBackend.PLATFORM, 1, 0);
+
+        StepVerifier.create(cryptoExecutor.submit(CryptoOperation.MFA_DECRYPT, () -> {
+                    throw new IllegalStateException("boom");
+                }))
+                .expectErrorMatches(error -> error instanceof IllegalStateException && error.getMessage().equals("boom"))
+                .verify();
+
+    }
+
+}
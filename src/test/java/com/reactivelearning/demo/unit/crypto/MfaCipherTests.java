@@ -0,0 +1,107 @@
+package com.reactivelearning.demo.unit.crypto;
+
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.aead.PredefinedAeadParameters;
+import com.reactivelearning.demo.exception.entities.InternalServerException;
+import com.reactivelearning.demo.security.crypto.MfaCipher;
+import com.reactivelearning.demo.security.crypto.MfaKeyRotatedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.security.GeneralSecurityException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class MfaCipherTests {
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final KeysetHandle keysetHandle;
+    private final MfaCipher mfaCipher;
+
+    public MfaCipherTests() throws GeneralSecurityException {
+        AeadConfig.register();
+        this.keysetHandle = KeysetHandle.generateNew(PredefinedAeadParameters.AES256_GCM);
+        this.mfaCipher = new MfaCipher(keysetHandle, eventPublisher);
+    }
+
+    /**
+     * Secrets should round trip, and be recognised as under the primary key
+     */
+    @Test
+    void shouldEncryptUnderPrimaryKey() {
+
+        String encrypted = mfaCipher.encrypt("JBSWY3DPEHPK3PXP");
+
+        assertEquals("JBSWY3DPEHPK3PXP", mfaCipher.decrypt(encrypted));
+        assertTrue(mfaCipher.isCurrent(encrypted));
+
+    }
+
+    /**
+     * A malformed secret should read as not current rather than throw, so the re-encryption job can move past it
+     */
+    @Test
+    void shouldTreatMalformedSecretsAsNotCurrent() {
+
+        assertFalse(mfaCipher.isCurrent("not*base64*at*all"));
+        assertFalse(mfaCipher.isCurrent("short"));
+        assertFalse(mfaCipher.isCurrent(null));
+
+    }
+
+    /**
+     * After installing a rotated keyset, old secrets should still decrypt but no longer count as current
+     */
+    @Test
+    void shouldKeepOldKeysAfterRotation() throws GeneralSecurityException {
+
+        int oldKey = mfaCipher.getPrimaryKeyId();
+        String old = mfaCipher.encrypt("JBSWY3DPEHPK3PXP");
+
+        KeysetHandle rotated = KeysetHandle.newBuilder(keysetHandle)
+                .addEntry(KeysetHandle.generateEntryFromParameters(PredefinedAeadParameters.AES256_GCM)
+                        .withRandomId()
+                        .makePrimary())
+                .build();
+        int newKey = mfaCipher.install(rotated);
+
+        assertNotEquals(oldKey, newKey);
+        assertEquals(2, mfaCipher.getKeyCount());
+        assertFalse(mfaCipher.isCurrent(old));
+        assertEquals("JBSWY3DPEHPK3PXP", mfaCipher.decrypt(old));
+        assertTrue(mfaCipher.isCurrent(mfaCipher.encrypt("JBSWY3DPEHPK3PXP")));
+        verify(eventPublisher).publishEvent(new MfaKeyRotatedEvent(newKey));
+
+    }
+
+    /**
+     * A keyset that drops a key in use should be refused, as secrets under that key would no longer decrypt
+     */
+    @Test
+    void shouldRejectKeysetsMissingKeysInUse() throws GeneralSecurityException {
+
+        int oldKey = mfaCipher.getPrimaryKeyId();
+
+        assertThrows(InternalServerException.class,
+                () -> mfaCipher.install(KeysetHandle.generateNew(PredefinedAeadParameters.AES256_GCM)));
+        assertEquals(oldKey, mfaCipher.getPrimaryKeyId());
+        verifyNoInteractions(eventPublisher);
+
+    }
+
+    /**
+     * Tampered ciphertext should fail like any other decryption error
+     */
+    @Test
+    void shouldRejectTamperedSecret() {
+
+        String encrypted = mfaCipher.encrypt("JBSWY3DPEHPK3PXP");
+        String tampered = encrypted.substring(0, 10) + (encrypted.charAt(10) == 'A' ? 'B' : 'A') + encrypted.substring(11);
+
+        assertThrows(InternalServerException.class, () -> mfaCipher.decrypt(tampered));
+
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.reactivelearning.demo.unit.entity;
 
+import com.reactivelearning.demo.entities.Role;
 import com.reactivelearning.demo.entities.User;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @ActiveProfiles("test")
@@ -44,4 +47,17 @@ public class UserTests {
 
     }
 
+    /**
+     * Role strings, as written into a JWT, should match the user's granted authorities
+     */
+    @Test
+    void testRolesAsStringsMatchAuthorities() {
+
+        User user = new User("Test", "Test", "Test", Role.of("USER"));
+
+        assertEquals(List.of("ROLE_USER"), user.getRolesAsStrings());
+        assertEquals("ROLE_USER", user.getAuthorities().iterator().next().getAuthority());
+
+    }
+
 }
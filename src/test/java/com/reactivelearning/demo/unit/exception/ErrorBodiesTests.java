@@ -0,0 +1,63 @@
+package com.reactivelearning.demo.unit.exception;
+
+import com.reactivelearning.demo.exception.entities.NotFoundException;
+import com.reactivelearning.demo.exception.entities.ServiceUnavailableException;
+import com.reactivelearning.demo.exception.server.ErrorBodies;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ErrorBodiesTests {
+
+    /**
+     * A message should be encoded once, and every response should read the whole body from its own DataBuffer
+     */
+    @Test
+    void shouldReuseTheEncodedBodyAcrossResponses() {
+
+        ByteBuffer body = ErrorBodies.json("Not Authenticated");
+
+        assertSame(body, ErrorBodies.json("Not Authenticated"));
+        assertTrue(body.isReadOnly());
+
+        for (int i = 0; i < 2; i++) {
+            DataBuffer buffer = ErrorBodies.wrap(DefaultDataBufferFactory.sharedInstance, body);
+            assertEquals("{\"response\": \"Not Authenticated\"}", buffer.toString(StandardCharsets.UTF_8));
+        }
+
+    }
+
+    /**
+     * Quotes and control characters in a message should not break the JSON body
+     */
+    @Test
+    void shouldEscapeTheMessageInJson() {
+
+        DataBuffer buffer = ErrorBodies.wrap(DefaultDataBufferFactory.sharedInstance,
+                ErrorBodies.json("Bad \"token\"\n\\"));
+
+        assertEquals("{\"response\": \"Bad \\\"token\\\"\\n\\\\\"}", buffer.toString(StandardCharsets.UTF_8));
+
+    }
+
+    /**
+     * Expected failures should carry no stack trace, so the shared 503 can be raised from any thread
+     */
+    @Test
+    void shouldRaiseExpectedFailuresWithoutAStackTrace() {
+
+        assertEquals(0, new NotFoundException("Not Found.").getStackTrace().length);
+
+        ServiceUnavailableException busy = ServiceUnavailableException.BUSY;
+        busy.addSuppressed(new IllegalStateException());
+        assertEquals(0, busy.getStackTrace().length);
+        assertEquals(0, busy.getSuppressed().length);
+
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.reactivelearning.demo.unit.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.reactivelearning.demo.security.jwt.JwtCodec;
+import com.reactivelearning.demo.security.jwt.VerifiedPrincipal;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtCodecTests {
+
+    private final String SECRET = "cCelTkojj7";
+    private final JwtCodec codec = JwtCodec.hmac(SECRET.getBytes(StandardCharsets.UTF_8));
+    private final Algorithm algorithm = Algorithm.HMAC512(SECRET);
+
+    private final UUID subject = UUID.randomUUID();
+    private final long now = System.currentTimeMillis() / 1000;
+
+    /**
+     * The codec should produce exactly the token auth0 produces for the same claims
+     */
+    @Test
+    void shouldMatchAuth0Output() {
+
+        String expected = JWT.create()
+                .withSubject(subject.toString())
+                .withClaim("authorities", List.of("ROLE_USER", "ROLE_\"ADMIN\""))
+                .withIssuedAt(Instant.ofEpochSecond(now))
+                .withExpiresAt(Instant.ofEpochSecond(now + 60))
+                .sign(algorithm);
+
+        assertEquals(expected, codec.sign(subject, List.of("ROLE_USER", "ROLE_\"ADMIN\""), now, now + 60));
+
+    }
+
+    /**
+     * Tokens signed by auth0 should verify, with all claims read back
+     */
+    @Test
+    void shouldVerifyAuth0Token() {
+
+        String jwt = JWT.create()
+                .withSubject(subject.toString())
+                .withClaim("authorities", List.of("ROLE_USER"))
+                .withExpiresAt(new Date((now + 60) * 1000))
+                .withClaim("extra", "ignored")
+                .sign(algorithm);
+
+        VerifiedPrincipal principal = codec.verify(jwt, now * 1000);
+
+        assertNotNull(principal);
+        assertEquals(subject, principal.userId());
+        assertEquals(List.of("ROLE_USER"), principal.authorities());
+        assertEquals(Instant.ofEpochSecond(now + 60), principal.expiresAt());
+
+    }
+
+    /**
+     * Expired, not-yet-valid, forged and malformed tokens should all return null
+     */
+    @Test
+    void shouldRejectInvalidTokens() {
+
+        String jwt = codec.sign(subject, List.of("ROLE_USER"), now, now + 60);
+
+        assertNull(codec.verify(jwt, (now + 60) * 1000));
+        assertNull(codec.verify(jwt, (now - 1) * 1000));
+        assertNull(JwtCodec.hmac("other".getBytes(StandardCharsets.UTF_8)).verify(jwt, now * 1000));
+        assertNull(codec.verify(jwt.substring(0, jwt.length() - 2), now * 1000));
+        assertNull(codec.verify("not.a.jwt", now * 1000));
+        assertNull(codec.verify(JWT.create().withExpiresAt(new Date((now + 60) * 1000)).sign(Algorithm.HMAC256(SECRET)), now * 1000));
+
+    }
+
+    /**
+     * Unknown header fields nested up to the codec's limit should be skipped. Past it, the token should be rejected
+     * rather than overflow the stack, however deep it goes.
+     */
+    @Test
+    void shouldRejectDeeplyNestedHeaders() throws Exception {
+
+        String jwt = codec.sign(subject, List.of("ROLE_USER"), now, now + 60);
+        String payload = jwt.substring(jwt.indexOf('.') + 1, jwt.lastIndexOf('.'));
+
+        assertNotNull(codec.verify(signWithHeader(nestedHeader(16), payload), now * 1000));
+        assertNull(codec.verify(signWithHeader(nestedHeader(17), payload), now * 1000));
+        assertNull(codec.verify(signWithHeader(nestedHeader(100_000), payload), now * 1000));
+
+    }
+
+    /**
+     * A \\u escape needs 4 hex digits before the closing quote. Anything shorter, signed or not hex should reject
+     * the token rather than read past the string.
+     */
+    @Test
+    void shouldRejectMalformedUnicodeEscapes() throws Exception {
+
+        String jwt = codec.sign(subject, List.of("ROLE_USER"), now, now + 60);
+        String payload = jwt.substring(jwt.indexOf('.') + 1, jwt.lastIndexOf('.'));
+
+        assertNotNull(codec.verify(signWithHeader("{\"alg\":\"HS\\u0035\\u00312\",\"typ\":\"JWT\"}", payload), now * 1000));
+        assertNull(codec.verify(signWithHeader("{\"alg\":\"HS51\\u+032\",\"typ\":\"JWT\"}", payload), now * 1000));
+        assertNull(codec.verify(signWithHeader("{\"alg\":\"HS51\\u32\",\"typ\":\"JWT\"}", payload), now * 1000));
+        assertNull(codec.verify(signWithHeader("{\"alg\":\"HS51\\u0g32\",\"typ\":\"JWT\"}", payload), now * 1000));
+        assertNull(codec.verify(signWithHeader("{\"alg\":\"HS512\\x\",\"typ\":\"JWT\"}", payload), now * 1000));
+        assertNull(codec.verify(signWithHeader("{\"typ\":\"JWT\",\"alg\":\"\\u\"}", payload), now * 1000));
+
+    }
+
+    // Helpers
+
+    private static String nestedHeader(int depth) {
+        return "{\"x\":" + "[".repeat(depth) + "]".repeat(depth) + ",\"alg\":\"HS512\",\"typ\":\"JWT\"}";
+    }
+
+    private String signWithHeader(String header, String payload) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String content = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "." + payload;
+        Mac mac = Mac.getInstance("HmacSHA512");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        return content + "." + encoder.encodeToString(mac.doFinal(content.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.reactivelearning.demo.unit.password;
+
+import com.reactivelearning.demo.security.util.PasswordAlgorithm;
+import com.reactivelearning.demo.security.util.PasswordEncoderCalibrator;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordEncoderTests {
+
+    private PasswordEncoder build(PasswordAlgorithm algorithm, Integer strength) {
+        PasswordEncoderCalibrator calibrator = new PasswordEncoderCalibrator();
+        calibrator.setAlgorithm(algorithm);
+        calibrator.setStrength(strength);
+        calibrator.setTargetLatency(Duration.ofMillis(1));
+        return calibrator.build();
+    }
+
+    /**
+     * Hashes written before the delegating encoder (no {id} prefix) must still match, and be flagged for upgrade
+     */
+    @Test
+    void shouldMatchAndUpgradeLegacyBcryptHashes() {
+
+        PasswordEncoder encoder = build(PasswordAlgorithm.BCRYPT, 4);
+        String legacy = new BCryptPasswordEncoder(4).encode("testpassword");
+
+        assertTrue(encoder.matches("testpassword", legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+
+    }
+
+    /**
+     * A hash produced by the current encoder should not need an upgrade, but one at a lower cost should
+     */
+    @Test
+    void shouldOnlyUpgradeHashesBelowTheCurrentCost() {
+
+        PasswordEncoder current = build(PasswordAlgorithm.BCRYPT, 5);
+        PasswordEncoder older = build(PasswordAlgorithm.BCRYPT, 4);
+
+        assertFalse(current.upgradeEncoding(current.encode("testpassword")));
+        assertTrue(current.upgradeEncoding(older.encode("testpassword")));
+
+    }
+
+    /**
+     * Switching algorithms should keep old hashes working while flagging them for upgrade
+     */
+    @Test
+    void shouldMatchBcryptAfterMovingToArgon2() {
+
+        PasswordEncoder bcrypt = build(PasswordAlgorithm.BCRYPT, 4);
+        PasswordEncoder argon2 = build(PasswordAlgorithm.ARGON2, 2);
+
+        String hash = bcrypt.encode("testpassword");
+
+        assertTrue(argon2.matches("testpassword", hash));
+        assertTrue(argon2.upgradeEncoding(hash));
+        assertTrue(argon2.encode("testpassword").startsWith("{argon2}"));
+
+    }
+
+    /**
+     * Calibration should never pick a cost below the algorithm's minimum, even with an unreachable target
+     */
+    @Test
+    void shouldNotCalibrateBelowMinimumCost() {
+
+        PasswordEncoder encoder = build(PasswordAlgorithm.BCRYPT, null);
+
+        assertFalse(encoder.upgradeEncoding("{bcrypt}" + new BCryptPasswordEncoder(10).encode("testpassword")));
+
+    }
+
+}
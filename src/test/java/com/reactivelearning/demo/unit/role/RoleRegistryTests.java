@@ -0,0 +1,94 @@
+package com.reactivelearning.demo.unit.role;
+
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.RoleType;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.repository.user.RolesRepository;
+import com.reactivelearning.demo.security.jwt.JwtUtil;
+import com.reactivelearning.demo.service.RoleRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RoleRegistryTests {
+
+    private final Role user = role("USER");
+    private final Role admin = role("ADMIN");
+
+    private final RolesRepository rolesRepository = mock(RolesRepository.class);
+
+    /**
+     * Every lookup should hand out the instance loaded at startup, without querying again
+     */
+    @Test
+    void shouldShareRolesLoadedAtStartup() {
+
+        when(rolesRepository.findAll()).thenReturn(Flux.just(user, admin, role("AUDITOR")));
+        RoleRegistry registry = new RoleRegistry(rolesRepository);
+        registry.afterPropertiesSet();
+
+        assertSame(user, registry.get(RoleType.USER));
+        assertSame(admin, registry.fromAuthority("ROLE_ADMIN"));
+        StepVerifier.create(registry.find(RoleType.ADMIN))
+                .expectNext(admin)
+                .verifyComplete();
+
+        verify(rolesRepository, times(1)).findAll();
+
+    }
+
+    /**
+     * A role missing from the registry should be reloaded once before it is reported missing
+     */
+    @Test
+    void shouldReloadWhenRoleIsMissing() {
+
+        when(rolesRepository.findAll()).thenReturn(Flux.just(user), Flux.just(user, admin));
+        RoleRegistry registry = new RoleRegistry(rolesRepository);
+        registry.afterPropertiesSet();
+
+        assertNull(registry.get(RoleType.ADMIN));
+        StepVerifier.create(registry.find(RoleType.ADMIN))
+                .expectNext(admin)
+                .verifyComplete();
+        assertSame(admin, registry.get(RoleType.ADMIN));
+
+    }
+
+    /**
+     * A JWT's roles should map back to the shared instances, and unknown ones to a new Role of the same name
+     */
+    @Test
+    void shouldMapJwtAuthoritiesToSharedRoles() {
+
+        when(rolesRepository.findAll()).thenReturn(Flux.just(user, admin));
+        RoleRegistry registry = new RoleRegistry(rolesRepository);
+        registry.afterPropertiesSet();
+        JwtUtil jwtUtil = new JwtUtil("Undefined", null, registry);
+
+        User principal = new User("Test", "Test", "Test");
+        principal.setId(UUID.randomUUID());
+        principal.setRoles(List.of(user, role("AUDITOR")));
+
+        User extracted = jwtUtil.extractUserFromJwt(jwtUtil.generateToken(principal));
+
+        assertNotNull(extracted);
+        assertSame(user, extracted.getRoles().get(0));
+        assertEquals("AUDITOR", extracted.getRoles().get(1).getRole());
+        assertEquals("ROLE_USER", extracted.getAuthorities().iterator().next().getAuthority());
+
+    }
+
+    private static Role role(String name) {
+        Role role = Role.of(name);
+        role.setId(UUID.randomUUID());
+        return role;
+    }
+
+}
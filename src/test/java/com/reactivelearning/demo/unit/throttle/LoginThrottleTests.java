@@ -0,0 +1,103 @@
+package com.reactivelearning.demo.unit.throttle;
+
+import com.reactivelearning.demo.security.throttle.LoginThrottle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginThrottleTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * An IP should get its burst, then wait about one refill interval for each further attempt
+     */
+    @Test
+    void shouldAllowTheBurstThenThrottleTheIp() {
+
+        LoginThrottle throttle = throttle(3, 60, 100, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, throttle.acquire("10.0.0.1", "user" + i));
+        }
+        long wait = throttle.acquire("10.0.0.1", "another");
+        assertTrue(wait > 0 && wait <= Duration.ofSeconds(1).toNanos(), "Wait: " + wait);
+        assertEquals(0, throttle.acquire("10.0.0.2", "another"));
+
+        assertEquals(1, meterRegistry.get("login.throttled").tag("reason", "ip").counter().count());
+
+    }
+
+    /**
+     * A username should be throttled on its own budget, whichever IPs it is tried from
+     */
+    @Test
+    void shouldThrottleTheUsernameAcrossIps() {
+
+        LoginThrottle throttle = throttle(100, 100, 2, 1);
+
+        assertEquals(0, throttle.acquire("10.0.0.1", "victim"));
+        assertEquals(0, throttle.acquire("10.0.0.2", "victim"));
+        assertTrue(throttle.acquire("10.0.0.3", "victim") > 0);
+        assertEquals(0, throttle.acquire("10.0.0.3", null));
+
+    }
+
+    /**
+     * Failures past the free ones should lock the username out from that IP for twice as long each time, until a
+     * success
+     */
+    @Test
+    void shouldLockOutExponentiallyAfterFailures() {
+
+        LoginThrottle throttle = throttle(100, 100, 100, 100);
+        throttle.setFreeFailures(2);
+        throttle.setBaseLockout(Duration.ofMinutes(1));
+
+        throttle.recordFailure("10.0.0.1", "guessed");
+        throttle.recordFailure("10.0.0.1", "guessed");
+        assertEquals(0, throttle.acquire("10.0.0.1", "guessed"));
+
+        throttle.recordFailure("10.0.0.1", "guessed");
+        long first = throttle.acquire("10.0.0.1", "guessed");
+        throttle.recordFailure("10.0.0.1", "guessed");
+        long second = throttle.acquire("10.0.0.1", "guessed");
+
+        assertTrue(first > Duration.ofSeconds(55).toNanos() && first <= Duration.ofMinutes(1).toNanos());
+        assertTrue(second > Duration.ofSeconds(115).toNanos() && second <= Duration.ofMinutes(2).toNanos());
+
+        throttle.recordSuccess("10.0.0.1", "guessed");
+        assertEquals(0, throttle.acquire("10.0.0.1", "guessed"));
+
+    }
+
+    /**
+     * Failing on purpose from one IP should not lock the user out from their own
+     */
+    @Test
+    void shouldOnlyLockOutTheFailingIp() {
+
+        LoginThrottle throttle = throttle(100, 100, 100, 100);
+        throttle.setFreeFailures(1);
+
+        throttle.recordFailure("10.0.0.66", "victim");
+        throttle.recordFailure("10.0.0.66", "victim");
+
+        assertTrue(throttle.acquire("10.0.0.66", "victim") > 0);
+        assertEquals(0, throttle.acquire("10.0.0.1", "victim"));
+        assertEquals(1, meterRegistry.get("login.throttled").tag("reason", "lockout").counter().count());
+
+    }
+
+    private LoginThrottle throttle(int ipBurst, int ipPerMinute, int usernameBurst, int usernamePerMinute) {
+        LoginThrottle throttle = new LoginThrottle(meterRegistry);
+        throttle.setIp(new LoginThrottle.Limit(ipBurst, ipPerMinute));
+        throttle.setUsername(new LoginThrottle.Limit(usernameBurst, usernamePerMinute));
+        throttle.afterPropertiesSet();
+        return throttle;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.reactivelearning.demo.unit.ticket;
+
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.security.ticket.PreAuthTicketStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreAuthTicketStoreTests {
+
+    private final PreAuthTicketStore store;
+
+    public PreAuthTicketStoreTests() {
+        this.store = new PreAuthTicketStore(new SimpleMeterRegistry());
+        this.store.afterPropertiesSet();
+    }
+
+    /**
+     * A ticket should give back the parked user, but only the first time
+     */
+    @Test
+    void shouldRedeemTicketOnce() {
+
+        User user = new User("Test", "Test", "Test");
+        String ticket = store.issue(user);
+
+        assertSame(user, store.redeem(ticket));
+        assertNull(store.redeem(ticket));
+
+    }
+
+    /**
+     * A ticket with a forged signature should be rejected, and should not use up the real ticket
+     */
+    @Test
+    void shouldRejectForgedTicket() {
+
+        User user = new User("Test", "Test", "Test");
+        String ticket = store.issue(user);
+        String id = ticket.substring(0, ticket.indexOf('.'));
+
+        assertNull(store.redeem(id + ".AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA"));
+        assertNull(store.redeem(id + ".not base64"));
+        assertNull(store.redeem(id));
+        assertNull(store.redeem(null));
+        assertSame(user, store.redeem(ticket));
+
+    }
+
+    /**
+     * Tickets from another store, e.g. before a restart, should be rejected
+     */
+    @Test
+    void shouldRejectTicketFromAnotherStore() {
+
+        PreAuthTicketStore other = new PreAuthTicketStore(new SimpleMeterRegistry());
+        other.afterPropertiesSet();
+
+        assertNull(store.redeem(other.issue(new User("Test", "Test", "Test"))));
+
+    }
+
+}
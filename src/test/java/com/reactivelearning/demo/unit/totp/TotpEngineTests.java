@@ -0,0 +1,92 @@
+package com.reactivelearning.demo.unit.totp;
+
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.security.totp.TotpEngine;
+import com.warrenstrange.googleauth.GoogleAuthenticator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TotpEngineTests {
+
+    // The RFC 6238 SHA-1 seed, "12345678901234567890", in Base32
+    private static final String RFC_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+
+    private final TotpEngine totpEngine = new TotpEngine();
+
+    /**
+     * Codes should match the RFC 6238 Appendix B SHA-1 vectors, truncated to 6 digits
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "59, 287082",
+            "1111111109, 081804",
+            "1111111111, 050471",
+            "1234567890, 005924",
+            "2000000000, 279037",
+            "20000000000, 353130"
+    })
+    void shouldMatchRfcVectors(long epochSeconds, String expected) {
+
+        Mfa mfa = Mfa.of(null, true, RFC_SECRET);
+
+        assertEquals(Integer.parseInt(expected), totpEngine.generate(mfa, epochSeconds * 1000));
+        assertTrue(totpEngine.verify(mfa, Integer.parseInt(expected), epochSeconds * 1000));
+
+    }
+
+    /**
+     * Codes from one step either side should pass, anything further out should not
+     */
+    @Test
+    void shouldOnlyAcceptCodesWithinWindow() {
+
+        Mfa mfa = Mfa.of(null, true, totpEngine.createSecret());
+        long now = 1_700_000_000_000L;
+
+        assertTrue(totpEngine.verify(mfa, totpEngine.generate(mfa, now - 30_000), now));
+        assertTrue(totpEngine.verify(mfa, totpEngine.generate(mfa, now + 30_000), now));
+        assertFalse(totpEngine.verify(mfa, totpEngine.generate(mfa, now - 90_000), now));
+        assertFalse(totpEngine.verify(mfa, -1, now));
+        assertFalse(totpEngine.verify(mfa, 1_000_000, now));
+
+    }
+
+    /**
+     * Secrets and codes should be interchangeable with GoogleAuthenticator, which issued the existing secrets
+     */
+    @Test
+    void shouldInteroperateWithGoogleAuthenticator() {
+
+        GoogleAuthenticator authenticator = new GoogleAuthenticator();
+        long now = System.currentTimeMillis();
+
+        String legacySecret = authenticator.createCredentials().getKey();
+        Mfa legacy = Mfa.of(null, true, legacySecret);
+        assertTrue(totpEngine.verify(legacy, authenticator.getTotpPassword(legacySecret, now), now));
+
+        String secret = totpEngine.createSecret();
+        assertEquals(32, secret.length());
+        assertTrue(authenticator.authorize(secret, totpEngine.generate(Mfa.of(null, true, secret), now), now));
+
+    }
+
+    /**
+     * Codes should follow the Mfa's secret as it is now, not one seen by an earlier check
+     */
+    @Test
+    void shouldUseTheCurrentSecret() {
+
+        Mfa mfa = Mfa.of(null, true, RFC_SECRET);
+        int before = totpEngine.generate(mfa, 59_000);
+
+        mfa.setMfaSecret("JBSWY3DPEHPK3PXP");
+
+        assertNotEquals(before, totpEngine.generate(mfa, 59_000));
+        assertTrue(totpEngine.verify(mfa, totpEngine.generate(mfa, 59_000), 59_000));
+
+    }
+
+}
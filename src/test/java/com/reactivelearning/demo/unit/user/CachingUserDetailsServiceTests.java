@@ -0,0 +1,107 @@
+package com.reactivelearning.demo.unit.user;
+
+import com.reactivelearning.demo.entities.Mfa;
+import com.reactivelearning.demo.entities.Role;
+import com.reactivelearning.demo.entities.User;
+import com.reactivelearning.demo.security.userdetails.CachingUserDetailsService;
+import com.reactivelearning.demo.service.UserChangedEvent;
+import com.reactivelearning.demo.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingUserDetailsServiceTests {
+
+    private final UserService userService = mock(UserService.class);
+    private final CachingUserDetailsService cache = new CachingUserDetailsService(userService, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        cache.afterPropertiesSet();
+    }
+
+    /**
+     * A hit should skip UserService, and hand out a copy the caller can change without affecting the cache
+     */
+    @Test
+    void shouldCacheACopyOfTheUser() {
+
+        when(userService.findByUsername("cached")).thenReturn(Mono.fromSupplier(() -> user("cached")));
+
+        User first = (User) cache.findByUsername("cached").block();
+        assertNotNull(first);
+        first.setPassword("changed");
+        first.getMfa().setMfaSecret("changed");
+
+        User second = (User) cache.findByUsername("cached").block();
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertEquals("hash", second.getPassword());
+        assertEquals("secret", second.getMfa().getMfaSecret());
+        assertEquals(List.of("ROLE_USER"), second.getRolesAsStrings());
+        assertEquals(first.getId(), second.getId());
+
+        verify(userService, times(1)).findByUsername("cached");
+
+    }
+
+    /**
+     * Lookups for the same username while one is in flight should wait on it rather than query again
+     */
+    @Test
+    void shouldCoalesceConcurrentMisses() {
+
+        Sinks.One<UserDetails> lookup = Sinks.one();
+        when(userService.findByUsername("slow")).thenReturn(lookup.asMono());
+
+        StepVerifier.create(Mono.zip(cache.findByUsername("slow"), cache.findByUsername("slow")))
+                .then(() -> lookup.tryEmitValue(user("slow")))
+                .assertNext(users -> assertEquals(users.getT1().getUsername(), users.getT2().getUsername()))
+                .verifyComplete();
+
+        verify(userService, times(1)).findByUsername("slow");
+
+    }
+
+    /**
+     * Failed lookups should not be cached, and a UserChangedEvent should drop the user
+     */
+    @Test
+    void shouldReloadAfterFailuresAndChanges() {
+
+        when(userService.findByUsername("changing"))
+                .thenReturn(Mono.error(new UsernameNotFoundException("Username not found.")))
+                .thenReturn(Mono.fromSupplier(() -> user("changing")));
+
+        StepVerifier.create(cache.findByUsername("changing"))
+                .expectError(UsernameNotFoundException.class)
+                .verify();
+        assertNotNull(cache.findByUsername("changing").block());
+        assertNotNull(cache.findByUsername("changing").block());
+
+        cache.onUserChanged(new UserChangedEvent("changing"));
+        assertNotNull(cache.findByUsername("changing").block());
+
+        verify(userService, times(3)).findByUsername("changing");
+
+    }
+
+    private static User user(String username) {
+        User user = new User(username, "hash", username + "@test", Role.of("USER"));
+        user.setId(UUID.nameUUIDFromBytes(username.getBytes()));
+        user.setMfa(Mfa.of(user.getId(), true, "secret"));
+        return user;
+    }
+
+}
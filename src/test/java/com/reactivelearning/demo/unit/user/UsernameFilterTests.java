@@ -0,0 +1,138 @@
+package com.reactivelearning.demo.unit.user;
+
+import com.reactivelearning.demo.repository.user.UsersRepository;
+import com.reactivelearning.demo.service.UsernameFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class UsernameFilterTests {
+
+    private final UsersRepository usersRepository = mock(UsersRepository.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Before the first build, every username should be reported as possibly present
+     */
+    @Test
+    void shouldAllowEverythingUntilBuilt() {
+
+        UsernameFilter filter = new UsernameFilter(usersRepository, meterRegistry);
+
+        assertTrue(filter.mightContain("anyone"));
+        filter.add("anyone");
+        assertTrue(filter.mightContain("someone else"));
+
+    }
+
+    /**
+     * Every loaded or added username should be found, and most unknown ones rejected, at about the configured rate
+     */
+    @Test
+    void shouldHaveNoFalseNegatives() {
+
+        when(usersRepository.count()).thenReturn(Mono.just(10_000L));
+        when(usersRepository.findAllUsernames())
+                .thenReturn(Flux.fromStream(IntStream.range(0, 10_000).mapToObj(i -> "user" + i)));
+
+        UsernameFilter filter = new UsernameFilter(usersRepository, meterRegistry);
+        filter.setExpectedInsertions(1_000);
+        StepVerifier.create(filter.rebuild())
+                .expectNext(10_000L)
+                .verifyComplete();
+        filter.add("newuser");
+
+        assertTrue(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("user" + i)));
+        assertTrue(filter.mightContain("newuser"));
+
+        long falsePositives = IntStream.range(0, 10_000).filter(i -> filter.mightContain("unknown" + i)).count();
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+        assertEquals(10_000 - falsePositives,
+                meterRegistry.get("users.username-filter.lookups").tag("result", "avoided").counter().count());
+
+    }
+
+    /**
+     * A rebuild should drop names no longer in the table, and keep names added while it ran
+     */
+    @Test
+    void shouldRebuildFromTheTable() {
+
+        when(usersRepository.count()).thenReturn(Mono.just(1L));
+        when(usersRepository.findAllUsernames()).thenReturn(Flux.just("kept"));
+
+        UsernameFilter filter = new UsernameFilter(usersRepository, meterRegistry);
+        filter.rebuild().block();
+        filter.add("deleted");
+        assertTrue(filter.mightContain("deleted"));
+
+        when(usersRepository.findAllUsernames()).thenReturn(Flux.defer(() -> {
+            filter.add("registered");
+            return Flux.just("kept");
+        }));
+        filter.rebuild().block();
+
+        assertTrue(filter.mightContain("kept"));
+        assertTrue(filter.mightContain("registered"));
+        assertFalse(filter.mightContain("deleted"));
+
+    }
+
+    /**
+     * A name added once its user is committed should never be rejected, however the add interleaves with rebuilds
+     * swapping in a new filter. The table only holds the names still being checked, so each rebuild is short and
+     * they run back to back with the adds.
+     */
+    @Test
+    void shouldNotLoseNamesAddedDuringARebuild() throws InterruptedException {
+
+        Set<String> table = ConcurrentHashMap.newKeySet();
+        when(usersRepository.count()).thenReturn(Mono.fromSupplier(() -> (long) table.size()));
+        when(usersRepository.findAllUsernames()).thenReturn(Flux.defer(() -> Flux.fromIterable(Set.copyOf(table))));
+
+        UsernameFilter filter = new UsernameFilter(usersRepository, meterRegistry);
+        filter.setExpectedInsertions(64);
+        filter.rebuild().block();
+
+        AtomicReference<String> missed = new AtomicReference<>();
+        List<Thread> adders = new ArrayList<>();
+        for (int a = 0; a < 4; a++) {
+            String prefix = "adder" + a + "-";
+            adders.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 50_000 && missed.get() == null; i++) {
+                    String username = prefix + i;
+                    table.add(username);
+                    filter.add(username);
+                    if (!filter.mightContain(username)) {
+                        missed.compareAndSet(null, username);
+                    }
+                    table.remove(username);
+                }
+            }));
+        }
+        while (adders.stream().anyMatch(Thread::isAlive)) {
+            filter.rebuild().block();
+            Thread.yield();
+        }
+        for (Thread adder : adders) {
+            adder.join();
+        }
+
+        assertNull(missed.get(), "Added name rejected: " + missed.get());
+
+    }
+
+}